@@ -0,0 +1,32 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * CarQueueWorkload: one car leaves the front of a car queue of fixed length
+ * and joins the back again.
+ * Parameters: the car queue kind and the number of cars in the queue.
+ */
+
+public class CarQueueWorkload implements benchmarks.Workload {
+  private CarQueue carQueue;
+
+  public void setUp(String... params) {
+    SimulationParameters p = new SimulationParameters();
+    p.carQueueKind = params[0];
+    SimulationContext ctx = new SimulationContext(p, new SeedSet(1, 2, 3, 4),
+        new PrintStream(new OutputStream() {
+          public void write(int b) {
+          }
+        }));
+    carQueue = ctx.carQueue;
+    final int size = Integer.parseInt(params[1]);
+    for (int i = 0; i < size; i++)
+      carQueue.insert(new Car(ctx));
+  }
+
+  public double operation() {
+    final Car car = carQueue.takeFirstCar();
+    carQueue.insert(car);
+    return car.getLitresNeeded();
+  }
+}
@@ -0,0 +1,58 @@
+import java.util.Random;
+
+/**
+ * EventListWorkload: the "hold" operation on an event list of fixed size -
+ * take the next event and schedule it again a random interval later, as the
+ * Arrival event does.
+ * Parameters: the event list kind, the number of events on the list, and
+ * optionally "far", to add one more event that is never taken, far beyond
+ * the rest, as the end of the simulation is in a real run.
+ */
+
+public class EventListWorkload implements benchmarks.Workload {
+  private static final int INTERVALS = 1 << 16; // power of two
+
+  // a do-nothing event
+  private static class Marker extends Event {
+    Marker(double time) {
+      super(time);
+    }
+
+    public void makeItHappen(SimulationContext ctx) {
+    }
+  }
+
+  private EventList eventList;
+  private final double[] intervals = new double[INTERVALS];
+  private int nextInterval;
+
+  public void setUp(String... params) {
+    eventList = new EventList(params[0]);
+    final int size = Integer.parseInt(params[1]);
+
+    // Draw the intervals in advance, so the random-number generator is not
+    // part of the measurement.
+    Random random = new Random(1);
+    for (int i = 0; i < INTERVALS; i++)
+      intervals[i] = -50 * Math.log(random.nextDouble());
+    nextInterval = 0;
+    int i = 0;
+    if (params.length > 2 && params[2].equals("far")) {
+      // Start as a run does, with the first event and the far one alone on
+      // the list, and take the first once before the list fills up.
+      eventList.insert(new Marker(1e15));
+      eventList.insert(new Marker(0));
+      operation();
+      i++;
+    }
+    for (; i < size; i++)
+      eventList.insert(new Marker(intervals[i & (INTERVALS - 1)] * size / 10));
+  }
+
+  public double operation() {
+    final Event e = eventList.takeNextEvent();
+    e.setTime(e.getTime() + intervals[nextInterval++ & (INTERVALS - 1)]);
+    eventList.insert(e);
+    return e.getTime();
+  }
+}
@@ -0,0 +1,51 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * StationWorkload: the whole gas station model. One operation is either one
+ * event of an endless run (mode "event") or a complete run of the given
+ * length (mode "run").
+ * Parameters: the mode, the number of pumps, the offered load (the arrival
+ * rate as a fraction of what the pumps can serve), the event list kind, and
+ * for mode "run" the run length in seconds.
+ */
+
+public class StationWorkload implements benchmarks.Workload {
+  private SimulationParameters params;
+  private SimulationContext ctx; // mode "event" only
+  private int replication;
+
+  public void setUp(String... args) {
+    params = new SimulationParameters();
+    params.numPumps = Integer.parseInt(args[1]);
+    final double load = Double.parseDouble(args[2]);
+    params.eventListKind = args[3];
+    params.reportInterval = Double.POSITIVE_INFINITY;
+
+    // Offer the pumps the given fraction of the cars they could serve,
+    // judging by the mean service time of an average car.
+    final double meanService = params.serviceTimeBase
+        + params.serviceTimePerLitre * (params.litresNeededMin + params.litresNeededRange / 2);
+    params.meanInterarrivalTime = meanService / (params.numPumps * load);
+
+    if (args[0].equals("event")) {
+      params.endingTime = Double.MAX_VALUE;
+      ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(new OutputStream() {
+        public void write(int b) {
+        }
+      }));
+      ctx.start();
+    } else
+      params.endingTime = Double.parseDouble(args[4]);
+    replication = 0;
+  }
+
+  public double operation() {
+    if (ctx != null) {
+      ctx.step();
+      return ctx.simulationTime;
+    }
+    replication++;
+    return SimulationContext.replicate(params, new SeedSet(replication, 2, 3, 4)).averageWait;
+  }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+/**
+ * BenchmarkMain: runs the JMH benchmarks, with the GC profiler switched on
+ * (so that allocation rates are reported) unless the arguments choose
+ * profilers of their own. All other arguments are passed to JMH; for example
+ * "EventListBenchmark -p kind=heap" runs one benchmark with one event set.
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws Exception {
+    boolean profiled = false;
+    for (String a : args)
+      if (a.equals("-prof") || a.equals("-lprof"))
+        profiled = true;
+
+    if (!profiled) {
+      String[] withGc = new String[args.length + 2];
+      withGc[0] = "-prof";
+      withGc[1] = "gc";
+      System.arraycopy(args, 0, withGc, 2, args.length);
+      args = withGc;
+    }
+    org.openjdk.jmh.Main.main(args);
+  }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CarQueueBenchmark: CarQueue.takeFirstCar followed by CarQueue.insert on a
+ * queue of fixed length, for every car store.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CarQueueBenchmark {
+  @Param({ "linked", "ring" })
+  public String kind;
+
+  @Param({ "1", "64", "4096" })
+  public int size;
+
+  private Workload workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workload.load("CarQueueWorkload", kind, Integer.toString(size));
+  }
+
+  @Benchmark
+  public double cycle() {
+    return workload.operation();
+  }
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * EventListBenchmark: EventList.takeNextEvent and EventList.insert, as a
+ * "hold" operation on a list of fixed size, for every event set, with and
+ * without an event far in the future (as the end of the simulation is).
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventListBenchmark {
+  @Param({ "list", "heap", "calendar", "ladder" })
+  public String kind;
+
+  @Param({ "16", "256", "4096" })
+  public int size;
+
+  @Param({ "false", "true" })
+  public boolean farEvent;
+
+  private Workload workload;
+
+  @Setup
+  public void setUp() {
+    workload = Workload.load("EventListWorkload", kind, Integer.toString(size), farEvent ? "far" : "near");
+  }
+
+  @Benchmark
+  public double hold() {
+    return workload.operation();
+  }
+}
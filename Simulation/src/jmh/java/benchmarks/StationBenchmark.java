@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * StationBenchmark: the whole model at several pump counts and arrival rates.
+ * "event" measures single events of an endless run in steady state (its
+ * throughput is the engine's events per second); "run" measures complete
+ * runs of a simulated day, setup and all.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StationBenchmark {
+  @Param({ "3", "30", "300" })
+  public int numPumps;
+
+  // arrival rate as a fraction of the pumps' capacity
+  @Param({ "0.8", "1.2" })
+  public double load;
+
+  @Param({ "heap", "ladder" })
+  public String kind;
+
+  private Workload events;
+  private Workload runs;
+
+  @Setup
+  public void setUp() {
+    events = Workload.load("StationWorkload", "event", Integer.toString(numPumps), Double.toString(load), kind);
+    runs = Workload.load("StationWorkload", "run", Integer.toString(numPumps), Double.toString(load), kind,
+        "86400");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public double event() {
+    return events.operation();
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public double run() {
+    return runs.operation();
+  }
+}
@@ -0,0 +1,46 @@
+package benchmarks;
+
+/**
+ * Workload: a repeatable piece of work on the simulation model, as seen by a
+ * benchmark.
+ *
+ * JMH will only generate code for benchmarks in a named package, and code in
+ * a named package cannot refer to the model classes, which live in the unnamed
+ * package. So each workload is written in the unnamed package against this
+ * interface and loaded by name; the one interface call per operation is
+ * monomorphic and is inlined by the JIT.
+ */
+public interface Workload {
+
+  /**
+   * setUp: build the model objects the workload runs against.
+   *
+   * @param params java.lang.String[] workload-specific parameters
+   */
+  void setUp(String... params);
+
+  /**
+   * operation: do one unit of work, and return a value that depends on it,
+   * for the benchmark to consume.
+   *
+   * @return double
+   */
+  double operation();
+
+  /**
+   * load: create the workload class of the given name and set it up.
+   *
+   * @return benchmarks.Workload
+   * @param className java.lang.String a class of the unnamed package
+   * @param params    java.lang.String[]
+   */
+  static Workload load(String className, String... params) {
+    try {
+      Workload w = (Workload) Class.forName(className).getConstructor().newInstance();
+      w.setUp(params);
+      return w;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("cannot load workload " + className, e);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+import java.util.Random;
+
+/**
+ * AntitheticRandom: a random-number stream that yields the antithetic
+ * counterparts of the numbers drawn by new Random(seed): 1 - u for every
+ * uniform u and -z for every normal z. A run made with these streams is
+ * negatively correlated with the run made with the ordinary ones, so the
+ * average of the pair varies less than the average of two independent runs.
+ */
+
+class AntitheticRandom extends Random {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Constructor.
+   *
+   * @param seed long
+   */
+  public AntitheticRandom(long seed) {
+    super(seed);
+  }
+
+  /**
+   * nextDouble: return 1 - u, which lies in (0, 1].
+   *
+   * @return double
+   */
+  public double nextDouble() {
+    return 1.0 - super.nextDouble();
+  }
+
+  // nextGaussian() needs no override: Random specifies that it draws its
+  // uniforms through nextDouble(), so the polar method here negates them
+  // and hence the normals it returns.
+}
@@ -0,0 +1,45 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * AntitheticRandomStream: the antithetic counterpart of another stream:
+ * 1 - u for every uniform u, kept in [0, 1) by taking it from the largest
+ * double below 1, and -z for every normal z. The base stream draws an
+ * exponential as -log(1 - u) (see ZigguratRandomStream), and its twin
+ * draws it from the mirrored uniform, so twin runs see opposite arrival
+ * processes.
+ */
+
+class AntitheticRandomStream implements RandomStream {
+  private final RandomStream base;
+
+  /**
+   * Constructor.
+   *
+   * @param base Sim.RandomStream
+   */
+  public AntitheticRandomStream(RandomStream base) {
+    this.base = base;
+  }
+
+  public double nextDouble() {
+    return Math.nextDown(1.0) - base.nextDouble();
+  }
+
+  public double nextGaussian() {
+    return -base.nextGaussian();
+  }
+
+  public double nextExponential() {
+    return -Math.log(1.0 - nextDouble());
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    base.writeState(out);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    base.readState(in);
+  }
+}
@@ -0,0 +1,274 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ArrivalProfile: an arrival rate that changes with the time of day (or
+ * week), for cars that arrive as a non-homogeneous Poisson process.
+ *
+ * The rate is given at breakpoints, and is either constant from each one to
+ * the next or goes linearly between them. A profile with a period repeats;
+ * without one, the last rate holds for ever. Arrivals are drawn by thinning
+ * with a bound of its own for each segment, so a constant segment accepts
+ * every candidate (which is inversion of its time scale) and a linear one
+ * most of them.
+ *
+ * The segment a time falls in is found through an index of equal buckets,
+ * none wider than the narrowest segment, so each lookup is O(1). A profile
+ * never changes once built; copies of the parameters share it, and every
+ * replication uses it without reading the file again.
+ *
+ * The file holds a line per breakpoint - its time in seconds, from 0, and
+ * the rate there in arrivals per hour - and may also say "constant" (the
+ * default) or "linear", and "period" and its length in seconds. Blank lines
+ * and text after a '#' are ignored.
+ */
+
+final class ArrivalProfile {
+  // buckets in the index at most; narrower segments cost a short scan
+  private static final int MAX_BUCKETS = 1 << 16;
+
+  private final boolean linear;
+  private final double period; // or infinity, if the profile does not repeat
+  private final double[] times; // the breakpoints as given
+  private final double[] perHour; // the rates there as given
+
+  private final int segments;
+  private final double[] start; // of each segment, and the end of the last
+  private final double[] rate; // per second, at the start of each segment
+  private final double[] slope; // change of rate per second, in each segment
+  private final double[] bound; // the highest rate in each segment
+  private final boolean silent; // no arrivals at all
+
+  private final double bucketWidth;
+  private final int[] index; // the segment each bucket starts in
+
+  /**
+   * Constructor: build a profile from its breakpoints.
+   *
+   * @param linear  boolean true for rates that go linearly between points
+   * @param times   double[] the breakpoints, from 0 and increasing
+   * @param perHour double[] the rate at each, in arrivals per hour
+   * @param period  double after which the profile repeats, or infinity
+   */
+  public ArrivalProfile(boolean linear, double[] times, double[] perHour, double period) {
+    if (times.length == 0 || times.length != perHour.length)
+      throw new IllegalArgumentException("an arrival profile needs a rate for each of its breakpoints");
+    if (times[0] != 0)
+      throw new IllegalArgumentException("an arrival profile must start at time 0");
+    for (int i = 0; i < times.length; i++) {
+      if (i > 0 && !(times[i] > times[i - 1]))
+        throw new IllegalArgumentException("arrival profile times must increase");
+      if (!(perHour[i] >= 0) || Double.isInfinite(perHour[i]))
+        throw new IllegalArgumentException("arrival rates must be finite and not negative");
+    }
+    if (!(period > times[times.length - 1]))
+      throw new IllegalArgumentException("the period must end after the last breakpoint");
+    this.linear = linear;
+    this.period = period;
+    this.times = times.clone();
+    this.perHour = perHour.clone();
+
+    segments = times.length;
+    start = new double[segments + 1];
+    rate = new double[segments];
+    slope = new double[segments];
+    bound = new double[segments];
+    boolean none = true;
+    for (int i = 0; i < segments; i++) {
+      start[i] = times[i];
+      rate[i] = perHour[i] / 3600;
+      none &= rate[i] == 0;
+    }
+    start[segments] = period;
+    // A linear profile that repeats goes from its last point back to its
+    // first; one that does not stays at its last rate.
+    for (int i = 0; i < segments; i++) {
+      double end = rate[i];
+      if (linear && i + 1 < segments)
+        end = rate[i + 1];
+      else if (linear && !Double.isInfinite(period))
+        end = rate[0];
+      slope[i] = (end - rate[i]) / (start[i + 1] - start[i]);
+      if (Double.isNaN(slope[i]) || Double.isInfinite(start[i + 1]))
+        slope[i] = 0;
+      bound[i] = Math.max(rate[i], end);
+    }
+    silent = none;
+
+    // The index covers the segments that end; a time beyond them is in the
+    // last one.
+    final double span = Double.isInfinite(period) ? start[segments - 1] : period;
+    double narrowest = span;
+    for (int i = 0; i + 1 <= segments && !Double.isInfinite(start[i + 1]); i++)
+      narrowest = Math.min(narrowest, start[i + 1] - start[i]);
+    final int buckets = span > 0 ? (int) Math.min(MAX_BUCKETS, Math.ceil(span / narrowest)) : 1;
+    bucketWidth = span > 0 ? span / buckets : 1;
+    index = new int[buckets];
+    int s = 0;
+    for (int b = 0; b < buckets; b++) {
+      while (s + 1 < segments && start[s + 1] <= b * bucketWidth)
+        s++;
+      index[b] = s;
+    }
+  }
+
+  /**
+   * load: read the profile in the file at path.
+   *
+   * @return Sim.ArrivalProfile
+   * @param path java.lang.String
+   */
+  public static ArrivalProfile load(String path) throws IOException {
+    try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+      return parse(in, path);
+    }
+  }
+
+  /**
+   * parse: read a profile, in the form load() reads, from in; name is what
+   * errors call it.
+   *
+   * @return Sim.ArrivalProfile
+   * @param in   java.io.BufferedReader
+   * @param name java.lang.String
+   */
+  static ArrivalProfile parse(BufferedReader in, String name) throws IOException {
+    boolean linear = false;
+    double period = Double.POSITIVE_INFINITY;
+    List<double[]> points = new ArrayList<double[]>();
+    String line;
+    for (int n = 1; (line = in.readLine()) != null; n++) {
+      final int hash = line.indexOf('#');
+      final String[] fields = (hash >= 0 ? line.substring(0, hash) : line).trim().split("\\s+");
+      try {
+        if (fields[0].isEmpty())
+          continue;
+        else if (fields[0].equals("constant") && fields.length == 1)
+          linear = false;
+        else if (fields[0].equals("linear") && fields.length == 1)
+          linear = true;
+        else if (fields[0].equals("period") && fields.length == 2)
+          period = Double.parseDouble(fields[1]);
+        else if (fields.length == 2)
+          points.add(new double[] { Double.parseDouble(fields[0]), Double.parseDouble(fields[1]) });
+        else
+          throw new NumberFormatException();
+      } catch (NumberFormatException e) {
+        throw new IOException(name + ":" + n + ": expected \"time rate\", \"constant\", \"linear\" or \"period t\"");
+      }
+    }
+    double[] times = new double[points.size()];
+    double[] perHour = new double[points.size()];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = points.get(i)[0];
+      perHour[i] = points.get(i)[1];
+    }
+    try {
+      return new ArrivalProfile(linear, times, perHour, period);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(name + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * write: write the profile to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  void write(DataOutput out) throws IOException {
+    out.writeBoolean(linear);
+    out.writeDouble(period);
+    out.writeInt(times.length);
+    for (int i = 0; i < times.length; i++) {
+      out.writeDouble(times[i]);
+      out.writeDouble(perHour[i]);
+    }
+  }
+
+  /**
+   * read: return the profile that write() wrote to in.
+   *
+   * @return Sim.ArrivalProfile
+   * @param in java.io.DataInput
+   */
+  static ArrivalProfile read(DataInput in) throws IOException {
+    final boolean linear = in.readBoolean();
+    final double period = in.readDouble();
+    double[] times = new double[in.readInt()];
+    double[] perHour = new double[times.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = in.readDouble();
+      perHour[i] = in.readDouble();
+    }
+    return new ArrivalProfile(linear, times, perHour, period);
+  }
+
+  /**
+   * segmentAt: return the segment that the time t, within the first period,
+   * falls in.
+   *
+   * @return int
+   * @param t double
+   */
+  private int segmentAt(double t) {
+    final int b = (int) (t / bucketWidth);
+    if (b >= index.length)
+      return segments - 1;
+    int s = index[b];
+    while (s + 1 < segments && start[s + 1] <= t)
+      s++;
+    return s;
+  }
+
+  /**
+   * rateAt: return the arrival rate at time t, in arrivals per second.
+   *
+   * @return double
+   * @param t double
+   */
+  public double rateAt(double t) {
+    if (!Double.isInfinite(period))
+      t -= Math.floor(t / period) * period;
+    final int s = segmentAt(t);
+    return rate[s] + slope[s] * (t - start[s]);
+  }
+
+  /**
+   * nextArrival: return the time of the first arrival after now, drawn from
+   * stream, or infinity if there are no more.
+   *
+   * @return double
+   * @param now    double
+   * @param stream Sim.RandomStream
+   */
+  public double nextArrival(double now, RandomStream stream) {
+    if (silent)
+      return Double.POSITIVE_INFINITY;
+    double base = 0; // the start of the current period
+    if (!Double.isInfinite(period))
+      base = Math.floor(now / period) * period;
+    int s = segmentAt(now - base);
+    double t = now;
+    while (true) {
+      final double end = base + start[s + 1];
+      if (bound[s] > 0) {
+        t += stream.nextExponential() / bound[s];
+        if (t < end) {
+          if (slope[s] == 0 || stream.nextDouble() * bound[s] < rate[s] + slope[s] * (t - base - start[s]))
+            return t;
+          continue;
+        }
+      }
+      if (Double.isInfinite(end))
+        return Double.POSITIVE_INFINITY;
+      // No arrival in this segment; as the process has no memory, the search
+      // starts afresh at the next.
+      t = end;
+      if (++s == segments) {
+        s = 0;
+        base += period;
+      }
+    }
+  }
+}
@@ -0,0 +1,390 @@
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ArrivalTrace: recorded arrivals - when each car came and how many litres
+ * it took - read from a CSV file to drive the model instead of the arrival
+ * and litre streams.
+ *
+ * The file has a record per line. If its first line is a header, the
+ * columns named "time" (seconds from the start of the run) and "litres" are
+ * used; otherwise they are the first two. The times must not decrease.
+ *
+ * The file is mapped into memory a window at a time, and the numbers are
+ * parsed straight from the mapped bytes, so a log of many gigabytes is
+ * never read into the heap. A background thread parses ahead of the run
+ * into blocks of primitive arrays, a few blocks at most, so the event loop
+ * waits for the disk only if it outruns the thread.
+ */
+
+final class ArrivalTrace implements Closeable {
+  // bytes mapped at a time, and the longest line allowed
+  private static final long WINDOW = 64L << 20;
+  private static final int MAX_LINE = 4096;
+  // records per block, and blocks parsed ahead
+  private static final int BLOCK = 8192;
+  private static final int AHEAD = 4;
+
+  // 10^i, exact as doubles
+  private static final double[] POWERS = new double[23];
+  static {
+    POWERS[0] = 1;
+    for (int i = 1; i < POWERS.length; i++)
+      POWERS[i] = POWERS[i - 1] * 10;
+  }
+
+  /**
+   * Block: records parsed by the background thread; the last block of the
+   * file is marked, and one that ends in an error carries it.
+   */
+  private static final class Block {
+    final double[] times = new double[BLOCK];
+    final double[] litres = new double[BLOCK];
+    final long[] offsets = new long[BLOCK]; // where each record's line starts
+    int count = 0;
+    boolean last = false;
+    IOException error = null;
+  }
+
+  private final String path;
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final long size;
+  private final long firstRecord; // the offset after the header, if any
+  private final int timeColumn;
+  private final int litreColumn;
+
+  private long start; // where reading starts, once it does
+  private BlockingQueue<Block> ahead;
+  private Prefetcher prefetch;
+  private Thread prefetcher;
+  private Block block; // the block the current record is in, or null
+  private int next; // the current record's place in it
+
+  /**
+   * Constructor: open the trace at path, at its first record.
+   *
+   * @param path java.lang.String
+   */
+  public ArrivalTrace(String path) throws IOException {
+    this.path = path;
+    file = new RandomAccessFile(path, "r");
+    channel = file.getChannel();
+    size = channel.size();
+
+    // the header, if the first line has one
+    final MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_LINE));
+    int end = 0;
+    while (end < head.limit() && head.get(end) != '\n')
+      end++;
+    byte[] bytes = new byte[end];
+    head.get(bytes);
+    final String first = new String(bytes, StandardCharsets.UTF_8).trim();
+    if (!first.isEmpty() && "0123456789+-.".indexOf(first.charAt(0)) < 0) {
+      int time = -1, litres = -1;
+      final String[] names = first.split(",");
+      for (int c = 0; c < names.length; c++) {
+        final String name = names[c].trim().replace("\"", "").toLowerCase();
+        if (name.equals("time"))
+          time = c;
+        else if (name.equals("litres") || name.equals("liters"))
+          litres = c;
+      }
+      if (time < 0 || litres < 0) {
+        file.close();
+        throw new IOException(path + ": the header names no \"time\" and \"litres\" columns");
+      }
+      timeColumn = time;
+      litreColumn = litres;
+      firstRecord = Math.min(size, end + 1);
+    } else {
+      timeColumn = 0;
+      litreColumn = 1;
+      firstRecord = 0;
+    }
+    seek(firstRecord);
+  }
+
+  /**
+   * seek: make the record whose line starts at offset, as position() gave
+   * it, the current one.
+   *
+   * @param offset long
+   */
+  public void seek(long offset) {
+    stop();
+    start = offset;
+    block = null;
+  }
+
+  /**
+   * current: return the block of the current record, starting to read if
+   * nothing has been read since the trace was opened or sought. (A trace
+   * that is never read starts no thread.)
+   *
+   * @return Block
+   */
+  private Block current() {
+    if (block == null) {
+      ahead = new ArrayBlockingQueue<Block>(AHEAD);
+      prefetch = new Prefetcher(this, start, ahead);
+      prefetcher = new Thread(prefetch, "ArrivalTrace " + path);
+      prefetcher.setDaemon(true);
+      prefetcher.start();
+      fill();
+    }
+    return block;
+  }
+
+  /**
+   * hasRecord: return true unless the trace has run out.
+   *
+   * @return boolean
+   */
+  public boolean hasRecord() {
+    return next < current().count;
+  }
+
+  /**
+   * time: return the arrival time of the current record.
+   *
+   * @return double
+   */
+  public double time() {
+    return current().times[next];
+  }
+
+  /**
+   * litres: return the litres of the current record.
+   *
+   * @return double
+   */
+  public double litres() {
+    return current().litres[next];
+  }
+
+  /**
+   * position: return where the current record starts in the file, or the
+   * file's size if the trace has run out.
+   *
+   * @return long
+   */
+  public long position() {
+    if (block == null)
+      return start;
+    return hasRecord() ? block.offsets[next] : size;
+  }
+
+  /**
+   * advance: move on to the next record.
+   */
+  public void advance() {
+    if (++next == current().count && !block.last)
+      fill();
+  }
+
+  /**
+   * fill: take the next block from the background thread, waiting for it
+   * if need be.
+   */
+  private void fill() {
+    do {
+      try {
+        block = ahead.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while reading " + path, e);
+      }
+      if (block.error != null)
+        throw new UncheckedIOException(block.error);
+    } while (block.count == 0 && !block.last);
+    next = 0;
+  }
+
+  /**
+   * stop: stop the background thread, if there is one.
+   */
+  private void stop() {
+    if (prefetcher == null)
+      return;
+    // Not by interrupting it: that would close the channel if it were
+    // mapping a window.
+    prefetch.stopped = true;
+    try {
+      prefetcher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    prefetcher = null;
+  }
+
+  /**
+   * close: stop reading, and close the file.
+   */
+  public void close() throws IOException {
+    stop();
+    file.close();
+  }
+
+  /**
+   * Prefetcher: parses the records from an offset to the end of the file
+   * into blocks, putting them in a queue that holds only a few. It holds
+   * its trace only weakly, and gives up if the trace is dropped unclosed.
+   */
+  private static final class Prefetcher implements Runnable {
+    private final WeakReference<ArrivalTrace> owner;
+    private final String path;
+    private final FileChannel channel;
+    private final long size;
+    private final int timeColumn;
+    private final int litreColumn;
+    private long offset;
+    private final BlockingQueue<Block> queue;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private double lastTime = Double.NEGATIVE_INFINITY;
+    volatile boolean stopped = false;
+
+    Prefetcher(ArrivalTrace trace, long offset, BlockingQueue<Block> queue) {
+      owner = new WeakReference<ArrivalTrace>(trace);
+      path = trace.path;
+      channel = trace.channel;
+      size = trace.size;
+      timeColumn = trace.timeColumn;
+      litreColumn = trace.litreColumn;
+      this.offset = offset;
+      this.queue = queue;
+    }
+
+    public void run() {
+      try {
+        boolean last = false;
+        while (!last && !stopped) {
+          Block b = new Block();
+          try {
+            last = parse(b);
+          } catch (IOException e) {
+            b.error = e;
+            last = true;
+          }
+          b.last = last;
+          while (!queue.offer(b, 10, TimeUnit.MILLISECONDS))
+            if (stopped || owner.get() == null)
+              return; // seek() or close(); the records are no longer wanted
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * parse: fill b with the records from offset on; return true if the
+     * file has ended.
+     */
+    private boolean parse(Block b) throws IOException {
+      while (b.count < BLOCK) {
+        if (offset >= size)
+          return true;
+        if (window == null || offset < windowStart
+            || (offset + MAX_LINE > windowStart + window.limit() && windowStart + window.limit() < size)) {
+          windowStart = offset;
+          window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+        }
+        final int start = (int) (offset - windowStart);
+        int end = start;
+        while (end < window.limit() && window.get(end) != '\n')
+          end++;
+        if (end - start > MAX_LINE)
+          throw new IOException(path + ": line too long at byte " + offset);
+        final long lineOffset = offset;
+        offset = windowStart + end + 1;
+
+        // the fields wanted, found by counting commas
+        int from = start, field = 0;
+        int timeFrom = -1, timeTo = -1, litreFrom = -1, litreTo = -1;
+        for (int i = start; i <= end; i++)
+          if (i == end || window.get(i) == ',') {
+            if (field == timeColumn) {
+              timeFrom = from;
+              timeTo = i;
+            } else if (field == litreColumn) {
+              litreFrom = from;
+              litreTo = i;
+            }
+            field++;
+            from = i + 1;
+          }
+        if (field == 1 && isBlank(start, end))
+          continue;
+        if (timeFrom < 0 || litreFrom < 0)
+          throw new IOException(path + ": too few columns at byte " + lineOffset);
+        final double time = number(timeFrom, timeTo, lineOffset);
+        final double litres = number(litreFrom, litreTo, lineOffset);
+        if (!(time >= 0) || time < lastTime)
+          throw new IOException(path + ": time " + time + " out of order at byte " + lineOffset);
+        if (!(litres >= 0))
+          throw new IOException(path + ": bad litres at byte " + lineOffset);
+        lastTime = time;
+        b.times[b.count] = time;
+        b.litres[b.count] = litres;
+        b.offsets[b.count++] = lineOffset;
+      }
+      return offset >= size;
+    }
+
+    private boolean isBlank(int from, int to) {
+      for (int i = from; i < to; i++)
+        if (window.get(i) > ' ')
+          return false;
+      return true;
+    }
+
+    /**
+     * number: parse the number in window[from, to). Plain decimals of up to
+     * 15 digits are parsed in place, which gives the double that
+     * Double.parseDouble() would; anything else is handed to it.
+     */
+    private double number(int from, int to, long lineOffset) throws IOException {
+      while (from < to && (window.get(from) <= ' ' || window.get(from) == '"'))
+        from++;
+      while (to > from && (window.get(to - 1) <= ' ' || window.get(to - 1) == '"'))
+        to--;
+      int i = from;
+      final boolean negative = i < to && window.get(i) == '-';
+      if (i < to && (window.get(i) == '-' || window.get(i) == '+'))
+        i++;
+      long mantissa = 0;
+      int digits = 0, scale = -1;
+      for (; i < to; i++) {
+        final byte c = window.get(i);
+        if (c >= '0' && c <= '9') {
+          mantissa = mantissa * 10 + (c - '0');
+          digits++;
+          if (scale >= 0)
+            scale++;
+        } else if (c == '.' && scale < 0)
+          scale = 0;
+        else
+          break;
+      }
+      if (i == to && digits > 0 && digits <= 15 && scale <= 22) {
+        final double value = scale > 0 ? mantissa / POWERS[scale] : mantissa;
+        return negative ? -value : value;
+      }
+      byte[] bytes = new byte[to - from];
+      for (int k = 0; k < bytes.length; k++)
+        bytes[k] = window.get(from + k);
+      try {
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+      } catch (NumberFormatException e) {
+        throw new IOException(path + ": bad number at byte " + lineOffset);
+      }
+    }
+  }
+}
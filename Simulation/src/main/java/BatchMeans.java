@@ -0,0 +1,143 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * BatchMeans: a confidence interval for the steady-state mean of a stream of
+ * correlated observations (waiting times of successive customers, say), by
+ * the method of batch means.
+ *
+ * The stream is cut into consecutive batches of equal size, and the batch
+ * means, being nearly independent when the batches are long, are treated as
+ * a sample. Memory stays constant: once MAX_BATCHES batches are complete,
+ * neighbouring batches are combined in pairs and the batch size doubles.
+ */
+
+class BatchMeans {
+  private static final int MAX_BATCHES = 64; // even
+  public static final int MIN_BATCHES = 10; // fewer give no interval
+
+  private final double[] batchSums = new double[MAX_BATCHES];
+  private int batches; // complete batches
+  private long batchSize;
+  private double currentSum;
+  private long currentCount;
+
+  /**
+   * Constructor.
+   */
+  public BatchMeans() {
+    reset();
+  }
+
+  /**
+   * reset: forget every observation.
+   */
+  public void reset() {
+    batches = 0;
+    batchSize = 1;
+    currentSum = 0;
+    currentCount = 0;
+  }
+
+  /**
+   * add: record the next observation.
+   *
+   * @param x double
+   */
+  public void add(double x) {
+    currentSum += x;
+    if (++currentCount < batchSize)
+      return;
+    batchSums[batches++] = currentSum;
+    currentSum = 0;
+    currentCount = 0;
+    if (batches == MAX_BATCHES) {
+      for (int i = 0; i < MAX_BATCHES / 2; i++)
+        batchSums[i] = batchSums[2 * i] + batchSums[2 * i + 1];
+      batches = MAX_BATCHES / 2;
+      batchSize *= 2;
+    }
+  }
+
+  public int getBatchCount() {
+    return batches;
+  }
+
+  public long getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * getMean: return the mean of the complete batches, or NaN if there are
+   * none.
+   *
+   * @return double
+   */
+  public double getMean() {
+    if (batches == 0)
+      return Double.NaN;
+    double sum = 0;
+    for (int i = 0; i < batches; i++)
+      sum += batchSums[i];
+    return sum / ((double) batches * batchSize);
+  }
+
+  /**
+   * getHalfWidth: return the half-width of a 95% confidence interval for
+   * the mean, or NaN if there are fewer than MIN_BATCHES batches.
+   *
+   * @return double
+   */
+  public double getHalfWidth() {
+    if (batches < MIN_BATCHES)
+      return Double.NaN;
+    RunningMoments means = new RunningMoments();
+    for (int i = 0; i < batches; i++)
+      means.add(batchSums[i] / batchSize);
+    return means.getHalfWidth();
+  }
+
+  /**
+   * getRelativeHalfWidth: return getHalfWidth() as a fraction of the mean,
+   * 0 if every batch mean is 0, or infinity if there are too few batches.
+   *
+   * @return double
+   */
+  public double getRelativeHalfWidth() {
+    final double halfWidth = getHalfWidth();
+    if (Double.isNaN(halfWidth))
+      return Double.POSITIVE_INFINITY;
+    if (halfWidth == 0)
+      return 0;
+    return halfWidth / Math.abs(getMean());
+  }
+
+  /**
+   * writeState: write the batches to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(batches);
+    for (int b = 0; b < batches; b++)
+      out.writeDouble(batchSums[b]);
+    out.writeLong(batchSize);
+    out.writeDouble(currentSum);
+    out.writeLong(currentCount);
+  }
+
+  /**
+   * readState: replace the batches with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    batches = in.readInt();
+    for (int b = 0; b < batches; b++)
+      batchSums[b] = in.readDouble();
+    batchSize = in.readLong();
+    currentSum = in.readDouble();
+    currentCount = in.readLong();
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * BinaryHeapEventSet: an event set kept as an array-based binary min-heap.
+ * Insertion and removal both cost O(log n), and the array is only reallocated
+ * when the heap outgrows it.
+ */
+
+class BinaryHeapEventSet implements EventSet {
+  private Event[] heap; // heap[0] is the earliest event
+  private int size;
+
+  /**
+   * Constructor.
+   */
+  public BinaryHeapEventSet() {
+    heap = new Event[64];
+    size = 0;
+  }
+
+  /**
+   * insert: add event e at the bottom of the heap and sift it up.
+   *
+   * @param e Sim.Event
+   */
+  public void insert(Event e) {
+    if (size == heap.length)
+      heap = java.util.Arrays.copyOf(heap, 2 * size);
+
+    int child = size++;
+    while (child > 0) {
+      final int parent = (child - 1) >>> 1;
+      final Event p = heap[parent];
+      if (!EventSet.precedes(e, p))
+        break;
+      heap[child] = p;
+      child = parent;
+    }
+    heap[child] = e;
+  }
+
+  /**
+   * takeFirst: remove the root of the heap, sift the last event down into
+   * its place, and return the old root.
+   *
+   * @return Sim.Event
+   */
+  public Event takeFirst() {
+    if (size == 0)
+      return null;
+
+    final Event first = heap[0];
+    final Event last = heap[--size];
+    heap[size] = null;
+    if (size > 0) {
+      int parent = 0;
+      final int half = size >>> 1;
+      while (parent < half) {
+        int child = 2 * parent + 1;
+        Event c = heap[child];
+        final int right = child + 1;
+        if (right < size && EventSet.precedes(heap[right], c))
+          c = heap[child = right];
+        if (!EventSet.precedes(c, last))
+          break;
+        heap[parent] = c;
+        parent = child;
+      }
+      heap[parent] = last;
+    }
+    return first;
+  }
+
+  /**
+   * peek: return the root of the heap.
+   *
+   * @return Sim.Event
+   */
+  public Event peek() {
+    return size == 0 ? null : heap[0];
+  }
+
+  /**
+   * size: return the number of events in the heap.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BinaryReportSink: writes the report rows in a compact columnar format.
+ *
+ * The file starts with the magic number MAGIC, a format version, the number
+ * of columns and, for each column, a type byte ('I' for int, 'D' for double)
+ * and its name (a short length and ASCII bytes). Blocks of up to BLOCK_ROWS
+ * rows follow, each an int row count and then each column's values in turn,
+ * big-endian; so a reader can take one column without decoding the others.
+ */
+
+class BinaryReportSink implements ReportSink {
+  public static final int MAGIC = 0x53494d52; // "SIMR"
+  public static final int VERSION = 1;
+  public static final int BLOCK_ROWS = 1024;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final double[][] columns = new double[ReportRow.COLUMNS.length][BLOCK_ROWS];
+  private int rows; // rows in the current block
+
+  /**
+   * Constructor.
+   *
+   * @param channel java.nio.channels.WritableByteChannel
+   */
+  public BinaryReportSink(WritableByteChannel channel) {
+    this.channel = channel;
+    buffer = ByteBuffer.allocate(4 + ReportRow.COLUMNS.length * 8 * BLOCK_ROWS);
+    rows = 0;
+  }
+
+  public void begin() {
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(ReportRow.COLUMNS.length);
+    for (int i = 0; i < ReportRow.COLUMNS.length; i++) {
+      buffer.put((byte) (ReportRow.isInteger(i) ? 'I' : 'D'));
+      final String name = ReportRow.COLUMNS[i];
+      buffer.putShort((short) name.length());
+      for (int j = 0; j < name.length(); j++)
+        buffer.put((byte) name.charAt(j));
+    }
+    drain();
+  }
+
+  public void write(ReportRow row) {
+    for (int i = 0; i < columns.length; i++)
+      columns[i][rows] = row.get(i);
+    if (++rows == BLOCK_ROWS)
+      writeBlock();
+  }
+
+  /**
+   * writeBlock: write the rows gathered so far as one block.
+   */
+  private void writeBlock() {
+    buffer.putInt(rows);
+    for (int i = 0; i < columns.length; i++)
+      if (ReportRow.isInteger(i))
+        for (int r = 0; r < rows; r++)
+          buffer.putInt((int) columns[i][r]);
+      else
+        for (int r = 0; r < rows; r++)
+          buffer.putDouble(columns[i][r]);
+    rows = 0;
+    drain();
+  }
+
+  /**
+   * drain: write the buffer to the channel.
+   */
+  private void drain() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffer.clear();
+  }
+
+  public void close() {
+    if (rows > 0)
+      writeBlock();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * read: read a whole file written by this sink and return its columns,
+   * each as an array of doubles, in the order of ReportRow.COLUMNS.
+   *
+   * @return double[][]
+   * @param channel java.nio.channels.ReadableByteChannel
+   */
+  public static double[][] read(ReadableByteChannel channel) throws IOException {
+    ByteBuffer in = ByteBuffer.allocate(1 << 16);
+    ByteArrayBuilder all = new ByteArrayBuilder();
+    while (channel.read(in) >= 0) {
+      in.flip();
+      all.add(in);
+      in.clear();
+    }
+    ByteBuffer b = ByteBuffer.wrap(all.bytes, 0, all.size);
+    if (b.getInt() != MAGIC)
+      throw new IOException("not a binary report");
+    if (b.getInt() != VERSION)
+      throw new IOException("unknown binary report version");
+    final int n = b.getInt();
+    char[] types = new char[n];
+    for (int i = 0; i < n; i++) {
+      types[i] = (char) b.get();
+      final int nameLength = b.getShort();
+      b.position(b.position() + nameLength);
+    }
+
+    List<double[]> blocks = new ArrayList<double[]>(); // one array per column per block
+    int total = 0;
+    while (b.hasRemaining()) {
+      final int rows = b.getInt();
+      for (int i = 0; i < n; i++) {
+        double[] values = new double[rows];
+        for (int r = 0; r < rows; r++)
+          values[r] = types[i] == 'I' ? b.getInt() : b.getDouble();
+        blocks.add(values);
+      }
+      total += rows;
+    }
+
+    double[][] columns = new double[n][total];
+    int row = 0;
+    for (int k = 0; k < blocks.size(); k += n) {
+      final int rows = blocks.get(k).length;
+      for (int i = 0; i < n; i++)
+        System.arraycopy(blocks.get(k + i), 0, columns[i], row, rows);
+      row += rows;
+    }
+    return columns;
+  }
+
+  /**
+   * ByteArrayBuilder: a growing byte array, for read().
+   */
+  private static final class ByteArrayBuilder {
+    byte[] bytes = new byte[1 << 16];
+    int size = 0;
+
+    void add(ByteBuffer b) {
+      final int n = b.remaining();
+      if (size + n > bytes.length)
+        bytes = java.util.Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + n));
+      b.get(bytes, size, n);
+      size += n;
+    }
+  }
+}
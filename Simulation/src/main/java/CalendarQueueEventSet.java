@@ -0,0 +1,235 @@
+/**
+ * CalendarQueueEventSet: an event set kept as a calendar queue (R. Brown,
+ * CACM 31(10), 1988).
+ *
+ * Time is cut into "days" of equal width, and day d is filed in bucket
+ * d mod nBuckets, like appointments on a desk calendar. Each bucket is a short
+ * list sorted by time, chained through Event.next, and the queue removes
+ * events by walking the calendar from the current day. The number of buckets
+ * doubles or halves as the queue grows or shrinks, and the day width is then
+ * re-estimated from the spacing of the earliest events, so insertion and
+ * removal take amortized O(1) time when the event times are well spread.
+ *
+ * The spacing can change while the size does not, so the queue also counts
+ * the days and events it steps over; if, over as many removals as there
+ * are events, that comes to more than a few per removal, the calendar is
+ * rebuilt with a fresh estimate of the width.
+ */
+
+class CalendarQueueEventSet implements EventSet {
+  private static final int MIN_BUCKETS = 2;
+  private static final int SAMPLE_SIZE = 25; // events used to estimate width
+  private static final int MAX_STEPS = 8; // average steps per removal allowed
+
+  private Event[] buckets; // bucket heads; nBuckets is a power of two
+  private int mask; // nBuckets - 1
+  private double width; // length of one day
+  private long currentDay; // no event is due on an earlier day
+  private int size;
+  private Event[] scratch; // reused while resizing
+
+  // since the width was last estimated: removals, and the days and events
+  // stepped over by insertions and removals
+  private int removals;
+  private long steps;
+
+  /**
+   * Constructor.
+   */
+  public CalendarQueueEventSet() {
+    buckets = new Event[MIN_BUCKETS];
+    mask = MIN_BUCKETS - 1;
+    width = 1.0;
+    currentDay = Long.MIN_VALUE;
+    size = 0;
+    scratch = new Event[16];
+    removals = 0;
+    steps = 0;
+  }
+
+  /**
+   * dayOf: return the calendar day on which time falls.
+   *
+   * @return long
+   * @param time double
+   */
+  private long dayOf(double time) {
+    return (long) Math.floor(time / width);
+  }
+
+  /**
+   * insert: file event e in the bucket for its day, behind every event due
+   * at the same time or earlier.
+   *
+   * @param e Sim.Event
+   */
+  public void insert(Event e) {
+    final long day = dayOf(e.getTime());
+    if (size == 0 || day < currentDay)
+      currentDay = day;
+    enqueue(e, (int) day & mask);
+    size++;
+    if (size > 2 * buckets.length)
+      resize(2 * buckets.length);
+  }
+
+  /**
+   * enqueue: put event e in its place in bucket b.
+   *
+   * @param e Sim.Event
+   * @param b int
+   */
+  private void enqueue(Event e, int b) {
+    final double time = e.getTime();
+    Event ahead = buckets[b];
+    if (ahead == null || time < ahead.getTime()) {
+      e.next = ahead;
+      buckets[b] = e;
+      return;
+    }
+    Event behind = ahead;
+    ahead = ahead.next;
+    while (ahead != null && ahead.getTime() <= time) {
+      behind = ahead;
+      ahead = ahead.next;
+      steps++;
+    }
+    behind.next = e;
+    e.next = ahead;
+  }
+
+  /**
+   * takeFirst: remove and return the earliest event. The width is
+   * re-estimated if the removals have been stepping over too much.
+   *
+   * @return Sim.Event
+   */
+  public Event takeFirst() {
+    if (size == 0)
+      return null;
+
+    final int b = firstBucket();
+    final Event first = buckets[b];
+    buckets[b] = first.next;
+    first.next = null;
+    size--;
+    if (size < buckets.length / 2 && buckets.length > MIN_BUCKETS)
+      resize(buckets.length / 2);
+    else if (++removals >= size && removals >= SAMPLE_SIZE) {
+      if (steps > (long) MAX_STEPS * removals)
+        resize(buckets.length);
+      removals = 0;
+      steps = 0;
+    }
+    return first;
+  }
+
+  /**
+   * peek: return the earliest event.
+   *
+   * @return Sim.Event
+   */
+  public Event peek() {
+    return size == 0 ? null : buckets[firstBucket()];
+  }
+
+  /**
+   * firstBucket: return the bucket whose head is the earliest event, moving
+   * the current day up to that event's. The calendar is walked one day at a
+   * time from the current day; if a whole year goes by without an event,
+   * the earliest bucket head is found directly instead. Called only when
+   * the calendar is not empty.
+   *
+   * @return int
+   */
+  private int firstBucket() {
+    int b = (int) currentDay & mask;
+    int i = 0;
+    for (; i < buckets.length; i++) {
+      final Event head = buckets[b];
+      if (head != null && dayOf(head.getTime()) == currentDay) {
+        steps += i;
+        return b;
+      }
+      currentDay++;
+      b = (b + 1) & mask;
+    }
+    steps += i;
+
+    // Sparse calendar: jump straight to the earliest event.
+    Event first = null;
+    for (i = 0; i < buckets.length; i++) {
+      final Event head = buckets[i];
+      if (head != null && (first == null || EventSet.precedes(head, first))) {
+        first = head;
+        b = i;
+      }
+    }
+    currentDay = dayOf(first.getTime());
+    return b;
+  }
+
+  /**
+   * resize: rebuild the calendar with n buckets, re-estimating the day width
+   * from the average gap between the earliest events (gaps more than twice
+   * the first average are ignored as outliers).
+   *
+   * @param n int
+   */
+  private void resize(int n) {
+    removals = 0;
+    steps = 0;
+
+    // Gather every event, in order.
+    if (scratch.length < size)
+      scratch = new Event[Math.max(size, 2 * scratch.length)];
+    int count = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      for (Event e = buckets[i]; e != null; e = e.next)
+        scratch[count++] = e;
+      buckets[i] = null;
+    }
+    java.util.Arrays.sort(scratch, 0, count, EventSet.ORDER);
+
+    // Estimate the new day width.
+    final int samples = Math.min(count, SAMPLE_SIZE);
+    if (samples > 1) {
+      final double average = (scratch[samples - 1].getTime() - scratch[0].getTime()) / (samples - 1);
+      double sum = 0;
+      int gaps = 0;
+      for (int i = 1; i < samples; i++) {
+        final double gap = scratch[i].getTime() - scratch[i - 1].getTime();
+        if (gap <= 2 * average) {
+          sum += gap;
+          gaps++;
+        }
+      }
+      final double newWidth = gaps > 0 ? 3 * sum / gaps : 0;
+      if (newWidth > 0 && !Double.isInfinite(newWidth))
+        width = newWidth;
+    }
+
+    // Refile the events; going backwards keeps each bucket sorted.
+    if (buckets.length != n)
+      buckets = new Event[n];
+    mask = n - 1;
+    if (count > 0)
+      currentDay = dayOf(scratch[0].getTime());
+    for (int i = count - 1; i >= 0; i--) {
+      final Event e = scratch[i];
+      final int b = (int) dayOf(e.getTime()) & mask;
+      e.next = buckets[b];
+      buckets[b] = e;
+      scratch[i] = null;
+    }
+  }
+
+  /**
+   * size: return the number of events in the calendar.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+}
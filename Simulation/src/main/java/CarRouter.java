@@ -0,0 +1,19 @@
+/**
+ * CarRouter: what happens to a car that balks, beyond the statistics of the
+ * station it balked at. A single station has none, and the car simply
+ * leaves; in a StationNetwork the driver may go on to another station.
+ */
+
+interface CarRouter {
+  /**
+   * balked: the car has just balked at the station ctx models, at
+   * ctx.simulationTime. The car is recycled as soon as this returns, so
+   * anything needed of it must be copied.
+   *
+   * @param ctx  Sim.SimulationContext
+   * @param car  Sim.Car
+   * @param hops int stations the car had balked at before this one
+   * @param from int the station it last balked at, or -1
+   */
+  void balked(SimulationContext ctx, Car car, int hops, int from);
+}
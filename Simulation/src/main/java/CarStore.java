@@ -0,0 +1,32 @@
+/**
+ * CarStore: the first-in, first-out store that holds the cars waiting in a
+ * CarQueue. The CarQueue checks that the store is not empty before taking a
+ * car from it.
+ */
+
+interface CarStore {
+
+  /**
+   * insert: add a car at the back of the store. The store takes the car
+   * over; the caller must not use it afterwards.
+   *
+   * @param car Sim.Car
+   */
+  void insert(Car car);
+
+  /**
+   * takeFirst: remove the car at the front of the store and return it, or
+   * a car with the same attributes.
+   *
+   * @return Sim.Car
+   */
+  Car takeFirst();
+
+  /**
+   * firstArrivalTime: return the arrival time of the car at the front of
+   * the store, which must not be empty.
+   *
+   * @return double
+   */
+  double firstArrivalTime();
+}
@@ -0,0 +1,185 @@
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Checkpoint: the whole state of a simulation run at one moment - its
+ * parameters and seeds, the clock, the random-number streams, the
+ * statistics, the cars at the station and the events to come - saved in a
+ * compact binary file, from which the run can be carried on.
+ *
+ * A run saves a checkpoint after every SimulationParameters.checkpointEvery
+ * reports if checkpointPath is set; the file is written beside the old one,
+ * forced to disk, and then moved over it, so a run or machine that dies
+ * mid-save leaves the previous checkpoint whole. Restoring a checkpoint
+ * continues the run exactly: the reports that follow are those the run
+ * would have printed had it not stopped, whatever event list or car queue
+ * the restored run uses. A checkpoint can also be forked: restored with new
+ * seeds, or with different model constants, it starts many what-if runs
+ * from one warmed-up state.
+ */
+
+final class Checkpoint {
+  public static final int MAGIC = 0x53494d43; // "SIMC"
+  public static final int VERSION = 6;
+
+  private final SimulationParameters params;
+  private final SeedSet seeds;
+  private final double time;
+  private final byte[] state; // as written by SimulationContext.writeState
+
+  private Checkpoint(SimulationParameters params, SeedSet seeds, double time, byte[] state) {
+    this.params = params;
+    this.seeds = seeds;
+    this.time = time;
+    this.state = state;
+  }
+
+  /**
+   * save: save the state of ctx in the file at path, replacing the file
+   * only once the new checkpoint is complete.
+   *
+   * @param ctx  Sim.SimulationContext
+   * @param path java.lang.String
+   */
+  public static void save(SimulationContext ctx, String path) throws IOException {
+    Path target = Paths.get(path).toAbsolutePath();
+    Path partial = target.resolveSibling(target.getFileName() + ".part");
+    try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      ctx.getParameters().write(out);
+      ctx.seeds.write(out);
+      out.writeDouble(ctx.simulationTime);
+      ctx.writeState(out);
+      out.flush();
+      channel.force(true); // on disk before it replaces the old checkpoint
+    }
+    try {
+      Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * load: read the checkpoint in the file at path.
+   *
+   * @return Sim.Checkpoint
+   * @param path java.lang.String
+   */
+  public static Checkpoint load(String path) throws IOException {
+    byte[] bytes = Files.readAllBytes(Paths.get(path));
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    if (bytes.length < 8 || in.readInt() != MAGIC)
+      throw new IOException(path + " is not a checkpoint");
+    final int version = in.readInt();
+    if (version != VERSION)
+      throw new IOException(path + ": unsupported checkpoint version " + version);
+    SimulationParameters params = SimulationParameters.read(in);
+    SeedSet seeds = SeedSet.read(in);
+    final double time = in.readDouble();
+    return new Checkpoint(params, seeds, time, Arrays.copyOfRange(bytes, bytes.length - in.available(),
+        bytes.length));
+  }
+
+  /**
+   * getParameters: return a copy of the parameters of the saved run, to
+   * restore as they are or changed.
+   *
+   * @return Sim.SimulationParameters
+   */
+  public SimulationParameters getParameters() {
+    return params.copy();
+  }
+
+  public SeedSet getSeeds() {
+    return seeds;
+  }
+
+  /**
+   * getTime: return the simulation time at which the run was saved.
+   *
+   * @return double
+   */
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * restore: return the saved run, ready to resume() exactly where it
+   * stopped, printing its reports on out.
+   *
+   * @return Sim.SimulationContext
+   * @param out java.io.PrintStream
+   */
+  public SimulationContext restore(PrintStream out) throws IOException {
+    return restore(params, null, out);
+  }
+
+  /**
+   * restore: return the saved run with the given parameters, ready to
+   * resume(). The number of pumps must be the one saved and the ending time
+   * must lie after the checkpoint; anything else may change. If newSeeds is
+   * not null the run draws its random numbers afresh from them from now on,
+   * forking from the saved run; otherwise the streams carry on as saved, and
+   * must be of the kind saved.
+   *
+   * @return Sim.SimulationContext
+   * @param p        Sim.SimulationParameters
+   * @param newSeeds Sim.SeedSet or null
+   * @param out      java.io.PrintStream
+   */
+  public SimulationContext restore(SimulationParameters p, SeedSet newSeeds, PrintStream out) throws IOException {
+    if (p.numPumps != params.numPumps)
+      throw new IllegalArgumentException("the checkpoint has " + params.numPumps + " pumps, not " + p.numPumps);
+    if (!(p.endingTime > time))
+      throw new IllegalArgumentException("the checkpoint was made at " + time + ", after the ending time");
+    if (newSeeds == null && !p.rngKind.equals(params.rngKind))
+      throw new IllegalArgumentException("the checkpoint's streams are " + params.rngKind + ", not " + p.rngKind);
+
+    SimulationContext ctx = new SimulationContext(p, newSeeds != null ? newSeeds : seeds, out);
+    ctx.readState(new DataInputStream(new ByteArrayInputStream(state)), newSeeds == null);
+    return ctx;
+  }
+
+  /**
+   * replicate: fork a run from the checkpoint with parameters p and seeds
+   * newSeeds, without printing anything, and return a summary of its
+   * results at the end.
+   *
+   * @return Sim.ReplicationSummary
+   * @param p        Sim.SimulationParameters
+   * @param newSeeds Sim.SeedSet
+   */
+  public ReplicationSummary replicate(SimulationParameters p, SeedSet newSeeds) throws IOException {
+    return replicate(p, newSeeds, null);
+  }
+
+  /**
+   * replicate: as above, counting the events of the run in metrics, if not
+   * null.
+   *
+   * @return Sim.ReplicationSummary
+   * @param p        Sim.SimulationParameters
+   * @param newSeeds Sim.SeedSet
+   * @param metrics  Sim.EngineMetrics
+   */
+  public ReplicationSummary replicate(SimulationParameters p, SeedSet newSeeds, EngineMetrics metrics)
+      throws IOException {
+    SimulationParameters quiet = p.copy();
+    quiet.reportInterval = Double.POSITIVE_INFINITY;
+    quiet.checkpointPath = null;
+    PrintStream discard = new PrintStream(new OutputStream() {
+      public void write(int b) {
+      }
+    });
+    SimulationContext ctx = restore(quiet, newSeeds, discard);
+    ctx.metrics = metrics;
+    return ctx.resume().summarize();
+  }
+}
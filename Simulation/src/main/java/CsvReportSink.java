@@ -0,0 +1,39 @@
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * CsvReportSink: writes the report rows as comma-separated values, with a
+ * heading line of column names. An unknown quantity is an empty field.
+ */
+
+class CsvReportSink extends TextReportSink {
+  /**
+   * Constructor.
+   *
+   * @param channel java.nio.channels.WritableByteChannel
+   */
+  public CsvReportSink(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  public void begin() {
+    for (int i = 0; i < ReportRow.COLUMNS.length; i++) {
+      if (i > 0)
+        line.append(',');
+      line.append(ReportRow.COLUMNS[i]);
+    }
+    emitLine();
+  }
+
+  public void write(ReportRow row) {
+    for (int i = 0; i < ReportRow.COLUMNS.length; i++) {
+      if (i > 0)
+        line.append(',');
+      final double v = row.get(i);
+      if (ReportRow.isInteger(i))
+        line.append((int) v);
+      else if (!Double.isNaN(v))
+        line.append(v);
+    }
+    emitLine();
+  }
+}
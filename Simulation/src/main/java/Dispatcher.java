@@ -0,0 +1,92 @@
+/**
+ * Dispatcher: how arriving cars are matched with pumps. It decides which
+ * pump an arriving car takes, or which lane of the car queue it waits in,
+ * and which waiting car a pump serves once it is free.
+ *
+ * "shared" is the original station: one line for all the pumps, and the
+ * free pumps taken last-released first. "pooled" keeps one line per fuel
+ * type, and gives a car the fastest free pump that sells its fuel. "lanes"
+ * gives each pump a lane of its own, and the car joins the lane with the
+ * fewest cars ahead of it among the pumps that sell its fuel; it stays
+ * there, without changing lanes. Both keep the pumps in indexed heaps (see
+ * IndexedHeap), so a car is placed in O(log n) time for n pumps.
+ */
+
+interface Dispatcher {
+  // the names accepted by create()
+  String[] KINDS = { "shared", "pooled", "lanes" };
+  String DEFAULT_KIND = "shared";
+
+  /**
+   * queueSeenBy: return the number of cars an arriving car that needs the
+   * given fuel would see waiting ahead of it, which decides whether it
+   * balks.
+   *
+   * @return int
+   * @param fuel int
+   */
+  int queueSeenBy(int fuel);
+
+  /**
+   * join: send a car that has decided to stay to a pump, or to the queue.
+   * The caller must not use the car afterwards.
+   *
+   * @param car  Sim.Car
+   * @param fuel int
+   */
+  void join(Car car, int fuel);
+
+  /**
+   * release: the car at pump has just left; serve the next car waiting for
+   * it, if there is one, or make it available.
+   *
+   * @param pump Sim.Pump
+   */
+  void release(Pump pump);
+
+  /**
+   * restored: bring what the dispatcher keeps of its own in step with the
+   * car queue and pump stand, which a checkpoint has just restored.
+   */
+  void restored();
+
+  /**
+   * lanes: return the number of lanes the car queue needs for the named
+   * kind of dispatcher.
+   *
+   * @return int
+   * @param kind      java.lang.String
+   * @param numPumps  int
+   * @param fuelTypes int
+   */
+  static int lanes(String kind, int numPumps, int fuelTypes) {
+    if ("shared".equals(kind))
+      return 1;
+    else if ("pooled".equals(kind))
+      return fuelTypes;
+    else if ("lanes".equals(kind))
+      return numPumps;
+    throw new IllegalArgumentException("unknown dispatch kind: " + kind);
+  }
+
+  /**
+   * create: return a new dispatcher of the named kind for the car queue
+   * and pump stand of ctx.
+   *
+   * @return Sim.Dispatcher
+   * @param kind      java.lang.String
+   * @param ctx       Sim.SimulationContext
+   * @param fuelTypes int
+   */
+  static Dispatcher create(String kind, SimulationContext ctx, int fuelTypes) {
+    if ("shared".equals(kind)) {
+      if (fuelTypes > 1)
+        throw new IllegalArgumentException("the shared line cannot match fuel types; use pooled or lanes");
+      return new SharedDispatcher(ctx);
+    } else if ("pooled".equals(kind))
+      return new PooledDispatcher(ctx, fuelTypes);
+    else if ("lanes".equals(kind))
+      return new LaneDispatcher(ctx, fuelTypes);
+    throw new IllegalArgumentException("unknown dispatch kind: " + kind);
+  }
+}
@@ -0,0 +1,197 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * EngineMetrics: counts what the simulation engine does - events of each
+ * kind, the deepest the event list and the car queue have been - and times
+ * a sample of the event routines of each kind, while runs go on.
+ *
+ * One object may serve any number of runs on any number of threads: the
+ * counters are LongAdders, striped so that threads do not contend, and the
+ * peaks are LongAccumulators, which write only when a peak is passed. One
+ * event in SAMPLE_RATE, picked at random, is timed. A run keeps no metrics
+ * unless SimulationContext.metrics is set, and then costs one null test per
+ * event.
+ */
+
+class EngineMetrics implements EngineMetricsMBean {
+  public static final int SAMPLE_RATE = 64;
+
+  /**
+   * Kind: the counters of one Event subclass.
+   */
+  private static final class Kind {
+    final Class<?> type;
+    final LongAdder count = new LongAdder();
+    final LongAdder samples = new LongAdder();
+    final LongAdder sampledNanos = new LongAdder();
+
+    Kind(Class<?> type) {
+      this.type = type;
+    }
+  }
+
+  private volatile Kind[] kinds = new Kind[0]; // grows, copied on write
+  private final LongAccumulator peakEventListSize = new LongAccumulator(Math::max, 0);
+  private final LongAccumulator peakQueueLength = new LongAccumulator(Math::max, 0);
+  private final long startNanos;
+  private ObjectName name; // null unless registered
+
+  /**
+   * Constructor: start the clock for the event rate now.
+   */
+  public EngineMetrics() {
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * kindOf: return the counters of the event's class, adding them if the
+   * class is new.
+   *
+   * @return Sim.EngineMetrics.Kind
+   * @param e Sim.Event
+   */
+  private Kind kindOf(Event e) {
+    final Class<?> type = e.getClass();
+    for (Kind k : kinds)
+      if (k.type == type)
+        return k;
+    synchronized (this) {
+      for (Kind k : kinds)
+        if (k.type == type)
+          return k;
+      Kind k = new Kind(type);
+      Kind[] more = Arrays.copyOf(kinds, kinds.length + 1);
+      more[kinds.length] = k;
+      kinds = more;
+      return k;
+    }
+  }
+
+  /**
+   * happen: make event e happen in ctx, counting it, timing it if it is
+   * sampled, and noting the depths of the event list and the car queue
+   * afterwards.
+   *
+   * @param e   Sim.Event
+   * @param ctx Sim.SimulationContext
+   */
+  public void happen(Event e, SimulationContext ctx) {
+    final Kind kind = kindOf(e);
+    kind.count.increment();
+    if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+      final long start = System.nanoTime();
+      e.makeItHappen(ctx);
+      kind.sampledNanos.add(System.nanoTime() - start);
+      kind.samples.increment();
+    } else
+      e.makeItHappen(ctx);
+    peakEventListSize.accumulate(ctx.eventList.size());
+    peakQueueLength.accumulate(ctx.carQueue.getQueueSize());
+  }
+
+  public long getEvents() {
+    long events = 0;
+    for (Kind k : kinds)
+      events += k.count.sum();
+    return events;
+  }
+
+  /**
+   * getEventsPerSecond: return the events per second of wall-clock time
+   * since the metrics were made.
+   *
+   * @return double
+   */
+  public double getEventsPerSecond() {
+    final long nanos = System.nanoTime() - startNanos;
+    return nanos > 0 ? getEvents() * 1e9 / nanos : 0;
+  }
+
+  public long getPeakEventListSize() {
+    return peakEventListSize.get();
+  }
+
+  public long getPeakQueueLength() {
+    return peakQueueLength.get();
+  }
+
+  /**
+   * getEventKinds: return the names of the event classes seen, in the order
+   * of getEventCounts() and getMeanNanos().
+   *
+   * @return java.lang.String[]
+   */
+  public String[] getEventKinds() {
+    final Kind[] k = kinds;
+    String[] names = new String[k.length];
+    for (int i = 0; i < k.length; i++)
+      names[i] = k[i].type.getSimpleName();
+    return names;
+  }
+
+  public long[] getEventCounts() {
+    final Kind[] k = kinds;
+    long[] counts = new long[k.length];
+    for (int i = 0; i < k.length; i++)
+      counts[i] = k[i].count.sum();
+    return counts;
+  }
+
+  /**
+   * getMeanNanos: return the mean time, in nanoseconds, that the sampled
+   * event routines of each kind took, or NaN for a kind not yet sampled.
+   *
+   * @return double[]
+   */
+  public double[] getMeanNanos() {
+    final Kind[] k = kinds;
+    double[] means = new double[k.length];
+    for (int i = 0; i < k.length; i++) {
+      final long samples = k[i].samples.sum();
+      means[i] = samples > 0 ? (double) k[i].sampledNanos.sum() / samples : Double.NaN;
+    }
+    return means;
+  }
+
+  /**
+   * register: make the metrics visible through the platform MBean server,
+   * as Sim:type=EngineMetrics, replacing any metrics registered before. A
+   * failure to register is reported and otherwise ignored, since the runs
+   * do not depend on it.
+   */
+  public void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName n = new ObjectName("Sim:type=EngineMetrics");
+      if (server.isRegistered(n))
+        server.unregisterMBean(n);
+      server.registerMBean(new StandardMBean(this, EngineMetricsMBean.class), n);
+      name = n;
+    } catch (JMException e) {
+      System.out.println("Error! cannot register the engine metrics: " + e.getMessage());
+    }
+  }
+
+  /**
+   * unregister: take the metrics out of the platform MBean server, if they
+   * are registered.
+   */
+  public void unregister() {
+    if (name == null)
+      return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException e) {
+      // already gone
+    }
+    name = null;
+  }
+}
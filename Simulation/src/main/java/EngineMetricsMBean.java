@@ -0,0 +1,21 @@
+/**
+ * EngineMetricsMBean: what EngineMetrics shows through JMX (as
+ * Sim:type=EngineMetrics), for jconsole or any other JMX client to watch
+ * while runs go on. JMX requires this interface to be public.
+ */
+
+public interface EngineMetricsMBean {
+  long getEvents();
+
+  double getEventsPerSecond();
+
+  long getPeakEventListSize();
+
+  long getPeakQueueLength();
+
+  String[] getEventKinds();
+
+  long[] getEventCounts();
+
+  double[] getMeanNanos();
+}
@@ -0,0 +1,61 @@
+/**
+ * EventSet: the priority queue that holds the pending events of an EventList.
+ *
+ * Events are ordered by time, and events due at the same time by the sequence
+ * number the EventList gave them when they were inserted. That makes the order
+ * total, so every implementation hands out events in exactly the same order as
+ * the original sorted linked list did.
+ */
+
+interface EventSet {
+
+  // the (time, sequence) order shared by every event set
+  java.util.Comparator<Event> ORDER = new java.util.Comparator<Event>() {
+    public int compare(Event a, Event b) {
+      return precedes(a, b) ? -1 : precedes(b, a) ? 1 : 0;
+    }
+  };
+
+  /**
+   * insert: add an event to the set.
+   *
+   * @param e Sim.Event
+   */
+  void insert(Event e);
+
+  /**
+   * takeFirst: remove the earliest event from the set and return it, or
+   * return null if the set is empty.
+   *
+   * @return Sim.Event
+   */
+  Event takeFirst();
+
+  /**
+   * peek: return the earliest event without removing it, or return null if
+   * the set is empty.
+   *
+   * @return Sim.Event
+   */
+  Event peek();
+
+  /**
+   * size: return the number of events in the set.
+   *
+   * @return int
+   */
+  int size();
+
+  /**
+   * precedes: return true if event a must happen before event b.
+   *
+   * @return boolean
+   * @param a Sim.Event
+   * @param b Sim.Event
+   */
+  static boolean precedes(Event a, Event b) {
+    final double ta = a.getTime();
+    final double tb = b.getTime();
+    return ta < tb || (ta == tb && a.sequence < b.sequence);
+  }
+}
@@ -0,0 +1,317 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * GoldenRegression: guards the results of the simulation against changes
+ * made for speed. For a matrix of random-number generators, seed sets and
+ * pump counts it records the canonical output of a run - the report table,
+ * the distributions and the time averages - and a TraceHash of its every
+ * happening, and later checks that runs, with any event list and car queue,
+ * still give exactly those.
+ *
+ * The hashes are the fast path: they show that a run's history is unchanged
+ * event for event without storing it, so they also cover long runs whose
+ * outputs are not kept. When a hash differs, the run is repeated with the
+ * simplest event list and car queue to find where the two first part.
+ */
+
+final class GoldenRegression {
+  public static final int[] PUMPS = { 1, 2, 3, 5 };
+  public static final SeedSet[] SEEDS = { new SeedSet(1, 2, 3, 4), new SeedSet(7, 8, 9, 10),
+      new SeedSet(11, 12, 13, 14) };
+  public static final double ENDING_TIME = 200000;
+  public static final double LONG_ENDING_TIME = 20000000; // hashes only
+  static final String OUTPUTS = "outputs.txt";
+  static final String HASHES = "hashes.txt";
+
+  // the event set and car store taken as the reference when runs differ
+  private static final String REFERENCE_EVENT_LIST = "list";
+  private static final String REFERENCE_CAR_QUEUE = "linked";
+  private static final long DIVERGENCE_INTERVAL = 1024;
+
+  /**
+   * Case: one run of the matrix.
+   */
+  static final class Case {
+    public final String rngKind;
+    public final int numPumps;
+    public final SeedSet seeds;
+    public final double endingTime;
+
+    Case(String rngKind, int numPumps, SeedSet seeds, double endingTime) {
+      this.rngKind = rngKind;
+      this.numPumps = numPumps;
+      this.seeds = seeds;
+      this.endingTime = endingTime;
+    }
+
+    /**
+     * key: return the name of the case in the golden files.
+     *
+     * @return java.lang.String
+     */
+    String key() {
+      return rngKind + " " + numPumps + " " + seeds + " " + (long) endingTime;
+    }
+  }
+
+  private GoldenRegression() {
+  }
+
+  /**
+   * cases: return the runs whose outputs and hashes are kept.
+   *
+   * @return java.util.List
+   */
+  static List<Case> cases() {
+    List<Case> cases = new ArrayList<Case>();
+    for (String kind : RandomStreams.KINDS)
+      for (SeedSet seeds : SEEDS)
+        for (int pumps : PUMPS)
+          cases.add(new Case(kind, pumps, seeds, ENDING_TIME));
+    return cases;
+  }
+
+  /**
+   * longCases: return the long runs of which only the hashes are kept.
+   *
+   * @return java.util.List
+   */
+  static List<Case> longCases() {
+    List<Case> cases = new ArrayList<Case>();
+    for (String kind : RandomStreams.KINDS)
+      cases.add(new Case(kind, 3, SEEDS[0], LONG_ENDING_TIME));
+    return cases;
+  }
+
+  /**
+   * run: make the run c with the given event list and car queue, feeding
+   * its happenings to hash, and return its canonical output.
+   *
+   * @return java.lang.String
+   * @param c             Sim.GoldenRegression.Case
+   * @param eventListKind java.lang.String
+   * @param carQueueKind  java.lang.String
+   * @param hash          Sim.TraceHash
+   */
+  static String run(Case c, String eventListKind, String carQueueKind, TraceHash hash) {
+    SimulationParameters params = new SimulationParameters();
+    params.numPumps = c.numPumps;
+    params.endingTime = c.endingTime;
+    params.reportInterval = c.endingTime / 10;
+    params.rngKind = c.rngKind;
+    params.eventListKind = eventListKind;
+    params.carQueueKind = carQueueKind;
+    params.reportDistributions = true;
+    params.reportTimeAverages = true;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+    SimulationContext ctx = new SimulationContext(params, c.seeds, out);
+    ctx.trace = hash;
+    ctx.run();
+    out.flush();
+    return bytes.toString();
+  }
+
+  /**
+   * record: run every case with the default event list and car queue, and
+   * write their outputs and hashes to the golden files in dir.
+   *
+   * @param dir java.io.File
+   */
+  static void record(File dir) throws IOException {
+    dir.mkdirs();
+    try (PrintWriter outputs = new PrintWriter(new FileWriter(new File(dir, OUTPUTS)));
+        PrintWriter hashes = new PrintWriter(new FileWriter(new File(dir, HASHES)))) {
+      for (Case c : cases()) {
+        TraceHash hash = new TraceHash();
+        outputs.println("== " + c.key());
+        outputs.print(run(c, EventList.DEFAULT_KIND, CarQueue.DEFAULT_KIND, hash));
+        hashes.println(c.key() + " " + hash);
+      }
+      for (Case c : longCases()) {
+        TraceHash hash = new TraceHash();
+        run(c, EventList.DEFAULT_KIND, CarQueue.DEFAULT_KIND, hash);
+        hashes.println(c.key() + " " + hash);
+      }
+    }
+  }
+
+  /**
+   * readOutputs: read the outputs written by record(), by case key.
+   *
+   * @return java.util.Map
+   * @param in java.io.BufferedReader
+   */
+  static Map<String, String> readOutputs(BufferedReader in) throws IOException {
+    Map<String, String> outputs = new HashMap<String, String>();
+    String key = null;
+    StringBuilder text = new StringBuilder();
+    String line;
+    while ((line = in.readLine()) != null) {
+      if (line.startsWith("== ")) {
+        if (key != null)
+          outputs.put(key, text.toString());
+        key = line.substring(3);
+        text.setLength(0);
+      } else
+        text.append(line).append(System.lineSeparator());
+    }
+    if (key != null)
+      outputs.put(key, text.toString());
+    return outputs;
+  }
+
+  /**
+   * readHashes: read the hashes written by record(), by case key, each as
+   * the record count and the hash.
+   *
+   * @return java.util.Map
+   * @param in java.io.BufferedReader
+   */
+  static Map<String, String> readHashes(BufferedReader in) throws IOException {
+    Map<String, String> hashes = new HashMap<String, String>();
+    String line;
+    while ((line = in.readLine()) != null) {
+      String[] fields = line.trim().split(" ");
+      if (fields.length < 3)
+        continue;
+      final int split = line.lastIndexOf(' ', line.lastIndexOf(' ') - 1);
+      hashes.put(line.substring(0, split), line.substring(split + 1));
+    }
+    return hashes;
+  }
+
+  /**
+   * verify: run the cases with the given event list and car queue, and
+   * return a description of every way they differ from the golden outputs
+   * and hashes; none if all is well. With hashesOnly, the outputs are not
+   * compared and the long runs are checked as well.
+   *
+   * @return java.util.List
+   * @param outputs       java.util.Map as read by readOutputs()
+   * @param hashes        java.util.Map as read by readHashes()
+   * @param eventListKind java.lang.String
+   * @param carQueueKind  java.lang.String
+   * @param hashesOnly    boolean
+   */
+  static List<String> verify(Map<String, String> outputs, Map<String, String> hashes, String eventListKind,
+      String carQueueKind, boolean hashesOnly) {
+    List<String> failures = new ArrayList<String>();
+    List<Case> cases = cases();
+    if (hashesOnly)
+      cases.addAll(longCases());
+    for (Case c : cases) {
+      final String expectedHash = hashes.get(c.key());
+      if (expectedHash == null) {
+        failures.add(c.key() + ": no golden hash");
+        continue;
+      }
+      TraceHash hash = new TraceHash(DIVERGENCE_INTERVAL);
+      final String output = run(c, eventListKind, carQueueKind, hash);
+      if (!hash.toString().equals(expectedHash))
+        failures.add(c.key() + ": hash " + hash + ", expected " + expectedHash
+            + divergence(c, eventListKind, carQueueKind, hash));
+      if (!hashesOnly && c.endingTime == ENDING_TIME && !output.equals(outputs.get(c.key())))
+        failures.add(c.key() + ": output differs" + firstDifference(outputs.get(c.key()), output));
+    }
+    return failures;
+  }
+
+  /**
+   * divergence: describe where a run's history first departs from that of
+   * the same run with the reference event list and car queue.
+   *
+   * @return java.lang.String
+   */
+  private static String divergence(Case c, String eventListKind, String carQueueKind, TraceHash hash) {
+    if (eventListKind.equals(REFERENCE_EVENT_LIST) && carQueueKind.equals(REFERENCE_CAR_QUEUE))
+      return "";
+    TraceHash reference = new TraceHash(DIVERGENCE_INTERVAL);
+    run(c, REFERENCE_EVENT_LIST, REFERENCE_CAR_QUEUE, reference);
+    if (reference.getHash() == hash.getHash())
+      return "; the reference run agrees with it";
+    return "; it agrees with the reference run for the first " + hash.firstDivergence(reference) + " records";
+  }
+
+  /**
+   * firstDifference: describe the first line at which two outputs differ.
+   *
+   * @return java.lang.String
+   */
+  private static String firstDifference(String expected, String actual) {
+    if (expected == null)
+      return " (no golden output)";
+    String[] e = expected.split("\\R", -1);
+    String[] a = actual.split("\\R", -1);
+    for (int i = 0; i < Math.min(e.length, a.length); i++)
+      if (!e[i].equals(a[i]))
+        return " at line " + (i + 1) + ":\n  expected: " + e[i] + "\n  actual:   " + a[i];
+    return " in length: " + e.length + " lines expected, " + a.length + " found";
+  }
+
+  /**
+   * main entrypoint: -record dir writes the golden files to dir; otherwise
+   * the golden files in the directory given are checked, and every
+   * difference is printed. Options: -eventlist kind and -carqueue kind
+   * (default: every kind of each), -hashonly (compare only hashes, and
+   * include the long runs).
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException {
+    String recordDir = null;
+    String goldenDir = null;
+    List<String> eventLists = new ArrayList<String>(Arrays.asList(EventList.KINDS));
+    List<String> carQueues = new ArrayList<String>(Arrays.asList(CarQueue.KINDS));
+    boolean hashesOnly = false;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-record") && i + 1 < args.length)
+        recordDir = args[++i];
+      else if (args[i].equals("-eventlist") && i + 1 < args.length)
+        eventLists = Collections.singletonList(args[++i]);
+      else if (args[i].equals("-carqueue") && i + 1 < args.length)
+        carQueues = Collections.singletonList(args[++i]);
+      else if (args[i].equals("-hashonly"))
+        hashesOnly = true;
+      else if (!args[i].startsWith("-") && goldenDir == null)
+        goldenDir = args[i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    if (recordDir != null) {
+      record(new File(recordDir));
+      System.out.println("recorded " + cases().size() + " outputs and " + (cases().size() + longCases().size())
+          + " hashes in " + recordDir);
+      return;
+    }
+    if (goldenDir == null) {
+      System.out.println("Error! no golden directory given");
+      return;
+    }
+
+    Map<String, String> outputs;
+    Map<String, String> hashes;
+    try (BufferedReader in = new BufferedReader(new FileReader(new File(goldenDir, OUTPUTS)))) {
+      outputs = readOutputs(in);
+    }
+    try (BufferedReader in = new BufferedReader(new FileReader(new File(goldenDir, HASHES)))) {
+      hashes = readHashes(in);
+    }
+    int failed = 0;
+    for (String eventList : eventLists)
+      for (String carQueue : carQueues) {
+        List<String> failures = verify(outputs, hashes, eventList, carQueue, hashesOnly);
+        System.out.println(eventList + "/" + carQueue + ": " + (failures.isEmpty() ? "ok" : failures.size()
+            + " differences"));
+        for (String f : failures)
+          System.out.println("  " + f);
+        failed += failures.size();
+      }
+    if (failed > 0)
+      System.exit(1);
+  }
+}
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * IndexedHeap: a binary min-heap of the ids 0..n-1, which remembers where
+ * each id is, so that any id can be removed, or moved after its key has
+ * changed, in O(log n) time. Subclasses give the order by before().
+ */
+
+abstract class IndexedHeap {
+  private final int[] heap; // ids, the least first
+  private final int[] position; // where each id is in heap, or -1
+  private int size;
+
+  /**
+   * Constructor: build an empty heap for the ids 0..n-1.
+   *
+   * @param n int
+   */
+  public IndexedHeap(int n) {
+    heap = new int[n];
+    position = new int[n];
+    Arrays.fill(position, -1);
+    size = 0;
+  }
+
+  /**
+   * before: return true if id a must come out of the heap before id b.
+   *
+   * @return boolean
+   * @param a int
+   * @param b int
+   */
+  protected abstract boolean before(int a, int b);
+
+  /**
+   * size: return the number of ids in the heap.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * contains: return true if id is in the heap.
+   *
+   * @return boolean
+   * @param id int
+   */
+  public boolean contains(int id) {
+    return position[id] >= 0;
+  }
+
+  /**
+   * peek: return the least id in the heap, or -1 if it is empty.
+   *
+   * @return int
+   */
+  public int peek() {
+    return size == 0 ? -1 : heap[0];
+  }
+
+  /**
+   * add: put id, which must not be in the heap, into it.
+   *
+   * @param id int
+   */
+  public void add(int id) {
+    heap[size] = id;
+    position[id] = size;
+    siftUp(size++);
+  }
+
+  /**
+   * remove: take id out of the heap, if it is there.
+   *
+   * @param id int
+   */
+  public void remove(int id) {
+    final int i = position[id];
+    if (i < 0)
+      return;
+    position[id] = -1;
+    final int last = heap[--size];
+    if (i == size)
+      return;
+    heap[i] = last;
+    position[last] = i;
+    update(last);
+  }
+
+  /**
+   * update: move id, which must be in the heap, to its place after its key
+   * has changed.
+   *
+   * @param id int
+   */
+  public void update(int id) {
+    final int i = position[id];
+    if (i > 0 && before(id, heap[(i - 1) / 2]))
+      siftUp(i);
+    else
+      siftDown(i);
+  }
+
+  /**
+   * clear: empty the heap.
+   */
+  public void clear() {
+    for (int i = 0; i < size; i++)
+      position[heap[i]] = -1;
+    size = 0;
+  }
+
+  private void siftUp(int i) {
+    final int id = heap[i];
+    while (i > 0) {
+      final int parent = (i - 1) / 2;
+      if (!before(id, heap[parent]))
+        break;
+      heap[i] = heap[parent];
+      position[heap[i]] = i;
+      i = parent;
+    }
+    heap[i] = id;
+    position[id] = i;
+  }
+
+  private void siftDown(int i) {
+    final int id = heap[i];
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size)
+        break;
+      if (child + 1 < size && before(heap[child + 1], heap[child]))
+        child++;
+      if (!before(heap[child], id))
+        break;
+      heap[i] = heap[child];
+      position[heap[i]] = i;
+      i = child;
+    }
+    heap[i] = id;
+    position[id] = i;
+  }
+}
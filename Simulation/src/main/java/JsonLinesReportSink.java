@@ -0,0 +1,38 @@
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * JsonLinesReportSink: writes each report row as a JSON object on a line of
+ * its own, keyed by column name. An unknown quantity is null.
+ */
+
+class JsonLinesReportSink extends TextReportSink {
+  /**
+   * Constructor.
+   *
+   * @param channel java.nio.channels.WritableByteChannel
+   */
+  public JsonLinesReportSink(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  public void begin() {
+  }
+
+  public void write(ReportRow row) {
+    line.append('{');
+    for (int i = 0; i < ReportRow.COLUMNS.length; i++) {
+      if (i > 0)
+        line.append(',');
+      line.append('"').append(ReportRow.COLUMNS[i]).append("\":");
+      final double v = row.get(i);
+      if (ReportRow.isInteger(i))
+        line.append((int) v);
+      else if (Double.isNaN(v) || Double.isInfinite(v))
+        line.append("null");
+      else
+        line.append(v);
+    }
+    line.append('}');
+    emitLine();
+  }
+}
@@ -0,0 +1,337 @@
+/**
+ * LadderQueueEventSet: an event set kept as a ladder queue (W. T. Tang,
+ * R. S. M. Goh and I. L.-J. Thng, ACM TOMACS 15(3), 2005).
+ *
+ * Events far in the future are dropped, unsorted, into Top. When the events
+ * nearer the front run out, Top is spread over the buckets of a rung, and a
+ * bucket that holds too many events is spread over a finer rung below it, so
+ * only a handful of events are ever sorted at once; they go into Bottom, a
+ * short sorted list from which events are removed. Apart from Bottom, every
+ * list is unsorted and chained through Event.next, which gives amortized O(1)
+ * insertion and removal.
+ *
+ * Bottom is kept short: when inserts push it past the threshold, it is
+ * spread over a new rung of its own. And when Top is emptied onto the
+ * ladder, its latest event stays behind, so one event far in the future
+ * (the end of the run, say) does not stretch the ladder over the whole run.
+ */
+
+class LadderQueueEventSet implements EventSet {
+  private static final int THRESHOLD = 50; // largest bucket sorted directly
+  private static final int MAX_RUNGS = 8;
+
+  // Top: unsorted events due at or after topStart
+  private Event top;
+  private int topCount;
+  private double topMin;
+  private double topMax;
+  private double topStart;
+
+  // the rungs; rung 0 is the coarsest, rung nRungs - 1 the finest
+  private int nRungs;
+  private final Event[][] rungBuckets = new Event[MAX_RUNGS][];
+  private final int[][] rungCounts = new int[MAX_RUNGS][];
+  private final int[] rungSize = new int[MAX_RUNGS]; // buckets in use
+  private final double[] rungStart = new double[MAX_RUNGS];
+  private final double[] rungWidth = new double[MAX_RUNGS];
+  private final int[] rungCurrent = new int[MAX_RUNGS]; // first unconsumed bucket
+
+  // Bottom: sorted events due before any rung
+  private Event bottom;
+  private int bottomCount;
+
+  private int size;
+  private Event[] scratch; // reused while sorting a bucket
+
+  /**
+   * Constructor.
+   */
+  public LadderQueueEventSet() {
+    top = null;
+    topCount = 0;
+    topStart = Double.NEGATIVE_INFINITY;
+    nRungs = 0;
+    bottom = null;
+    bottomCount = 0;
+    size = 0;
+    scratch = new Event[THRESHOLD];
+  }
+
+  /**
+   * insert: add event e to Top, to the rung that covers its time, or to
+   * Bottom, whichever comes first.
+   *
+   * @param e Sim.Event
+   */
+  public void insert(Event e) {
+    size++;
+    final double time = e.getTime();
+    if (time >= topStart) {
+      if (topCount == 0 || time < topMin)
+        topMin = time;
+      if (topCount == 0 || time > topMax)
+        topMax = time;
+      e.next = top;
+      top = e;
+      topCount++;
+      return;
+    }
+
+    for (int r = 0; r < nRungs; r++) {
+      final int current = rungCurrent[r];
+      if (time >= rungStart[r] + current * rungWidth[r]) {
+        int b = (int) ((time - rungStart[r]) / rungWidth[r]);
+        if (b < current)
+          b = current;
+        else if (b >= rungSize[r])
+          b = rungSize[r] - 1;
+        e.next = rungBuckets[r][b];
+        rungBuckets[r][b] = e;
+        rungCounts[r][b]++;
+        return;
+      }
+    }
+
+    insertBottom(e);
+  }
+
+  /**
+   * insertBottom: put event e in its place in the sorted Bottom list, and
+   * spread Bottom over a new rung if that makes it too long.
+   *
+   * @param e Sim.Event
+   */
+  private void insertBottom(Event e) {
+    bottomCount++;
+    if (bottom == null || EventSet.precedes(e, bottom)) {
+      e.next = bottom;
+      bottom = e;
+    } else {
+      Event behind = bottom;
+      while (behind.next != null && EventSet.precedes(behind.next, e))
+        behind = behind.next;
+      e.next = behind.next;
+      behind.next = e;
+    }
+    if (bottomCount > THRESHOLD && nRungs < MAX_RUNGS)
+      spreadBottom();
+  }
+
+  /**
+   * spreadBottom: move Bottom onto a new, finest rung that covers the time
+   * from its first event to the start of the ladder above it (the first
+   * unconsumed bucket of the finest rung, or Top). Bottom is left as it is
+   * if its events are all due at that same time.
+   */
+  private void spreadBottom() {
+    final double end;
+    if (nRungs == 0)
+      end = topStart;
+    else {
+      final int r = nRungs - 1;
+      end = rungStart[r] + rungCurrent[r] * rungWidth[r];
+    }
+    final double start = bottom.getTime();
+    final double width = (end - start) / bottomCount;
+    if (!(width > 0) || Double.isInfinite(width))
+      return;
+    final Event events = bottom;
+    final int count = bottomCount;
+    bottom = null;
+    bottomCount = 0;
+    spawnRung(events, count, start, width);
+  }
+
+  /**
+   * takeFirst: remove and return the earliest event, refilling Bottom from
+   * the ladder first if it is empty.
+   *
+   * @return Sim.Event
+   */
+  public Event takeFirst() {
+    if (size == 0)
+      return null;
+    if (bottom == null)
+      refillBottom();
+
+    final Event first = bottom;
+    bottom = first.next;
+    first.next = null;
+    bottomCount--;
+    size--;
+    return first;
+  }
+
+  /**
+   * peek: return the earliest event, refilling Bottom from the ladder first
+   * if it is empty.
+   *
+   * @return Sim.Event
+   */
+  public Event peek() {
+    if (size == 0)
+      return null;
+    if (bottom == null)
+      refillBottom();
+    return bottom;
+  }
+
+  /**
+   * refillBottom: move the earliest non-empty bucket of the ladder into
+   * Bottom, spreading Top over a new rung or an oversized bucket over a finer
+   * rung as needed. Called only when Bottom is empty and the set is not.
+   */
+  private void refillBottom() {
+    while (true) {
+      if (nRungs == 0) {
+        // Everything left is in Top. Its latest event stays there, unless
+        // others are due at the same time, and the rest go on the ladder.
+        Event events = top;
+        int count = topCount;
+        final double start = topMin;
+        Event latest = null, beforeLatest = null;
+        double end = start; // the latest time of the rest
+        for (Event behind = null, e = events; e != null; behind = e, e = e.next)
+          if (latest == null || e.getTime() > latest.getTime()) {
+            if (latest != null)
+              end = latest.getTime();
+            latest = e;
+            beforeLatest = behind;
+          } else if (e.getTime() > end)
+            end = e.getTime();
+        if (count > 1 && end < topMax) {
+          if (beforeLatest == null)
+            events = latest.next;
+          else
+            beforeLatest.next = latest.next;
+          latest.next = null;
+          count--;
+          top = latest;
+          topCount = 1;
+          topMin = topMax;
+          topStart = end;
+        } else {
+          top = null;
+          topCount = 0;
+          end = topMax;
+          topStart = topMax;
+        }
+
+        final double width = (end - start) / count;
+        if (count <= THRESHOLD || !(width > 0)) {
+          sortIntoBottom(events, count);
+          return;
+        }
+        spawnRung(events, count, start, width);
+        continue;
+      }
+
+      // Find the first non-empty bucket on the finest rung.
+      final int r = nRungs - 1;
+      final Event[] buckets = rungBuckets[r];
+      int b = rungCurrent[r];
+      while (b < rungSize[r] && buckets[b] == null)
+        b++;
+      if (b == rungSize[r]) {
+        nRungs--; // rung used up
+        continue;
+      }
+
+      final Event events = buckets[b];
+      final int count = rungCounts[r][b];
+      buckets[b] = null;
+      rungCounts[r][b] = 0;
+      rungCurrent[r] = b + 1;
+
+      final double width = rungWidth[r] / count;
+      if (count <= THRESHOLD || nRungs == MAX_RUNGS || !(width > 0)) {
+        sortIntoBottom(events, count);
+        return;
+      }
+      spawnRung(events, count, rungStart[r] + b * rungWidth[r], width);
+    }
+  }
+
+  /**
+   * spawnRung: spread a chain of events over a new, finer rung.
+   *
+   * @param events Sim.Event the head of the chain
+   * @param count  int
+   * @param start  double the time covered by the rung's first bucket
+   * @param width  double
+   */
+  private void spawnRung(Event events, int count, double start, double width) {
+    final int r = nRungs++;
+    final int n = count + 1;
+    if (rungBuckets[r] == null || rungBuckets[r].length < n) {
+      rungBuckets[r] = new Event[Math.max(n, 2 * THRESHOLD)];
+      rungCounts[r] = new int[rungBuckets[r].length];
+    }
+    rungSize[r] = n;
+    rungStart[r] = start;
+    rungWidth[r] = width;
+    rungCurrent[r] = 0;
+
+    final Event[] buckets = rungBuckets[r];
+    final int[] counts = rungCounts[r];
+    Event e = events;
+    while (e != null) {
+      final Event next = e.next;
+      int b = (int) ((e.getTime() - start) / width);
+      if (b < 0)
+        b = 0;
+      else if (b >= n)
+        b = n - 1;
+      e.next = buckets[b];
+      buckets[b] = e;
+      counts[b]++;
+      e = next;
+    }
+  }
+
+  /**
+   * sortIntoBottom: sort a short chain of events and make it Bottom.
+   *
+   * @param events Sim.Event the head of the chain
+   * @param count  int
+   */
+  private void sortIntoBottom(Event events, int count) {
+    if (scratch.length < count)
+      scratch = new Event[Math.max(count, 2 * scratch.length)];
+    int n = 0;
+    for (Event e = events; e != null; e = e.next)
+      scratch[n++] = e;
+
+    if (n <= THRESHOLD) {
+      // insertion sort: the chain is short and this does not allocate
+      for (int i = 1; i < n; i++) {
+        final Event e = scratch[i];
+        int j = i - 1;
+        while (j >= 0 && EventSet.precedes(e, scratch[j])) {
+          scratch[j + 1] = scratch[j];
+          j--;
+        }
+        scratch[j + 1] = e;
+      }
+    } else
+      java.util.Arrays.sort(scratch, 0, n, EventSet.ORDER);
+
+    Event head = null;
+    for (int i = n - 1; i >= 0; i--) {
+      scratch[i].next = head;
+      head = scratch[i];
+      scratch[i] = null;
+    }
+    bottom = head;
+    bottomCount = n;
+  }
+
+  /**
+   * size: return the number of events in the ladder.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,94 @@
+/**
+ * LaneDispatcher: a lane of its own for each pump. An arriving car joins,
+ * of the pumps that sell its fuel, the one with the fewest cars ahead of it
+ * - waiting in its lane or being served - and among equals the fastest and
+ * then the lowest-numbered. The car sees only the cars waiting in that lane
+ * when it decides whether to balk, and stays in the lane until the pump
+ * serves it.
+ *
+ * Every pump is kept in a heap for each fuel it sells, ordered by the cars
+ * ahead of it, so a car is placed, and a pump freed, in O(f log n) time for
+ * n pumps and f fuel types.
+ */
+
+class LaneDispatcher implements Dispatcher {
+  private final SimulationContext ctx;
+  private final int fuelTypes;
+  private final int[] ahead; // cars waiting in each pump's lane or at it
+  private final IndexedHeap[] shortest; // the pumps that sell each fuel
+
+  /**
+   * Constructor.
+   *
+   * @param ctx       Sim.SimulationContext
+   * @param fuelTypes int
+   */
+  public LaneDispatcher(final SimulationContext ctx, int fuelTypes) {
+    this.ctx = ctx;
+    this.fuelTypes = fuelTypes;
+    final int numPumps = ctx.pumpStand.getNumberOfPumps();
+    ahead = new int[numPumps];
+    shortest = new IndexedHeap[fuelTypes];
+    for (int f = 0; f < fuelTypes; f++)
+      shortest[f] = new IndexedHeap(numPumps) {
+        protected boolean before(int a, int b) {
+          if (ahead[a] != ahead[b])
+            return ahead[a] < ahead[b];
+          final double sa = ctx.pumpStand.getPump(a).getSpeed();
+          final double sb = ctx.pumpStand.getPump(b).getSpeed();
+          return sa > sb || (sa == sb && a < b);
+        }
+      };
+    restored();
+  }
+
+  public int queueSeenBy(int fuel) {
+    return ctx.carQueue.getLaneSize(shortest[fuel].peek());
+  }
+
+  public void join(Car car, int fuel) {
+    final Pump pump = ctx.pumpStand.getPump(shortest[fuel].peek());
+    final int id = pump.getId();
+    if (ctx.pumpStand.isAvailable(pump)) {
+      ctx.pumpStand.takePump(pump);
+      pump.startService(car);
+    } else
+      ctx.carQueue.insert(car, id);
+    ahead[id]++;
+    moved(pump);
+  }
+
+  public void release(Pump pump) {
+    final int id = pump.getId();
+    if (ctx.carQueue.getLaneSize(id) > 0)
+      pump.startService(ctx.carQueue.takeFirstCar(id));
+    else
+      ctx.pumpStand.releasePump(pump);
+    ahead[id]--;
+    moved(pump);
+  }
+
+  public void restored() {
+    for (int f = 0; f < fuelTypes; f++)
+      shortest[f].clear();
+    for (int id = 0; id < ahead.length; id++) {
+      final Pump pump = ctx.pumpStand.getPump(id);
+      ahead[id] = ctx.carQueue.getLaneSize(id) + (ctx.pumpStand.isAvailable(pump) ? 0 : 1);
+      for (int f = 0; f < fuelTypes; f++)
+        if (pump.sells(f))
+          shortest[f].add(id);
+    }
+  }
+
+  /**
+   * moved: put pump back in its place in the heaps, after the number of
+   * cars ahead of it has changed.
+   *
+   * @param pump Sim.Pump
+   */
+  private void moved(Pump pump) {
+    for (int f = 0; f < fuelTypes; f++)
+      if (pump.sells(f))
+        shortest[f].update(pump.getId());
+  }
+}
@@ -0,0 +1,65 @@
+import java.io.*;
+import java.util.Random;
+
+/**
+ * LegacyRandomStream: a RandomStream that draws from java.util.Random
+ * exactly as the original program did, so that runs reproduce its output bit
+ * for bit: exponentials by inversion of one uniform, and normals by Random's
+ * polar method.
+ */
+
+class LegacyRandomStream implements RandomStream {
+  private Random random;
+
+  /**
+   * Constructor.
+   *
+   * @param random java.util.Random
+   */
+  public LegacyRandomStream(Random random) {
+    this.random = random;
+  }
+
+  public double nextDouble() {
+    return random.nextDouble();
+  }
+
+  public double nextGaussian() {
+    return random.nextGaussian();
+  }
+
+  /**
+   * nextExponential: return -log(u); a caller that multiplies this by a
+   * mean gets the same bits as the original -mean * log(u).
+   *
+   * @return double
+   */
+  public double nextExponential() {
+    return -Math.log(random.nextDouble());
+  }
+
+  /**
+   * writeState: write the generator to out, serialized, which is the only
+   * way Random offers to save its seed and the normal it keeps in hand.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+      objects.writeObject(random);
+    }
+    out.writeInt(bytes.size());
+    out.write(bytes.toByteArray());
+  }
+
+  public void readState(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      random = (Random) objects.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("cannot restore random-number stream", e);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * LinkedCarStore: a car store kept as a linked list threaded through the
+ * cars' own "next" fields, so joining the queue does not allocate anything.
+ */
+
+class LinkedCarStore implements CarStore {
+  private Car firstWaitingCar;
+  private Car lastWaitingCar;
+
+  /**
+   * Constructor.
+   */
+  public LinkedCarStore() {
+    firstWaitingCar = null;
+    lastWaitingCar = null;
+  }
+
+  /**
+   * insert: link a car in at the back of the list.
+   *
+   * @param car Sim.Car
+   */
+  public void insert(Car car) {
+    car.next = null;
+    if (lastWaitingCar == null)
+      firstWaitingCar = car;
+    else
+      lastWaitingCar.next = car;
+    lastWaitingCar = car;
+  }
+
+  /**
+   * takeFirst: unlink the car at the front of the list and return it.
+   *
+   * @return Sim.Car
+   */
+  public Car takeFirst() {
+    Car carToReturn = firstWaitingCar;
+    firstWaitingCar = carToReturn.next;
+    carToReturn.next = null;
+    if (firstWaitingCar == null)
+      lastWaitingCar = null;
+    return carToReturn;
+  }
+
+  public double firstArrivalTime() {
+    return firstWaitingCar.getArrivalTime();
+  }
+}
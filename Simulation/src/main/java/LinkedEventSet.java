@@ -0,0 +1,80 @@
+/**
+ * LinkedEventSet: the original event list, a linked list kept sorted by time
+ * and threaded through the events' own "next" fields. Insertion walks the
+ * list from the front, so it costs O(n); it is kept as the reference
+ * implementation for the other event sets.
+ */
+
+class LinkedEventSet implements EventSet {
+  private Event firstEvent;
+  private int size;
+
+  /**
+   * Constructor
+   */
+  public LinkedEventSet() {
+    firstEvent = null; // happens automatically, but done explicitly
+    // here to clarify the " empty list " state.
+    size = 0;
+  }
+
+  /**
+   * insert: add an event e to the list in the appropriate place,
+   * prioritized by time. Events due at the same time as e stay ahead of it.
+   *
+   * @param e Sim.Event
+   */
+  public void insert(Event e) {
+    // Find the appropriate place for the event in the list,
+    // and put it there,
+    final double time = e.getTime();
+    if (firstEvent == null || time < firstEvent.getTime()) {
+      e.next = firstEvent;
+      firstEvent = e;
+    } else {
+      Event behind = firstEvent;
+      Event ahead = firstEvent.next;
+      while (ahead != null && ahead.getTime() <= time) {
+        behind = ahead;
+        ahead = ahead.next;
+      }
+      behind.next = e;
+      e.next = ahead;
+    }
+    size++;
+  }
+
+  /**
+   * takeFirst: remove the event at the head of the list and return it.
+   *
+   * @return Sim.Event
+   */
+  public Event takeFirst() {
+    if (firstEvent == null)
+      return null;
+
+    Event eventToReturn = firstEvent;
+    firstEvent = firstEvent.next;
+    eventToReturn.next = null;
+    size--;
+    return eventToReturn;
+  }
+
+  /**
+   * peek: return the event at the head of the list.
+   *
+   * @return Sim.Event
+   */
+  public Event peek() {
+    return firstEvent;
+  }
+
+  /**
+   * size: return the number of events in the list.
+   *
+   * @return int
+   */
+  public int size() {
+    return size;
+  }
+}
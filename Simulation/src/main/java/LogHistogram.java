@@ -0,0 +1,170 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * LogHistogram: a histogram whose buckets grow geometrically, in the manner
+ * of HdrHistogram, used to estimate quantiles of a stream in constant memory.
+ *
+ * A positive value is filed by its binary exponent and the top SUB_BITS bits
+ * of its mantissa, read straight from its bit pattern, so every bucket is
+ * narrower than 1/128 of the values in it and quantiles come out within
+ * 0.8% of the truth. Values between 2^MIN_EXPONENT and 2^MAX_EXPONENT
+ * (about 1e-6 to 1e12) are resolved; smaller ones, including zero and
+ * negative values, share one bucket, and larger ones share another.
+ * Histograms of the same stream can be merged by adding their counts.
+ */
+
+class LogHistogram {
+  private static final int SUB_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int MIN_EXPONENT = -20;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 2;
+
+  private final long[] counts = new long[BUCKETS]; // [0] underflow, [BUCKETS-1] overflow
+  private long total;
+  private double min;
+  private double max;
+
+  /**
+   * Constructor.
+   */
+  public LogHistogram() {
+    reset();
+  }
+
+  /**
+   * reset: forget every value.
+   */
+  public void reset() {
+    java.util.Arrays.fill(counts, 0);
+    total = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * bucketOf: return the bucket that holds x.
+   *
+   * @return int
+   * @param x double
+   */
+  private static int bucketOf(double x) {
+    final int exponent = Math.getExponent(x);
+    if (!(x > 0) || exponent < MIN_EXPONENT)
+      return 0;
+    if (exponent >= MAX_EXPONENT)
+      return BUCKETS - 1;
+    final int sub = (int) (Double.doubleToRawLongBits(x) >>> (52 - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * midpointOf: return the middle of the range of values in bucket b.
+   *
+   * @return double
+   * @param b int, neither the underflow nor the overflow bucket
+   */
+  private static double midpointOf(int b) {
+    final int exponent = (b - 1) / SUB_BUCKETS + MIN_EXPONENT;
+    final int sub = (b - 1) % SUB_BUCKETS;
+    return Math.scalb(1 + (sub + 0.5) / SUB_BUCKETS, exponent);
+  }
+
+  /**
+   * add: record a value.
+   *
+   * @param x double
+   */
+  public void add(double x) {
+    counts[bucketOf(x)]++;
+    total++;
+    if (x < min)
+      min = x;
+    if (x > max)
+      max = x;
+  }
+
+  /**
+   * merge: add every value recorded by another histogram.
+   *
+   * @param other Sim.LogHistogram
+   */
+  public void merge(LogHistogram other) {
+    for (int b = 0; b < BUCKETS; b++)
+      counts[b] += other.counts[b];
+    total += other.total;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return total;
+  }
+
+  /**
+   * quantile: return an estimate of the q-quantile of the values recorded
+   * (0 <= q <= 1), or NaN if there are none. The estimate is the middle of
+   * the bucket holding the quantile, kept within the smallest and largest
+   * values seen; values in the underflow bucket are reported as the
+   * smallest value seen, and those in the overflow bucket as the largest.
+   *
+   * @return double
+   * @param q double
+   */
+  public double quantile(double q) {
+    if (total == 0)
+      return Double.NaN;
+    final long rank = Math.max(1, (long) Math.ceil(q * total)); // 1-based
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts[b];
+      if (seen >= rank) {
+        if (b == 0)
+          return min;
+        if (b == BUCKETS - 1)
+          return max;
+        return Math.max(min, Math.min(max, midpointOf(b)));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * writeState: write the buckets in use to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(total);
+    out.writeDouble(min);
+    out.writeDouble(max);
+    int used = 0;
+    for (long c : counts)
+      if (c != 0)
+        used++;
+    out.writeInt(used);
+    for (int b = 0; b < BUCKETS; b++)
+      if (counts[b] != 0) {
+        out.writeShort(b);
+        out.writeLong(counts[b]);
+      }
+  }
+
+  /**
+   * readState: replace the histogram with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    total = in.readLong();
+    min = in.readDouble();
+    max = in.readDouble();
+    java.util.Arrays.fill(counts, 0);
+    for (int used = in.readInt(); used > 0; used--) {
+      final int b = in.readUnsignedShort();
+      counts[b] = in.readLong();
+    }
+  }
+}
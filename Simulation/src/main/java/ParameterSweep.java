@@ -0,0 +1,292 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ParameterSweep: runs every point of a SweepDesign with replications, all
+ * in one JVM and one thread pool, so that the compiled code and the pool are
+ * shared by every point, and prints a table of the results.
+ *
+ * Replications are made in stages: every point first gets a few, and each
+ * later stage doubles the count for the points still in the running. After
+ * each stage, a point is dropped when another point earns significantly more
+ * with no longer an average wait, so that dominated designs stop using
+ * compute early. Every point uses the same seed sets, so profits are compared
+ * in pairs, replication by replication: a point earns significantly more when
+ * the 95% confidence interval for its mean paired difference lies above 0,
+ * which common seeds make much narrower than the points' own intervals.
+ */
+
+class ParameterSweep {
+  /**
+   * Result: what is known about one point of the design.
+   */
+  static final class Result {
+    public final RunningMoments profit = new RunningMoments();
+    public final RunningMoments wait = new RunningMoments();
+    public final RunningMoments usage = new RunningMoments();
+    private double[] profits = new double[8]; // by seed set
+    public int replications = 0;
+    public boolean dropped = false;
+
+    /**
+     * add: record the results of one replication.
+     *
+     * @param r Sim.ReplicationSummary
+     */
+    void add(ReplicationSummary r) {
+      add(r.totalProfit, r.averageWait, r.pumpUsage);
+    }
+
+    /**
+     * add: record the profit, average wait and pump usage of the next
+     * replication.
+     *
+     * @param totalProfit double
+     * @param averageWait double, NaN if no car was served
+     * @param pumpUsage   double
+     */
+    void add(double totalProfit, double averageWait, double pumpUsage) {
+      profit.add(totalProfit);
+      if (!Double.isNaN(averageWait))
+        wait.add(averageWait);
+      usage.add(pumpUsage);
+      if (replications == profits.length)
+        profits = Arrays.copyOf(profits, 2 * replications);
+      profits[replications++] = totalProfit;
+    }
+
+    /**
+     * dominates: return true if this point earns significantly more than
+     * other, by the paired differences of the replications both have made
+     * with the same seed sets, and its customers wait no longer on average.
+     *
+     * @return boolean
+     * @param other Sim.ParameterSweep.Result
+     */
+    boolean dominates(Result other) {
+      RunningMoments difference = new RunningMoments();
+      final int n = Math.min(replications, other.replications);
+      for (int r = 0; r < n; r++)
+        difference.add(profits[r] - other.profits[r]);
+      return n >= 2 && difference.getMean() - difference.getHalfWidth() > 0
+          && wait.getMean() <= other.wait.getMean();
+    }
+  }
+
+  private final SimulationParameters base;
+  private final SweepDesign design;
+  private final int threads;
+  private final boolean dropDominated;
+
+  /**
+   * Constructor.
+   *
+   * @param base          Sim.SimulationParameters the values of the factors
+   *                      not swept
+   * @param design        Sim.SweepDesign
+   * @param threads       int number of replications run at once
+   * @param dropDominated boolean whether to stop running dominated points
+   */
+  public ParameterSweep(SimulationParameters base, SweepDesign design, int threads, boolean dropDominated) {
+    if (threads < 1)
+      throw new IllegalArgumentException("need at least one thread");
+    this.base = base.copy();
+    this.design = design;
+    this.threads = threads;
+    this.dropDominated = dropDominated;
+  }
+
+  /**
+   * run: run the sweep and return the results, in the order of the design's
+   * points.
+   *
+   * @return Sim.ParameterSweep.Result[]
+   * @param master          long the master seed of the replications
+   * @param firstStage      int replications per point in the first stage
+   * @param maxReplications int replications per point at most
+   */
+  public Result[] run(long master, int firstStage, int maxReplications) throws InterruptedException {
+    final SeedSet[] seeds = SeedSet.fromMaster(master, maxReplications);
+    final Result[] results = new Result[design.size()];
+    final SimulationParameters[] params = new SimulationParameters[design.size()];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = new Result();
+      params[i] = design.parameters(base, i);
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      int done = 0;
+      int target = Math.min(Math.max(firstStage, 2), maxReplications);
+      while (done < maxReplications) {
+        // Run the next stage for every point still in the running.
+        List<Future<ReplicationSummary>> futures = new ArrayList<Future<ReplicationSummary>>();
+        List<Integer> owners = new ArrayList<Integer>();
+        for (int i = 0; i < results.length; i++) {
+          if (results[i].dropped)
+            continue;
+          for (int r = done; r < target; r++) {
+            final SimulationParameters p = params[i];
+            final SeedSet s = seeds[r];
+            futures.add(pool.submit(new Callable<ReplicationSummary>() {
+              public ReplicationSummary call() throws Exception {
+                return SimulationContext.replicate(p, s);
+              }
+            }));
+            owners.add(i);
+          }
+        }
+        for (int k = 0; k < futures.size(); k++) {
+          try {
+            results[owners.get(k)].add(futures.get(k).get());
+          } catch (ExecutionException e) {
+            throw new IllegalStateException("sweep point " + owners.get(k) + " failed", e.getCause());
+          }
+        }
+        done = target;
+        target = Math.min(2 * target, maxReplications);
+
+        if (dropDominated)
+          dropDominated(results);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * dropDominated: mark the points that another point still running
+   * dominates.
+   *
+   * @param results Sim.ParameterSweep.Result[]
+   */
+  private static void dropDominated(Result[] results) {
+    boolean[] drop = new boolean[results.length];
+    for (int i = 0; i < results.length; i++)
+      for (int j = 0; j < results.length && !results[i].dropped; j++)
+        if (j != i && !results[j].dropped && results[j].dominates(results[i])) {
+          drop[i] = true;
+          break;
+        }
+    for (int i = 0; i < results.length; i++)
+      if (drop[i])
+        results[i].dropped = true;
+  }
+
+  /**
+   * printResults: print one row per point: the factors, the replications
+   * made, profit and average wait with 95% half-widths, pump usage, and
+   * whether the point was dropped.
+   *
+   * @param out     java.io.PrintStream
+   * @param design  Sim.SweepDesign
+   * @param results Sim.ParameterSweep.Result[]
+   */
+  public static void printResults(PrintStream out, SweepDesign design, Result[] results) {
+    String[] names = design.getNames();
+    for (String name : names)
+      out.printf("%12s ", name.length() > 12 ? name.substring(0, 12) : name);
+    out.printf("%5s %10s %9s %9s %9s %6s %s%n", "Reps", "Profit", "+/-", "AvgWait", "+/-", "Usage", "Status");
+    for (int i = 0; i < results.length; i++) {
+      for (int j = 0; j < names.length; j++)
+        out.printf("%12.4g ", design.getValue(i, j));
+      Result r = results[i];
+      out.printf("%5d %10.2f %9.2f %9.3f %9.3f %6.3f %s%n", r.replications, r.profit.getMean(),
+          r.profit.getHalfWidth(), r.wait.getMean(), r.wait.getHalfWidth(), r.usage.getMean(),
+          r.dropped ? "dominated" : "kept");
+    }
+  }
+
+  /**
+   * readDesign: read the factor lines that follow the run settings on
+   * standard input, one factor per line: its name, then either the values
+   * of a grid or, if lhsPoints is positive, the low and high ends of its
+   * range.
+   *
+   * @return Sim.SweepDesign
+   * @param in        java.io.BufferedReader
+   * @param lhsPoints int size of a Latin hypercube, or 0 for a grid
+   * @param master    long seeds the Latin hypercube
+   */
+  static SweepDesign readDesign(BufferedReader in, int lhsPoints, long master) throws IOException {
+    List<String> names = new ArrayList<String>();
+    List<double[]> values = new ArrayList<double[]>();
+    String line;
+    while ((line = in.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty())
+        continue;
+      String[] fields = line.split("\\s+");
+      double[] v = new double[fields.length - 1];
+      for (int i = 1; i < fields.length; i++)
+        v[i - 1] = Double.parseDouble(fields[i]);
+      if (lhsPoints > 0 && v.length != 2)
+        throw new IllegalArgumentException("a Latin hypercube needs a low and a high value for " + fields[0]);
+      names.add(fields[0]);
+      values.add(v);
+    }
+
+    String[] n = names.toArray(new String[names.size()]);
+    if (lhsPoints <= 0)
+      return SweepDesign.grid(n, values.toArray(new double[values.size()][]));
+    double[] low = new double[n.length];
+    double[] high = new double[n.length];
+    for (int j = 0; j < n.length; j++) {
+      low[j] = values.get(j)[0];
+      high[j] = values.get(j)[1];
+    }
+    return SweepDesign.latinHypercube(n, low, high, lhsPoints, new Random(master));
+  }
+
+  /**
+   * main entrypoint: reads the run length, the number of replications per
+   * point, and a master seed, one per line, then the factors (see
+   * readDesign()) from standard input, runs the sweep and prints its
+   * results. Options: -lhs n (a Latin hypercube of n points instead of a
+   * grid), -first n (replications in the first stage), -keepall (drop
+   * nothing), -threads n, -crn, -rng kind, -eventlist kind.
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    SimulationParameters params = new SimulationParameters();
+    int threads = Runtime.getRuntime().availableProcessors();
+    int lhsPoints = 0;
+    int firstStage = 5;
+    boolean dropDominated = true;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-lhs") && i + 1 < args.length)
+        lhsPoints = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-first") && i + 1 < args.length)
+        firstStage = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-keepall"))
+        dropDominated = false;
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-crn"))
+        params.commonRandomNumbers = true;
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        params.rngKind = args[++i];
+      else if (args[i].equals("-eventlist") && i + 1 < args.length)
+        params.eventListKind = args[++i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    params.endingTime = Double.parseDouble(in.readLine());
+    int replications = Integer.parseInt(in.readLine());
+    long master = Long.parseLong(in.readLine());
+    SweepDesign design = readDesign(in, lhsPoints, master);
+
+    Result[] results = new ParameterSweep(params, design, threads, dropDominated).run(master, firstStage,
+        replications);
+    System.out.println(design.size() + " points, up to " + replications + " replications of "
+        + params.endingTime + " seconds each");
+    printResults(System.out, design, results);
+  }
+}
@@ -0,0 +1,72 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * PcgRandomStream: a ziggurat stream on PCG-XSH-RR 64/32 (M. E. O'Neill,
+ * HMC-CS-2014-0905), a 64-bit linear congruential generator whose output is
+ * scrambled by a data-dependent rotation. Two outputs make one 64-bit word.
+ *
+ * Besides its starting point, the seed picks the generator's increment, that
+ * is, which of 2^63 distinct sequences it follows, so streams with different
+ * seeds never share a sequence.
+ */
+
+class PcgRandomStream extends ZigguratRandomStream {
+  private static final long MULTIPLIER = 6364136223846793005L;
+
+  private long state;
+  private long increment; // odd
+
+  /**
+   * Constructor: the stream for the given seed.
+   *
+   * @param seed long
+   */
+  public PcgRandomStream(long seed) {
+    this(Xoshiro256PlusPlusStream.splitMix(seed), seed);
+  }
+
+  /**
+   * Constructor: pcg32_srandom_r(initState, sequence) of the reference
+   * implementation.
+   *
+   * @param initState long
+   * @param sequence  long
+   */
+  PcgRandomStream(long initState, long sequence) {
+    increment = (sequence << 1) | 1;
+    state = 0;
+    nextInt();
+    state += initState;
+    nextInt();
+  }
+
+  /**
+   * nextInt: return the next 32 random bits.
+   *
+   * @return int
+   */
+  public int nextInt() {
+    final long old = state;
+    state = old * MULTIPLIER + increment;
+    final int xorShifted = (int) (((old >>> 18) ^ old) >>> 27);
+    final int rot = (int) (old >>> 59);
+    return Integer.rotateRight(xorShifted, rot);
+  }
+
+  public long nextLong() {
+    final long high = nextInt();
+    return (high << 32) | (nextInt() & 0xffffffffL);
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(state);
+    out.writeLong(increment);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    state = in.readLong();
+    increment = in.readLong();
+  }
+}
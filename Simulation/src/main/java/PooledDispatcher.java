@@ -0,0 +1,82 @@
+/**
+ * PooledDispatcher: one line per fuel type. An arriving car takes the
+ * fastest free pump that sells its fuel (the lowest-numbered of equals), and
+ * otherwise waits at the back of its fuel's line; a free pump serves, of the
+ * cars at the front of the lines of the fuels it sells, the one that has
+ * waited longest.
+ *
+ * The free pumps that sell each fuel are kept in a heap of their own, so a
+ * car is placed in O(log n) time for n pumps, and a pump in O(f log n) for
+ * f fuel types.
+ */
+
+class PooledDispatcher implements Dispatcher {
+  private final SimulationContext ctx;
+  private final int fuelTypes;
+  private final IndexedHeap[] free; // the free pumps that sell each fuel
+
+  /**
+   * Constructor.
+   *
+   * @param ctx       Sim.SimulationContext
+   * @param fuelTypes int
+   */
+  public PooledDispatcher(final SimulationContext ctx, int fuelTypes) {
+    this.ctx = ctx;
+    this.fuelTypes = fuelTypes;
+    free = new IndexedHeap[fuelTypes];
+    final int numPumps = ctx.pumpStand.getNumberOfPumps();
+    for (int f = 0; f < fuelTypes; f++)
+      free[f] = new IndexedHeap(numPumps) {
+        protected boolean before(int a, int b) {
+          final double sa = ctx.pumpStand.getPump(a).getSpeed();
+          final double sb = ctx.pumpStand.getPump(b).getSpeed();
+          return sa > sb || (sa == sb && a < b);
+        }
+      };
+    restored();
+  }
+
+  public int queueSeenBy(int fuel) {
+    return free[fuel].size() > 0 ? 0 : ctx.carQueue.getLaneSize(fuel);
+  }
+
+  public void join(Car car, int fuel) {
+    if (free[fuel].size() == 0) {
+      ctx.carQueue.insert(car, fuel);
+      return;
+    }
+    final Pump pump = ctx.pumpStand.getPump(free[fuel].peek());
+    ctx.pumpStand.takePump(pump);
+    for (int f = 0; f < fuelTypes; f++)
+      free[f].remove(pump.getId());
+    pump.startService(car);
+  }
+
+  public void release(Pump pump) {
+    int lane = -1;
+    for (int f = 0; f < fuelTypes; f++)
+      if (pump.sells(f) && ctx.carQueue.getLaneSize(f) > 0
+          && (lane < 0 || ctx.carQueue.firstArrivalTime(f) < ctx.carQueue.firstArrivalTime(lane)))
+        lane = f;
+    if (lane >= 0) {
+      pump.startService(ctx.carQueue.takeFirstCar(lane));
+      return;
+    }
+    ctx.pumpStand.releasePump(pump);
+    for (int f = 0; f < fuelTypes; f++)
+      if (pump.sells(f))
+        free[f].add(pump.getId());
+  }
+
+  public void restored() {
+    for (int f = 0; f < fuelTypes; f++) {
+      free[f].clear();
+      for (int id = 0; id < ctx.pumpStand.getNumberOfPumps(); id++) {
+        final Pump pump = ctx.pumpStand.getPump(id);
+        if (pump.sells(f) && ctx.pumpStand.isAvailable(pump))
+          free[f].add(id);
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+import java.io.*;
+
+/**
+ * PumpComparison: compares the profit of gas stations with different numbers
+ * of pumps by replication, using two variance-reduction techniques.
+ *
+ * Common random numbers: every configuration is run with the same seed sets,
+ * and each car draws its litres, balking decision and service time as it
+ * arrives (SimulationParameters.commonRandomNumbers), so a given car is the
+ * same customer at every station, whether or not it balks at some of them.
+ * The difference in profit between two configurations then varies far less
+ * than it would with independent runs.
+ *
+ * Antithetic variates: replications come in pairs, a seed set and its
+ * antithetic twin, and each pair's average counts as one observation.
+ */
+
+class PumpComparison {
+  private final SimulationParameters params;
+  private final int[] pumpCounts;
+  private final boolean common; // common random numbers
+  private final boolean antithetic;
+  private final int threads;
+
+  /**
+   * Constructor.
+   *
+   * @param params     Sim.SimulationParameters everything but the pumps
+   * @param pumpCounts int[] the configurations to compare
+   * @param common     boolean whether to use common random numbers
+   * @param antithetic boolean whether to run antithetic pairs
+   * @param threads    int number of replications run at once
+   */
+  public PumpComparison(SimulationParameters params, int[] pumpCounts, boolean common, boolean antithetic,
+      int threads) {
+    this.params = params.copy();
+    this.params.commonRandomNumbers = common;
+    this.pumpCounts = pumpCounts.clone();
+    this.common = common;
+    this.antithetic = antithetic;
+    this.threads = threads;
+  }
+
+  /**
+   * seedsFor: return the seed sets for configuration k: the same for every
+   * configuration under common random numbers, different ones otherwise,
+   * with each followed by its twin if the replications are antithetic.
+   *
+   * @return Sim.SeedSet[]
+   * @param master       long
+   * @param observations int
+   * @param k            int
+   */
+  private SeedSet[] seedsFor(long master, int observations, int k) {
+    SeedSet[] base = SeedSet.fromMaster(common ? master : master + k, observations);
+    if (!antithetic)
+      return base;
+    SeedSet[] pairs = new SeedSet[2 * observations];
+    for (int i = 0; i < observations; i++) {
+      pairs[2 * i] = base[i];
+      pairs[2 * i + 1] = base[i].twin();
+    }
+    return pairs;
+  }
+
+  /**
+   * run: make the given number of observations of every configuration and
+   * return each observation's profit, indexed by configuration and then by
+   * observation. An antithetic observation is the average of its pair.
+   *
+   * @return double[][]
+   * @param master       long the master seed
+   * @param observations int
+   */
+  public double[][] run(long master, int observations) throws InterruptedException {
+    double[][] profits = new double[pumpCounts.length][observations];
+    for (int k = 0; k < pumpCounts.length; k++) {
+      SimulationParameters p = params.copy();
+      p.numPumps = pumpCounts[k];
+      ReplicationSummary[] results = new ReplicationRunner(p, threads).run(seedsFor(master, observations, k));
+      for (int i = 0; i < observations; i++)
+        profits[k][i] = antithetic ? (results[2 * i].totalProfit + results[2 * i + 1].totalProfit) / 2
+            : results[i].totalProfit;
+    }
+    return profits;
+  }
+
+  /**
+   * differences: return the moments of the observation-by-observation
+   * differences a[i] - b[i].
+   *
+   * @return Sim.RunningMoments
+   * @param a double[]
+   * @param b double[]
+   */
+  public static RunningMoments differences(double[] a, double[] b) {
+    RunningMoments d = new RunningMoments();
+    for (int i = 0; i < a.length; i++)
+      d.add(a[i] - b[i]);
+    return d;
+  }
+
+  /**
+   * main entrypoint: reads the run length, the numbers of pumps to compare
+   * (on one line, separated by blanks), the number of observations and a
+   * master seed from standard input, and prints each configuration's profit
+   * and its difference from the first configuration, with 95% confidence
+   * intervals. Options: -independent (no common random numbers),
+   * -antithetic, -threads n, -eventlist kind, -rng kind.
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    SimulationParameters params = new SimulationParameters();
+    boolean common = true;
+    boolean antithetic = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-independent"))
+        common = false;
+      else if (args[i].equals("-antithetic"))
+        antithetic = true;
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        params.rngKind = args[++i];
+      else if (args[i].equals("-eventlist") && i + 1 < args.length)
+        params.eventListKind = args[++i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    params.endingTime = Double.parseDouble(in.readLine());
+    String[] fields = in.readLine().trim().split("\\s+");
+    int[] pumpCounts = new int[fields.length];
+    for (int i = 0; i < fields.length; i++)
+      pumpCounts[i] = Integer.parseInt(fields[i]);
+    int observations = Integer.parseInt(in.readLine());
+    long master = Long.parseLong(in.readLine());
+
+    double[][] profits = new PumpComparison(params, pumpCounts, common, antithetic, threads).run(master,
+        observations);
+
+    PrintStream out = System.out;
+    out.println(observations + (antithetic ? " antithetic pairs" : " replications") + " for "
+        + params.endingTime + " seconds, " + (common ? "common" : "independent") + " random numbers");
+    out.printf("%-6s %12s %12s %14s %12s%n", "Pumps", "Profit", "95% +/-", "Diff vs " + pumpCounts[0],
+        "95% +/-");
+    for (int k = 0; k < pumpCounts.length; k++) {
+      RunningMoments profit = new RunningMoments();
+      for (double x : profits[k])
+        profit.add(x);
+      RunningMoments diff = differences(profits[k], profits[0]);
+      out.printf("%-6d %12.2f %12.2f %14.2f %12.2f%n", pumpCounts[k], profit.getMean(), profit.getHalfWidth(),
+          diff.getMean(), diff.getHalfWidth());
+    }
+  }
+}
@@ -0,0 +1,284 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * PumpOptimizer: finds the station design - by default, the number of pumps -
+ * with the largest expected total profit, by the fully sequential
+ * ranking-and-selection procedure of S.-H. Kim and B. L. Nelson (ACM TOMACS
+ * 11(3), 2001).
+ *
+ * Every candidate gets n0 replications; from then on each surviving
+ * candidate gets one more replication per round, and a candidate is
+ * eliminated as soon as its average profit falls far enough behind another's,
+ * the margin shrinking as replications accumulate. The search stops when
+ * one candidate is left, which with probability at least 1 - alpha is the
+ * best or within delta of it. The replications of a round use the same seed
+ * set for every candidate (common random numbers), which makes the
+ * differences less noisy and the procedure faster.
+ */
+
+class PumpOptimizer {
+  /**
+   * Outcome: the result of a search.
+   */
+  static final class Outcome {
+    public final int best; // index of the chosen candidate
+    public final boolean resolved; // false if the replication cap was hit
+    public final int[] replications; // per candidate
+    public final double[] meanProfit; // per candidate
+    public final int[] eliminatedAt; // replications when eliminated, or 0
+
+    Outcome(int best, boolean resolved, int[] replications, double[] meanProfit, int[] eliminatedAt) {
+      this.best = best;
+      this.resolved = resolved;
+      this.replications = replications;
+      this.meanProfit = meanProfit;
+      this.eliminatedAt = eliminatedAt;
+    }
+  }
+
+  private final SimulationParameters base;
+  private final SweepDesign candidates;
+  private final int threads;
+  private final double delta; // indifference zone, in profit
+  private final double alpha;
+  private final int n0; // first-stage replications
+  private final int maxReplications;
+
+  /**
+   * Constructor.
+   *
+   * @param base            Sim.SimulationParameters
+   * @param candidates      Sim.SweepDesign the designs to choose among
+   * @param threads         int number of replications run at once
+   * @param delta           double smallest profit difference worth finding
+   * @param alpha           double allowed probability of a wrong choice
+   * @param n0              int first-stage replications, at least 2
+   * @param maxReplications int replications per candidate at most
+   */
+  public PumpOptimizer(SimulationParameters base, SweepDesign candidates, int threads, double delta,
+      double alpha, int n0, int maxReplications) {
+    if (threads < 1)
+      throw new IllegalArgumentException("need at least one thread");
+    if (n0 < 2)
+      throw new IllegalArgumentException("need at least two first-stage replications");
+    this.base = base.copy();
+    this.candidates = candidates;
+    this.threads = threads;
+    this.delta = delta;
+    this.alpha = alpha;
+    this.n0 = n0;
+    this.maxReplications = Math.max(n0, maxReplications);
+  }
+
+  /**
+   * run: search for the best candidate.
+   *
+   * @return Sim.PumpOptimizer.Outcome
+   * @param master long the master seed of the replications
+   */
+  public Outcome run(long master) throws InterruptedException {
+    final int k = candidates.size();
+    final SeedSet[] seeds = SeedSet.fromMaster(master, maxReplications);
+    final SimulationParameters[] params = new SimulationParameters[k];
+    for (int i = 0; i < k; i++)
+      params[i] = candidates.parameters(base, i);
+    final double[][] profit = new double[k][maxReplications];
+    final int[] made = new int[k];
+    final int[] eliminatedAt = new int[k];
+    boolean[] alive = new boolean[k];
+    Arrays.fill(alive, true);
+    int survivors = k;
+
+    // Rinott-type constant of the procedure
+    final double eta = k > 1 ? 0.5 * (Math.pow(2 * alpha / (k - 1), -2.0 / (n0 - 1)) - 1) : 0;
+    final double h2 = 2 * eta * (n0 - 1);
+    double[][] s2 = null; // variances of the first-stage differences
+
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      int r = 0; // replications every survivor has
+      while (survivors > 1 && r < maxReplications) {
+        // Run a batch of replications; the first batch is the first stage.
+        final int batch = r == 0 ? n0 : Math.max(1, threads / survivors);
+        final int upTo = Math.min(r + batch, maxReplications);
+        runReplications(pool, params, seeds, alive, made, upTo, profit);
+
+        if (s2 == null)
+          s2 = differenceVariances(profit, n0);
+
+        // Screen after each replication of the batch, as the procedure
+        // would have one replication at a time.
+        for (int n = Math.max(r + 1, n0); n <= upTo && survivors > 1; n++) {
+          boolean[] next = alive.clone();
+          for (int i = 0; i < k; i++) {
+            if (!alive[i])
+              continue;
+            for (int l = 0; l < k; l++) {
+              if (l == i || !alive[l])
+                continue;
+              final double w = Math.max(0, delta / (2.0 * n) * (h2 * s2[i][l] / (delta * delta) - n));
+              if (mean(profit[i], n) < mean(profit[l], n) - w) {
+                next[i] = false;
+                eliminatedAt[i] = n;
+                break;
+              }
+            }
+          }
+          alive = next;
+          survivors = 0;
+          for (boolean a : alive)
+            if (a)
+              survivors++;
+        }
+        r = upTo;
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    int best = -1;
+    double[] means = new double[k];
+    for (int i = 0; i < k; i++) {
+      means[i] = mean(profit[i], made[i]);
+      if (alive[i] && (best < 0 || means[i] > means[best]))
+        best = i;
+    }
+    return new Outcome(best, survivors == 1, made, means, eliminatedAt);
+  }
+
+  /**
+   * runReplications: bring every live candidate up to upTo replications,
+   * all at once.
+   */
+  private static void runReplications(ForkJoinPool pool, SimulationParameters[] params, SeedSet[] seeds,
+      boolean[] alive, int[] made, int upTo, double[][] profit) throws InterruptedException {
+    List<Future<ReplicationSummary>> futures = new ArrayList<Future<ReplicationSummary>>();
+    List<int[]> slots = new ArrayList<int[]>();
+    for (int i = 0; i < params.length; i++) {
+      if (!alive[i])
+        continue;
+      for (int r = made[i]; r < upTo; r++) {
+        final SimulationParameters p = params[i];
+        final SeedSet s = seeds[r];
+        futures.add(pool.submit(new Callable<ReplicationSummary>() {
+          public ReplicationSummary call() throws Exception {
+            return SimulationContext.replicate(p, s);
+          }
+        }));
+        slots.add(new int[] { i, r });
+      }
+      made[i] = upTo;
+    }
+    for (int j = 0; j < futures.size(); j++) {
+      try {
+        profit[slots.get(j)[0]][slots.get(j)[1]] = futures.get(j).get().totalProfit;
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("candidate " + slots.get(j)[0] + " failed", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * differenceVariances: return the sample variances of the differences
+   * between every two candidates over the first n replications.
+   *
+   * @return double[][]
+   * @param profit double[][]
+   * @param n      int
+   */
+  private static double[][] differenceVariances(double[][] profit, int n) {
+    final int k = profit.length;
+    double[][] s2 = new double[k][k];
+    for (int i = 0; i < k; i++)
+      for (int l = i + 1; l < k; l++) {
+        RunningMoments d = new RunningMoments();
+        for (int r = 0; r < n; r++)
+          d.add(profit[i][r] - profit[l][r]);
+        s2[i][l] = s2[l][i] = d.getVariance();
+      }
+    return s2;
+  }
+
+  /**
+   * mean: return the mean of the first n values.
+   *
+   * @return double
+   * @param values double[]
+   * @param n      int
+   */
+  private static double mean(double[] values, int n) {
+    double sum = 0;
+    for (int r = 0; r < n; r++)
+      sum += values[r];
+    return sum / n;
+  }
+
+  /**
+   * main entrypoint: reads the run length and a master seed, one per line,
+   * then the candidate designs as grid factor lines (see
+   * ParameterSweep.readDesign(); numPumps 1 to 10 if there are none) from
+   * standard input, and prints the replications and average profit of each
+   * candidate and the one chosen. Options: -delta d (default 10), -alpha a
+   * (default 0.05), -n0 n (default 10), -max n (default 1000), -nocrn,
+   * -threads n, -rng kind.
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    SimulationParameters params = new SimulationParameters();
+    params.commonRandomNumbers = true;
+    int threads = Runtime.getRuntime().availableProcessors();
+    double delta = 10;
+    double alpha = 0.05;
+    int n0 = 10;
+    int maxReplications = 1000;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-delta") && i + 1 < args.length)
+        delta = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-alpha") && i + 1 < args.length)
+        alpha = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-n0") && i + 1 < args.length)
+        n0 = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-max") && i + 1 < args.length)
+        maxReplications = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-nocrn"))
+        params.commonRandomNumbers = false;
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        params.rngKind = args[++i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    params.endingTime = Double.parseDouble(in.readLine());
+    long master = Long.parseLong(in.readLine());
+    SweepDesign candidates = ParameterSweep.readDesign(in, 0, master);
+    if (candidates.size() == 0 || candidates.getNames().length == 0)
+      candidates = SweepDesign.grid(new String[] { "numPumps" },
+          new double[][] { { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 } });
+
+    Outcome o = new PumpOptimizer(params, candidates, threads, delta, alpha, n0, maxReplications).run(master);
+
+    PrintStream out = System.out;
+    String[] names = candidates.getNames();
+    for (String name : names)
+      out.printf("%12s ", name.length() > 12 ? name.substring(0, 12) : name);
+    out.printf("%5s %10s %s%n", "Reps", "Profit", "Status");
+    int total = 0;
+    for (int i = 0; i < candidates.size(); i++) {
+      for (int j = 0; j < names.length; j++)
+        out.printf("%12.4g ", candidates.getValue(i, j));
+      out.printf("%5d %10.2f %s%n", o.replications[i], o.meanProfit[i], i == o.best ? "best"
+          : o.eliminatedAt[i] > 0 ? "eliminated after " + o.eliminatedAt[i] : "not resolved");
+      total += o.replications[i];
+    }
+    out.println(total + " replications; " + (o.resolved ? "best found with probability at least " + (1 - alpha)
+        + " (indifference zone " + delta + ")" : "replication cap reached before the best was resolved"));
+  }
+}
@@ -0,0 +1,48 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * RandomStream: a source of the random numbers a simulation run needs. The
+ * run draws every number through one of four streams (arrivals, litres,
+ * balking and service), each of which is a RandomStream of the kind named in
+ * SimulationParameters.rngKind; see RandomStreams.
+ */
+
+interface RandomStream {
+  /**
+   * nextDouble: return a uniform random number in [0, 1).
+   *
+   * @return double
+   */
+  double nextDouble();
+
+  /**
+   * nextGaussian: return a standard normal random number.
+   *
+   * @return double
+   */
+  double nextGaussian();
+
+  /**
+   * nextExponential: return an exponential random number with mean 1.
+   *
+   * @return double
+   */
+  double nextExponential();
+
+  /**
+   * writeState: write the stream's current state to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  void writeState(DataOutput out) throws IOException;
+
+  /**
+   * readState: take up the state that writeState() wrote to in, so that the
+   * stream goes on exactly where the saved one was.
+   *
+   * @param in java.io.DataInput
+   */
+  void readState(DataInput in) throws IOException;
+}
@@ -0,0 +1,63 @@
+import java.util.Random;
+
+/**
+ * RandomStreams: builds the random-number streams of a run from its seeds.
+ *
+ * "legacy" streams are java.util.Random, and reproduce the original
+ * program's output bit for bit. The other kinds - "splittable"
+ * (SplittableRandom), "xoshiro" (xoshiro256++) and "pcg" (PCG-XSH-RR) - are
+ * unsynchronized and draw normals and exponentials by the ziggurat method.
+ * For a seed set drawn from a master seed, each of their streams comes from
+ * the replication's own stretch of one xoshiro256++ sequence (see SeedSet):
+ * "xoshiro" streams are those stretches, which never overlap, and the other
+ * kinds are seeded with the first 64 bits of theirs. For a seed set typed
+ * in, each stream is derived from its own seed and the stream's index within
+ * the run, so the four streams of a run differ even if their seeds are equal.
+ */
+
+final class RandomStreams {
+  // the names accepted by create()
+  public static final String[] KINDS = { "legacy", "splittable", "xoshiro", "pcg" };
+  public static final String DEFAULT_KIND = "legacy";
+
+  // indices of the four streams of a run
+  public static final int ARRIVAL = 0;
+  public static final int LITRE = 1;
+  public static final int BALKING = 2;
+  public static final int SERVICE = 3;
+  public static final int STREAMS = 4; // streams per run
+
+  private RandomStreams() {
+  }
+
+  /**
+   * create: return a new stream of the named kind for the given seed and
+   * stream index, antithetic if the seed set says so.
+   *
+   * @return Sim.RandomStream
+   * @param kind  java.lang.String
+   * @param seeds Sim.SeedSet
+   * @param seed  int one of the set's seeds
+   * @param index int ARRIVAL, LITRE, BALKING or SERVICE
+   */
+  public static RandomStream create(String kind, SeedSet seeds, int seed, int index) {
+    if ("legacy".equals(kind))
+      return new LegacyRandomStream(seeds.antithetic ? new AntitheticRandom(seed) : new Random(seed));
+
+    final Xoshiro256PlusPlusStream substream = seeds.substream(index);
+    if ("xoshiro".equals(kind) && substream != null)
+      return seeds.antithetic ? new AntitheticRandomStream(substream) : substream;
+
+    final long key = substream != null ? substream.nextLong() : ((long) index << 32) | (seed & 0xffffffffL);
+    final RandomStream stream;
+    if ("splittable".equals(kind))
+      stream = new SplittableRandomStream(key);
+    else if ("xoshiro".equals(kind))
+      stream = new Xoshiro256PlusPlusStream(key);
+    else if ("pcg".equals(kind))
+      stream = new PcgRandomStream(key);
+    else
+      throw new IllegalArgumentException("unknown random-number generator kind: " + kind);
+    return seeds.antithetic ? new AntitheticRandomStream(stream) : stream;
+  }
+}
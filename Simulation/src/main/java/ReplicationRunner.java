@@ -0,0 +1,209 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * ReplicationRunner: runs many independent replications of the simulation at
+ * once, one per core, and gathers a summary of each.
+ *
+ * Each replication gets a SimulationContext of its own, so replications share
+ * nothing but their parameters, which are only read. Every replication is
+ * determined by its seed set alone, so the results do not depend on how the
+ * work is scheduled. The replications may also be forked from a checkpoint,
+ * each carrying on from the saved state with its own seeds.
+ */
+
+class ReplicationRunner {
+  private final SimulationParameters params;
+  private final int threads;
+  private final Checkpoint checkpoint; // null to start from time 0
+  private EngineMetrics metrics; // shared by every replication, or null
+
+  /**
+   * Constructor.
+   *
+   * @param params  Sim.SimulationParameters the run every replication makes
+   * @param threads int number of replications run at once
+   */
+  public ReplicationRunner(SimulationParameters params, int threads) {
+    this(params, threads, null);
+  }
+
+  /**
+   * Constructor: fork every replication from a checkpoint.
+   *
+   * @param params     Sim.SimulationParameters the run every replication
+   *                   makes
+   * @param threads    int number of replications run at once
+   * @param checkpoint Sim.Checkpoint where the replications start, or null
+   */
+  public ReplicationRunner(SimulationParameters params, int threads, Checkpoint checkpoint) {
+    if (threads < 1)
+      throw new IllegalArgumentException("need at least one thread");
+    this.params = params.copy();
+    this.threads = threads;
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * setMetrics: count the events of every replication in metrics, or in
+   * nothing if it is null.
+   *
+   * @param metrics Sim.EngineMetrics
+   */
+  public void setMetrics(EngineMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * run: run one replication per seed set and return their summaries, in
+   * the order of the seed sets.
+   *
+   * @return Sim.ReplicationSummary[]
+   * @param seeds Sim.SeedSet[]
+   */
+  public ReplicationSummary[] run(SeedSet[] seeds) throws InterruptedException {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      List<Future<ReplicationSummary>> futures = new ArrayList<Future<ReplicationSummary>>();
+      for (final SeedSet s : seeds)
+        futures.add(pool.submit(new Callable<ReplicationSummary>() {
+          public ReplicationSummary call() throws Exception {
+            if (checkpoint != null)
+              return checkpoint.replicate(params, s, metrics);
+            return SimulationContext.replicate(params, s, metrics);
+          }
+        }));
+
+      ReplicationSummary[] results = new ReplicationSummary[seeds.length];
+      for (int i = 0; i < results.length; i++) {
+        try {
+          results[i] = futures.get(i).get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("replication with seeds " + seeds[i] + " failed", e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * printEstimate: print the mean of a quantity across replications with its
+   * standard deviation and 95% confidence interval half-width.
+   *
+   * @param out    java.io.PrintStream
+   * @param label  java.lang.String
+   * @param values Sim.RunningMoments
+   */
+  private static void printEstimate(PrintStream out, String label, RunningMoments values) {
+    out.printf("%-16s %12.4f %12.4f %12.4f%n", label, values.getMean(), values.getStdDev(), values.getHalfWidth());
+  }
+
+  /**
+   * main entrypoint: reads the run length, the number of pumps, the number
+   * of replications and a master seed, one per line, from standard input,
+   * runs the replications and prints each one's results and their means.
+   * Options: -eventlist kind (see Sim.main), -threads n, -rng kind,
+   * -warmup, -precision r, -from file (fork every replication from the
+   * checkpoint in file; the run length is then the ending time), -metrics
+   * (count the events of all the replications, through JMX as they run,
+   * and print the counts at the end), -profile file (arrivals at the rates
+   * by time of day in file, read once for all the replications; see
+   * ArrivalProfile), -arrivals file (the arrivals recorded in file, the
+   * same in every replication; see ArrivalTrace).
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    SimulationParameters params = new SimulationParameters();
+    int threads = Runtime.getRuntime().availableProcessors();
+    Checkpoint checkpoint = null;
+    EngineMetrics metrics = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-eventlist") && i + 1 < args.length)
+        params.eventListKind = args[++i];
+      else if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        params.rngKind = args[++i];
+      else if (args[i].equals("-warmup"))
+        params.detectWarmup = true;
+      else if (args[i].equals("-precision") && i + 1 < args.length)
+        params.targetHalfWidth = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-from") && i + 1 < args.length)
+        checkpoint = Checkpoint.load(args[++i]);
+      else if (args[i].equals("-metrics"))
+        metrics = new EngineMetrics();
+      else if (args[i].equals("-profile") && i + 1 < args.length)
+        params.arrivalProfile = ArrivalProfile.load(args[++i]);
+      else if (args[i].equals("-arrivals") && i + 1 < args.length)
+        params.arrivalTracePath = args[++i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    params.endingTime = Double.parseDouble(in.readLine());
+    params.numPumps = Integer.parseInt(in.readLine());
+    int replications = Integer.parseInt(in.readLine());
+    long master = Long.parseLong(in.readLine());
+
+    SeedSet[] seeds = SeedSet.fromMaster(master, replications);
+    ReplicationRunner runner = new ReplicationRunner(params, threads, checkpoint);
+    if (metrics != null) {
+      metrics.register();
+      runner.setMetrics(metrics);
+    }
+    ReplicationSummary[] results = runner.run(seeds);
+    if (metrics != null)
+      metrics.unregister();
+
+    PrintStream out = System.out;
+    out.println(replications + " replications of " + params.numPumps + " pumps for " + params.endingTime
+        + " seconds" + (checkpoint != null ? ", forked at " + checkpoint.getTime() : ""));
+    out.printf("%-44s %7s %9s %7s %9s %8s%n", "Seeds", "Cars", "AvgWait", "Usage", "Profit", "Lost");
+    RunningMoments wait = new RunningMoments();
+    RunningMoments wait95th = new RunningMoments();
+    RunningMoments usage = new RunningMoments();
+    RunningMoments queue = new RunningMoments();
+    RunningMoments profit = new RunningMoments();
+    RunningMoments lost = new RunningMoments();
+    for (int i = 0; i < results.length; i++) {
+      ReplicationSummary r = results[i];
+      out.printf("%-44s %7d %9.3f %7.3f %9.2f %8.2f%n", r.seeds, r.totalArrivals, r.averageWait, r.pumpUsage,
+          r.totalProfit, r.lostProfit);
+      if (!Double.isNaN(r.averageWait)) {
+        wait.add(r.averageWait);
+        wait95th.add(r.wait95th);
+      }
+      usage.add(r.pumpUsage);
+      queue.add(r.averageQueueLength);
+      profit.add(r.totalProfit);
+      lost.add(r.lostProfit);
+    }
+    out.println();
+    out.printf("%-16s %12s %12s %12s%n", "", "Mean", "Std Dev", "95% +/-");
+    printEstimate(out, "Average Wait", wait);
+    printEstimate(out, "Wait 95th pct", wait95th);
+    printEstimate(out, "Pump Usage", usage);
+    printEstimate(out, "Queue Length", queue);
+    printEstimate(out, "Total Profit", profit);
+    printEstimate(out, "Lost Profit", lost);
+
+    if (metrics != null) {
+      out.println();
+      out.printf("%d events, %.0f per second; deepest event list %d, car queue %d%n", metrics.getEvents(),
+          metrics.getEventsPerSecond(), metrics.getPeakEventListSize(), metrics.getPeakQueueLength());
+      String[] kinds = metrics.getEventKinds();
+      long[] counts = metrics.getEventCounts();
+      double[] nanos = metrics.getMeanNanos();
+      out.printf("%-16s %12s %12s%n", "Event", "Count", "Mean ns");
+      for (int i = 0; i < kinds.length; i++)
+        out.printf("%-16s %12d %12.0f%n", kinds[i], counts[i], nanos[i]);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * ReplicationSummary: the results of one simulation run, as they stood at the
+ * end of the run. The derived quantities are the ones printed in the columns
+ * of Statistics.snapshot().
+ */
+
+final class ReplicationSummary {
+  // This is just a simple record structure, so the (final) fields are public.
+  public final SeedSet seeds;
+  public final double simulatedTime;
+  public final int totalArrivals;
+  public final int customersServed;
+  public final int balkingCustomers;
+  public final double litresSold;
+  public final double litresMissed;
+  public final double noQueueFraction;
+  public final double averageWait; // NaN if nobody was served
+  // pumpUsage is the fraction of pump time actually spent serving, up to
+  // the end of the run; scheduledPumpUsage, the table's Pump Usage, counts
+  // the whole of every service started, even the part due after the end
+  public final double pumpUsage;
+  public final double scheduledPumpUsage;
+  public final double totalProfit;
+  public final double lostProfit;
+
+  // waiting-time quantiles, and the batch-means 95% confidence interval
+  // half-width for the average wait (NaN if there were too few customers)
+  public final double waitMedian;
+  public final double wait95th;
+  public final double wait99th;
+  public final double waitHalfWidth;
+
+  // time averages of the station's state
+  public final double averageQueueLength;
+  public final int maxQueueLength;
+  public final double averageCarsInSystem;
+
+  // when the statistics began: 0, or the end of a detected warm-up
+  public final double warmupTime;
+
+  /**
+   * Constructor.
+   */
+  public ReplicationSummary(SeedSet seeds, double simulatedTime, int totalArrivals, int customersServed,
+      int balkingCustomers, double litresSold, double litresMissed, double noQueueFraction,
+      double averageWait, double pumpUsage, double scheduledPumpUsage, double totalProfit, double lostProfit,
+      double waitMedian, double wait95th, double wait99th, double waitHalfWidth, double averageQueueLength,
+      int maxQueueLength, double averageCarsInSystem, double warmupTime) {
+    this.seeds = seeds;
+    this.simulatedTime = simulatedTime;
+    this.totalArrivals = totalArrivals;
+    this.customersServed = customersServed;
+    this.balkingCustomers = balkingCustomers;
+    this.litresSold = litresSold;
+    this.litresMissed = litresMissed;
+    this.noQueueFraction = noQueueFraction;
+    this.averageWait = averageWait;
+    this.pumpUsage = pumpUsage;
+    this.scheduledPumpUsage = scheduledPumpUsage;
+    this.totalProfit = totalProfit;
+    this.lostProfit = lostProfit;
+    this.waitMedian = waitMedian;
+    this.wait95th = wait95th;
+    this.wait99th = wait99th;
+    this.waitHalfWidth = waitHalfWidth;
+    this.averageQueueLength = averageQueueLength;
+    this.maxQueueLength = maxQueueLength;
+    this.averageCarsInSystem = averageCarsInSystem;
+    this.warmupTime = warmupTime;
+  }
+
+  public boolean equals(Object o) {
+    if (!(o instanceof ReplicationSummary))
+      return false;
+    ReplicationSummary r = (ReplicationSummary) o;
+    return seeds.equals(r.seeds) && simulatedTime == r.simulatedTime && totalArrivals == r.totalArrivals
+        && customersServed == r.customersServed && balkingCustomers == r.balkingCustomers
+        && litresSold == r.litresSold && litresMissed == r.litresMissed
+        && noQueueFraction == r.noQueueFraction
+        && Double.compare(averageWait, r.averageWait) == 0 && pumpUsage == r.pumpUsage
+        && scheduledPumpUsage == r.scheduledPumpUsage
+        && totalProfit == r.totalProfit && lostProfit == r.lostProfit
+        && Double.compare(waitMedian, r.waitMedian) == 0 && Double.compare(wait95th, r.wait95th) == 0
+        && Double.compare(wait99th, r.wait99th) == 0 && Double.compare(waitHalfWidth, r.waitHalfWidth) == 0
+        && averageQueueLength == r.averageQueueLength && maxQueueLength == r.maxQueueLength
+        && averageCarsInSystem == r.averageCarsInSystem
+        && warmupTime == r.warmupTime;
+  }
+
+  public int hashCode() {
+    return seeds.hashCode() * 31 + totalArrivals;
+  }
+
+  public String toString() {
+    return "seeds " + seeds + ": " + totalArrivals + " cars, wait " + averageWait + ", usage " + pumpUsage
+        + ", profit " + totalProfit + ", lost " + lostProfit;
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * ReportRow: one row of the statistics summary made by Statistics.snapshot(),
+ * with the columns of the fixed-width table. A quantity that cannot be known
+ * yet (the averages, before the first car) is NaN. Statistics fills the same
+ * row object for every report, so a sink must copy what it keeps.
+ *
+ * pumpUsage is the fraction of pump time spent serving up to the report.
+ * The table prints scheduledPumpUsage instead, the original estimate, which
+ * counts the whole of every service started, even the part still to come;
+ * it is not one of the COLUMNS.
+ */
+
+final class ReportRow {
+  // the column names, in order, as written by the structured sinks
+  public static final String[] COLUMNS = { "time", "totalCars", "noQueueFraction", "carToCarTime",
+      "averageLitres", "numberBalked", "averageWait", "pumpUsage", "totalProfit", "lostProfit" };
+
+  // This is just a simple record structure, so the fields are public.
+  public double time;
+  public int totalCars;
+  public double noQueueFraction;
+  public double carToCarTime;
+  public double averageLitres;
+  public int numberBalked;
+  public double averageWait;
+  public double pumpUsage;
+  public double scheduledPumpUsage; // the table's Pump Usage
+  public double totalProfit;
+  public double lostProfit;
+
+  /**
+   * get: return column i as a double.
+   *
+   * @return double
+   * @param i int an index into COLUMNS
+   */
+  public double get(int i) {
+    switch (i) {
+    case 0:
+      return time;
+    case 1:
+      return totalCars;
+    case 2:
+      return noQueueFraction;
+    case 3:
+      return carToCarTime;
+    case 4:
+      return averageLitres;
+    case 5:
+      return numberBalked;
+    case 6:
+      return averageWait;
+    case 7:
+      return pumpUsage;
+    case 8:
+      return totalProfit;
+    case 9:
+      return lostProfit;
+    default:
+      throw new IndexOutOfBoundsException("no report column " + i);
+    }
+  }
+
+  /**
+   * isInteger: return true if column i holds whole numbers.
+   *
+   * @return boolean
+   * @param i int
+   */
+  public static boolean isInteger(int i) {
+    return i == 1 || i == 5;
+  }
+}
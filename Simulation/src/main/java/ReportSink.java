@@ -0,0 +1,52 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ReportSink: a destination for the rows of the statistics summary. Statistics
+ * hands every snapshot to each of its sinks; the fixed-width table on the
+ * report stream is one of them, and CSV, JSON Lines and binary columnar
+ * files can be added. The file sinks write through a buffered channel and
+ * report failures as java.io.UncheckedIOException.
+ */
+
+interface ReportSink {
+  // the names accepted by open()
+  String[] FORMATS = { "csv", "jsonl", "binary" };
+
+  /**
+   * begin: write whatever precedes the rows, such as column headings.
+   */
+  void begin();
+
+  /**
+   * write: write one row. The row is reused afterwards.
+   *
+   * @param row Sim.ReportRow
+   */
+  void write(ReportRow row);
+
+  /**
+   * close: write out anything buffered and release the destination.
+   */
+  void close();
+
+  /**
+   * open: return a sink of the named format writing to a new file.
+   *
+   * @return Sim.ReportSink
+   * @param format java.lang.String one of FORMATS
+   * @param path   java.lang.String
+   */
+  static ReportSink open(String format, String path) throws IOException {
+    if (!"csv".equals(format) && !"jsonl".equals(format) && !"binary".equals(format))
+      throw new IllegalArgumentException("unknown report format: " + format);
+    WritableByteChannel channel = Channels.newChannel(new FileOutputStream(path));
+    if ("csv".equals(format))
+      return new CsvReportSink(channel);
+    if ("jsonl".equals(format))
+      return new JsonLinesReportSink(channel);
+    return new BinaryReportSink(channel);
+  }
+}
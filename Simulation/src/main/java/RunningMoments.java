@@ -0,0 +1,172 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * RunningMoments: the count, mean, variance, minimum and maximum of a stream
+ * of observations, kept in constant memory by Welford's method, which stays
+ * accurate where the textbook sum-of-squares formula loses its precision.
+ * Two sets of moments can be merged (Chan, Golub and LeVeque's formula), so
+ * moments gathered separately, say by parallel replications, can be pooled.
+ */
+
+class RunningMoments {
+  private long count;
+  private double mean;
+  private double m2; // sum of squared deviations from the mean
+  private double min;
+  private double max;
+
+  /**
+   * Constructor.
+   */
+  public RunningMoments() {
+    reset();
+  }
+
+  /**
+   * reset: forget every observation.
+   */
+  public void reset() {
+    count = 0;
+    mean = 0;
+    m2 = 0;
+    min = Double.POSITIVE_INFINITY;
+    max = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * add: record an observation.
+   *
+   * @param x double
+   */
+  public void add(double x) {
+    count++;
+    final double delta = x - mean;
+    mean += delta / count;
+    m2 += delta * (x - mean);
+    if (x < min)
+      min = x;
+    if (x > max)
+      max = x;
+  }
+
+  /**
+   * merge: add every observation recorded by another set of moments.
+   *
+   * @param other Sim.RunningMoments
+   */
+  public void merge(RunningMoments other) {
+    if (other.count == 0)
+      return;
+    final long n = count + other.count;
+    final double delta = other.mean - mean;
+    mean += delta * other.count / n;
+    m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+    count = n;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * getMean: return the mean, or NaN if there are no observations.
+   *
+   * @return double
+   */
+  public double getMean() {
+    return count > 0 ? mean : Double.NaN;
+  }
+
+  /**
+   * getVariance: return the sample variance, or NaN if there are fewer
+   * than two observations.
+   *
+   * @return double
+   */
+  public double getVariance() {
+    return count > 1 ? m2 / (count - 1) : Double.NaN;
+  }
+
+  public double getStdDev() {
+    return Math.sqrt(getVariance());
+  }
+
+  public double getMin() {
+    return count > 0 ? min : Double.NaN;
+  }
+
+  public double getMax() {
+    return count > 0 ? max : Double.NaN;
+  }
+
+  /**
+   * getHalfWidth: return the half-width of a 95% confidence interval for the
+   * mean, treating the observations as independent.
+   *
+   * @return double
+   */
+  public double getHalfWidth() {
+    return count > 1 ? halfWidth95(getStdDev(), count) : Double.NaN;
+  }
+
+  // Student's t 97.5% quantiles for 1 to 30 degrees of freedom, where the
+  // series in halfWidth95() falls short (at 1, 7.2 for 12.7)
+  private static final double[] T975 = { Double.NaN, 12.706205, 4.302653, 3.182446, 2.776445, 2.570582,
+      2.446912, 2.364624, 2.306004, 2.262157, 2.228139, 2.200985, 2.178813, 2.160369, 2.144787, 2.131450,
+      2.119905, 2.109816, 2.100922, 2.093024, 2.085963, 2.079614, 2.073873, 2.068658, 2.063899, 2.059539,
+      2.055529, 2.051831, 2.048407, 2.045230, 2.042272 };
+
+  /**
+   * halfWidth95: return the half-width of a 95% confidence interval for the
+   * mean of n independent observations with the given sample standard
+   * deviation. Student's t quantile is taken from a table up to 30 degrees
+   * of freedom, and from a series approximation beyond.
+   *
+   * @return double
+   * @param stdDev double
+   * @param n      long
+   */
+  static double halfWidth95(double stdDev, long n) {
+    if (n < 2)
+      return Double.NaN;
+    final double t;
+    if (n - 1 < T975.length)
+      t = T975[(int) (n - 1)];
+    else {
+      final double z = 1.959964; // normal 97.5% quantile
+      final double df = n - 1;
+      t = z + (z * z * z + z) / (4 * df) + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96 * df * df);
+    }
+    return t * stdDev / Math.sqrt(n);
+  }
+
+  /**
+   * writeState: write the moments to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(count);
+    out.writeDouble(mean);
+    out.writeDouble(m2);
+    out.writeDouble(min);
+    out.writeDouble(max);
+  }
+
+  /**
+   * readState: replace the moments with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    count = in.readLong();
+    mean = in.readDouble();
+    m2 = in.readDouble();
+    min = in.readDouble();
+    max = in.readDouble();
+  }
+}
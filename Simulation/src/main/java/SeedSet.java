@@ -0,0 +1,180 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * SeedSet: the four random-number seeds that determine a simulation run, and
+ * whether its streams are antithetic (see RandomStreams). Two runs with
+ * equal seed sets and equal parameters produce equal results.
+ *
+ * A seed set derived from a 64-bit master seed by fromMaster() also holds
+ * the start of its replication's substream of one xoshiro256++ sequence, from
+ * which the streams of every kind but "legacy" are drawn; replication r owns
+ * the four stretches of 2^128 numbers that begin 4r jumps into the sequence,
+ * so no two replications of one master share a stream.
+ */
+
+final class SeedSet {
+  // This is just a simple record structure, so the (final) fields are public.
+  public final int arrival; // seeds Sim.arrivalStream
+  public final int litre; // seeds Sim.litreStream
+  public final int balking; // seeds Sim.balkingStream
+  public final int service; // seeds Sim.serviceStream
+  public final boolean antithetic;
+  private final long[] substream; // xoshiro256++ state where the replication starts, or null
+
+  /**
+   * Constructor.
+   *
+   * @param arrival int
+   * @param litre   int
+   * @param balking int
+   * @param service int
+   */
+  public SeedSet(int arrival, int litre, int balking, int service) {
+    this(arrival, litre, balking, service, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param arrival    int
+   * @param litre      int
+   * @param balking    int
+   * @param service    int
+   * @param antithetic boolean
+   */
+  public SeedSet(int arrival, int litre, int balking, int service, boolean antithetic) {
+    this(arrival, litre, balking, service, antithetic, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param arrival    int
+   * @param litre      int
+   * @param balking    int
+   * @param service    int
+   * @param antithetic boolean
+   * @param substream  long[] the xoshiro256++ state where the replication
+   *                   starts, or null
+   */
+  private SeedSet(int arrival, int litre, int balking, int service, boolean antithetic, long[] substream) {
+    this.arrival = arrival;
+    this.litre = litre;
+    this.balking = balking;
+    this.service = service;
+    this.antithetic = antithetic;
+    this.substream = substream;
+  }
+
+  /**
+   * twin: return the seed set with the same seeds and the opposite kind of
+   * stream, whose run is the antithetic partner of this one's.
+   *
+   * @return Sim.SeedSet
+   */
+  public SeedSet twin() {
+    return new SeedSet(arrival, litre, balking, service, !antithetic, substream);
+  }
+
+  /**
+   * substream: return a xoshiro256++ stream at the start of the given
+   * stream of this replication, or null if the seed set was not derived from
+   * a master seed.
+   *
+   * @return Sim.Xoshiro256PlusPlusStream
+   * @param index int ARRIVAL, LITRE, BALKING or SERVICE
+   */
+  Xoshiro256PlusPlusStream substream(int index) {
+    if (substream == null)
+      return null;
+    Xoshiro256PlusPlusStream stream = new Xoshiro256PlusPlusStream(substream[0], substream[1], substream[2],
+        substream[3]);
+    for (int k = 0; k < index; k++)
+      stream.jump();
+    return stream;
+  }
+
+  /**
+   * fromMaster: derive the seed sets of count replications from a single
+   * master seed. The seeds are positive ints, which seed the "legacy" streams,
+   * so that a legacy replication can be repeated by typing its seeds into
+   * Sim.main; each set also gets its replication's xoshiro256++ substream, made
+   * by jumping a sequence seeded with the master four times per replication.
+   *
+   * @return Sim.SeedSet[]
+   * @param master long
+   * @param count  int
+   */
+  public static SeedSet[] fromMaster(long master, int count) {
+    Random seeder = new Random(master);
+    Xoshiro256PlusPlusStream root = new Xoshiro256PlusPlusStream(master);
+    SeedSet[] sets = new SeedSet[count];
+    for (int i = 0; i < count; i++) {
+      sets[i] = new SeedSet(1 + seeder.nextInt(Integer.MAX_VALUE - 1), 1 + seeder.nextInt(Integer.MAX_VALUE - 1),
+          1 + seeder.nextInt(Integer.MAX_VALUE - 1), 1 + seeder.nextInt(Integer.MAX_VALUE - 1), false,
+          root.getState());
+      for (int k = 0; k < RandomStreams.STREAMS; k++)
+        root.jump();
+    }
+    return sets;
+  }
+
+  /**
+   * write: write the seed set to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(arrival);
+    out.writeInt(litre);
+    out.writeInt(balking);
+    out.writeInt(service);
+    out.writeBoolean(antithetic);
+    out.writeBoolean(substream != null);
+    if (substream != null)
+      for (long word : substream)
+        out.writeLong(word);
+  }
+
+  /**
+   * read: return the seed set that write() wrote to in.
+   *
+   * @return Sim.SeedSet
+   * @param in java.io.DataInput
+   */
+  public static SeedSet read(DataInput in) throws IOException {
+    final int arrival = in.readInt();
+    final int litre = in.readInt();
+    final int balking = in.readInt();
+    final int service = in.readInt();
+    final boolean antithetic = in.readBoolean();
+    long[] substream = null;
+    if (in.readBoolean()) {
+      substream = new long[4];
+      for (int k = 0; k < substream.length; k++)
+        substream[k] = in.readLong();
+    }
+    return new SeedSet(arrival, litre, balking, service, antithetic, substream);
+  }
+
+  public boolean equals(Object o) {
+    if (!(o instanceof SeedSet))
+      return false;
+    SeedSet s = (SeedSet) o;
+    return arrival == s.arrival && litre == s.litre && balking == s.balking && service == s.service
+        && antithetic == s.antithetic && Arrays.equals(substream, s.substream);
+  }
+
+  public int hashCode() {
+    return ((((arrival * 31 + litre) * 31 + balking) * 31 + service) * 31 + Arrays.hashCode(substream)) * 2
+        + (antithetic ? 1 : 0);
+  }
+
+  public String toString() {
+    return arrival + " " + litre + " " + balking + " " + service + (antithetic ? " anti" : "");
+  }
+}
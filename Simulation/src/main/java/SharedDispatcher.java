@@ -0,0 +1,40 @@
+/**
+ * SharedDispatcher: the original station, one line for all the pumps. An
+ * arriving car takes the free pump released last, if there is one, and
+ * otherwise waits at the back of the line; a free pump serves the car at its
+ * front.
+ */
+
+class SharedDispatcher implements Dispatcher {
+  private final SimulationContext ctx;
+
+  /**
+   * Constructor.
+   *
+   * @param ctx Sim.SimulationContext
+   */
+  public SharedDispatcher(SimulationContext ctx) {
+    this.ctx = ctx;
+  }
+
+  public int queueSeenBy(int fuel) {
+    return ctx.carQueue.getQueueSize();
+  }
+
+  public void join(Car car, int fuel) {
+    if (ctx.pumpStand.aPumpIsAvailable())
+      ctx.pumpStand.takeAvailablePump().startService(car);
+    else
+      ctx.carQueue.insert(car);
+  }
+
+  public void release(Pump pump) {
+    if (ctx.carQueue.getQueueSize() > 0)
+      pump.startService(ctx.carQueue.takeFirstCar());
+    else
+      ctx.pumpStand.releasePump(pump);
+  }
+
+  public void restored() {
+  }
+}
@@ -12,49 +12,6 @@ import java.io.*;
 */
 
 public class Sim {
-  // "Global" quantities used throughout the simulation
-  public static double simulationTime; // What time is it?
-  public static double reportInterval; // How often should we report?
-
-  // quantities that determine how we model the real world
-  // In a more elaborate program, these might be input data.
-
-  // economics: profit per litre of gas, and cost to operate one pump for a day
-  public static double profit = 0.025;
-  public static double pumpCost = 20;
-
-  // demand; minimum and maximum amount of gas needed by a car
-  // See Car constructor.
-  public static double litresNeededMin = 10;
-  public static double litresNeededRange = 50;
-
-  // service times: constant base time+ time per litre+ random spread
-  // See Pump.serviceTime().
-  public static double serviceTimeBase = 150;
-  public static double serviceTimePerLitre = 0.5;
-  public static double serviceTimeSpread = 30;
-
-  // customer behavior probability of balking depends on three
-  // ad-hoc constants. See Arrival.doesCarBalk().
-  public static double balkA = 40;
-  public static double balkB = 25;
-  public static double balkC = 3;
-
-  // customer arrival rate
-  // See Arrival.interarrivalTime().
-  public static double meanInterarrivalTime = 50; // seconds
-
-  // random-number streams used to model the world
-  public static Random arrivalStream; // auto arrival times
-  public static Random litreStream; // number of litres needed
-  public static Random balkingStream; // balking probability
-  public static Random serviceStream; // service times
-
-  // major data structures
-  public static EventList eventList;
-  public static CarQueue carQueue;
-  public static PumpStand pumpStand;
-  public static Statistics stats;
 
   /**
    * main entrypoint - starts the application
@@ -62,59 +19,220 @@ public class Sim {
    * @param args java.lang.String[]
    */
   public static void main(java.lang.String[] args) throws IOException {
+    SimulationParameters params = new SimulationParameters();
+    boolean antithetic = false;
+    List<String> sinkFormats = new ArrayList<String>();
+    List<String> sinkPaths = new ArrayList<String>();
+    String tracePath = null;
+    String restorePath = null;
+    boolean metrics = false;
+    double until = Double.NaN;
+
+    // Options:
+    // -eventlist list|heap|calendar|ladder chooses the event set,
+    // -carqueue linked|ring the car store and -rng legacy|splittable|xoshiro|pcg
+    // the random-number generator.
+    // -csv, -jsonl and -binary file also write the report rows to file in
+    // that format.
+    // -trace file records every happening of the run in file (see
+    // TraceWriter and TraceReader).
+    // -checkpoint file saves the state of the run in file after every
+    // -every n reports (default 1).
+    // -restore file carries on the run saved in file, reading nothing, to its
+    // ending time or -until t.
+    // -metrics counts and times the events (see EngineMetrics), shows the
+    // counts through JMX as the run goes, and prints them at the end.
+    // -dispatch shared|pooled|lanes chooses how cars are matched with pumps
+    // (see Dispatcher).
+    // -speeds s0,s1,... and -fuels m0,m1,... make pump p serve s[p % n] times
+    // as fast and sell the fuel types set in the bits of m[p % n], and
+    // -fuelmix p0,p1,... gives the chance that a car needs each fuel type.
+    // -profile file makes the arrival rate vary with the time of day as file
+    // says (see ArrivalProfile).
+    // -arrivals file replays the arrival times and litres recorded in the CSV
+    // file (see ArrivalTrace).
+    // -distributions adds quantiles and confidence intervals to the final
+    // report, and -timeaverages the time averages of the queue length, busy
+    // pumps and cars at the station.
+    // -warmup drops the initial transient from the statistics.
+    // -precision r ends the run once the average wait and lost profit are
+    // known to within a relative half-width r.
+    // -crn draws each car's random numbers on arrival (see
+    // SimulationParameters.commonRandomNumbers), and -antithetic runs the
+    // antithetic twin of the seeds given.
+    // -maxevents n and -maxseconds s cap the run.
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-eventlist") && i + 1 < args.length)
+        params.eventListKind = args[++i];
+      else if (args[i].equals("-carqueue") && i + 1 < args.length)
+        params.carQueueKind = args[++i];
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        params.rngKind = args[++i];
+      else if ((args[i].equals("-csv") || args[i].equals("-jsonl") || args[i].equals("-binary"))
+          && i + 1 < args.length) {
+        sinkFormats.add(args[i].substring(1));
+        sinkPaths.add(args[++i]);
+      }
+      else if (args[i].equals("-trace") && i + 1 < args.length)
+        tracePath = args[++i];
+      else if (args[i].equals("-checkpoint") && i + 1 < args.length)
+        params.checkpointPath = args[++i];
+      else if (args[i].equals("-every") && i + 1 < args.length)
+        params.checkpointEvery = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-restore") && i + 1 < args.length)
+        restorePath = args[++i];
+      else if (args[i].equals("-until") && i + 1 < args.length)
+        until = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-metrics"))
+        metrics = true;
+      else if (args[i].equals("-dispatch") && i + 1 < args.length)
+        params.dispatchKind = args[++i];
+      else if (args[i].equals("-speeds") && i + 1 < args.length)
+        params.pumpSpeeds = parseDoubles(args[++i]);
+      else if (args[i].equals("-fuels") && i + 1 < args.length) {
+        final String[] masks = args[++i].split(",");
+        params.pumpFuels = new int[masks.length];
+        for (int m = 0; m < masks.length; m++)
+          params.pumpFuels[m] = Integer.parseInt(masks[m].trim());
+      }
+      else if (args[i].equals("-fuelmix") && i + 1 < args.length)
+        params.fuelMix = parseDoubles(args[++i]);
+      else if (args[i].equals("-profile") && i + 1 < args.length)
+        params.arrivalProfile = ArrivalProfile.load(args[++i]);
+      else if (args[i].equals("-arrivals") && i + 1 < args.length)
+        params.arrivalTracePath = args[++i];
+      else if (args[i].equals("-distributions"))
+        params.reportDistributions = true;
+      else if (args[i].equals("-timeaverages"))
+        params.reportTimeAverages = true;
+      else if (args[i].equals("-warmup"))
+        params.detectWarmup = true;
+      else if (args[i].equals("-precision") && i + 1 < args.length)
+        params.targetHalfWidth = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-crn"))
+        params.commonRandomNumbers = true;
+      else if (args[i].equals("-antithetic"))
+        antithetic = true;
+      else if (args[i].equals("-maxevents") && i + 1 < args.length)
+        params.maxEvents = Long.parseLong(args[++i]);
+      else if (args[i].equals("-maxseconds") && i + 1 < args.length)
+        params.maxWallClockSeconds = Double.parseDouble(args[++i]);
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    if (restorePath != null) {
+      resume(restorePath, params, until, sinkFormats, sinkPaths, tracePath, metrics);
+      return;
+    }
+
     BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
 
     // Read data and print introduction.
-    reportInterval = new Double(in.readLine()).doubleValue();
-    double endingTime = new Double(in.readLine()).doubleValue();
-    int numPumps = Integer.parseInt(in.readLine());
-    System.out.print("This simulation run uses " + numPumps + " pumps");
+    params.reportInterval = new Double(in.readLine()).doubleValue();
+    params.endingTime = new Double(in.readLine()).doubleValue();
+    params.numPumps = Integer.parseInt(in.readLine());
+    System.out.print("This simulation run uses " + params.numPumps + " pumps");
 
-    // Initialize the random-nwnber streams.
+    // Read the random-nwnber seeds.
     System.out.println(" and the following random number seeds:");
-    int seed = Integer.parseInt(in.readLine());
-    arrivalStream = new Random(seed);
-    System.out.print("       " + seed);
-    seed = Integer.parseInt(in.readLine());
-    litreStream = new Random(seed);
-    System.out.print("        " + seed);
-    seed = Integer.parseInt(in.readLine());
-    balkingStream = new Random(seed);
-    System.out.print("         " + seed);
-    seed = Integer.parseInt(in.readLine());
-    serviceStream = new Random(seed);
-    System.out.print("        " + seed);
+    SeedSet seeds = new SeedSet(Integer.parseInt(in.readLine()), Integer.parseInt(in.readLine()),
+        Integer.parseInt(in.readLine()), Integer.parseInt(in.readLine()), antithetic);
+    System.out.print("       " + seeds.arrival);
+    System.out.print("        " + seeds.litre);
+    System.out.print("         " + seeds.balking);
+    System.out.print("        " + seeds.service);
     System.out.println("");
 
-    // Create and initialize the event list,the car queue, the pump stand,
-    // and the statistics collector.
-    eventList = new EventList();
-    carQueue = new CarQueue();
-    pumpStand = new PumpStand(numPumps);
-    stats = new Statistics();
-
-    // Schedule the required events:
-    // the end of the simulation;
-    // the first progress report;
-    // the arrival of the first car.
-
-    EndOfSimulation lastEvent = new EndOfSimulation(endingTime);
-    eventList.insert(lastEvent);
-    if (reportInterval <= endingTime) {
-      Report nextReport = new Report(reportInterval);
-      eventList.insert(nextReport);
-    }
-    eventList.insert(new Arrival(0));
-    // (Should the first car really arrive at time 0?)
-
-    // The"clock driver"loop
-    while (true) {
-      Event currentEvent = eventList.takeNextEvent();
-      simulationTime = currentEvent.getTime();
-      currentEvent.makeItHappen();
-      if (currentEvent instanceof EndOfSimulation)
-        break;
+    run(new SimulationContext(params, seeds, System.out), false, sinkFormats, sinkPaths, tracePath, metrics);
+  }
+
+  /**
+   * parseDoubles: return the comma-separated numbers in list.
+   *
+   * @return double[]
+   * @param list java.lang.String
+   */
+  private static double[] parseDoubles(String list) {
+    final String[] items = list.split(",");
+    double[] values = new double[items.length];
+    for (int i = 0; i < items.length; i++)
+      values[i] = Double.parseDouble(items[i].trim());
+    return values;
+  }
+
+  /**
+   * resume: carry on the run saved in the checkpoint at path, printing the
+   * introduction as the run did. Only the options that do not change the
+   * model apply: checkpointing, and the ending time if until is a number.
+   *
+   * @param path        java.lang.String
+   * @param options     Sim.SimulationParameters as set by the options
+   * @param until       double
+   * @param sinkFormats java.util.List
+   * @param sinkPaths   java.util.List
+   * @param tracePath   java.lang.String
+   * @param metrics     boolean
+   */
+  private static void resume(String path, SimulationParameters options, double until, List<String> sinkFormats,
+      List<String> sinkPaths, String tracePath, boolean metrics) throws IOException {
+    Checkpoint checkpoint = Checkpoint.load(path);
+    SimulationParameters params = checkpoint.getParameters();
+    if (!Double.isNaN(until))
+      params.endingTime = until;
+    if (options.checkpointPath != null) {
+      params.checkpointPath = options.checkpointPath;
+      params.checkpointEvery = options.checkpointEvery;
     }
+
+    SeedSet seeds = checkpoint.getSeeds();
+    System.out.print("This simulation run uses " + params.numPumps + " pumps");
+    System.out.println(" and the following random number seeds:");
+    System.out.print("       " + seeds.arrival);
+    System.out.print("        " + seeds.litre);
+    System.out.print("         " + seeds.balking);
+    System.out.print("        " + seeds.service);
+    System.out.println("");
+    run(checkpoint.restore(params, null, System.out), true, sinkFormats, sinkPaths, tracePath, metrics);
+  }
+
+  /**
+   * run: run ctx - new, or restored from a checkpoint - to its end, sending
+   * its reports to the sinks named and its trace to tracePath, if not null,
+   * and keeping engine metrics if asked.
+   *
+   * @param ctx         Sim.SimulationContext
+   * @param restored    boolean
+   * @param sinkFormats java.util.List
+   * @param sinkPaths   java.util.List
+   * @param tracePath   java.lang.String
+   * @param metrics     boolean
+   */
+  private static void run(SimulationContext ctx, boolean restored, List<String> sinkFormats,
+      List<String> sinkPaths, String tracePath, boolean metrics) throws IOException {
+    ReportSink[] sinks = new ReportSink[sinkFormats.size()];
+    for (int i = 0; i < sinks.length; i++) {
+      sinks[i] = ReportSink.open(sinkFormats.get(i), sinkPaths.get(i));
+      ctx.stats.addSink(sinks[i]);
+    }
+    TraceWriter trace = tracePath != null ? new TraceWriter(tracePath) : null;
+    ctx.trace = trace;
+    if (metrics) {
+      ctx.metrics = new EngineMetrics();
+      ctx.metrics.register();
+    }
+    if (restored)
+      ctx.resume();
+    else
+      ctx.run();
+    if (ctx.metrics != null)
+      ctx.metrics.unregister();
+    for (ReportSink sink : sinks)
+      sink.close();
+    if (trace != null)
+      trace.close();
   }
 }
 
@@ -132,11 +250,61 @@ class Statistics {
   private double totalWaitingTime = 0.0;
   private double totalServiceTime = 0.0;
 
+  // distributions of the customers' waiting and service times
+  public final Tally waitingTimes = new Tally();
+  public final Tally serviceTimes = new Tally();
+
+  // profit lost on each arriving car (0 unless it balks), in batches, for
+  // the stopping rule
+  public final BatchMeans lostProfits = new BatchMeans();
+
+  // time-weighted state of the station, kept up to date by the car queue
+  // and the pump stand
+  public final TimeWeightedValue queueLength = new TimeWeightedValue();
+  public final TimeWeightedValue busyPumps = new TimeWeightedValue();
+  public final TimeWeightedValue carsInSystem = new TimeWeightedValue();
+
+  // The statistics cover the time from startTime on. It stays 0 unless a
+  // warm-up detector is given, which moves it to the end of the warm-up.
+  // While the detector watches, log keeps what the statistics are told.
+  private double startTime = 0.0;
+  private WarmupDetector warmup;
+  private WarmupLog log;
+  private int warmupCustomers = -1; // customers the warm-up dropped; -1 if none
+
+  private final SimulationContext ctx;
+  private final PrintStream out; // where reports are printed
+
+  // where the rows made by snapshot() go: the table on out, and any sinks
+  // added since; row is refilled for every snapshot
+  private ReportSink[] sinks;
+  private final ReportRow row = new ReportRow();
+
   /**
-   * Constructor.
+   * Constructor: print the column headers of the table on out.
+   *
+   * @param ctx Sim.SimulationContext
+   * @param out java.io.PrintStream where reports are printed
+   */
+  public Statistics(SimulationContext ctx, PrintStream out) {
+    this.ctx = ctx;
+    this.out = out;
+    warmup = ctx.detectWarmup ? new WarmupDetector() : null;
+    log = ctx.detectWarmup ? new WarmupLog() : null;
+    sinks = new ReportSink[] { new TableReportSink(out) };
+    sinks[0].begin();
+  }
+
+  /**
+   * addSink: send the rows of later snapshots to sink as well, beginning
+   * it now. The caller closes the sink when the run is over.
+   *
+   * @param sink Sim.ReportSink
    */
-  public Statistics() {
-    printHeaders();
+  public void addSink(ReportSink sink) {
+    sink.begin();
+    sinks = Arrays.copyOf(sinks, sinks.length + 1);
+    sinks[sinks.length - 1] = sink;
   }
 
   /**
@@ -145,8 +313,20 @@ class Statistics {
    * @param litres double
    */
   public void accumBalk(double litres) {
+    if (log != null)
+      log.add(WarmupLog.BALK, ctx.simulationTime, litres, 0);
     balkingCustomers += 1;
     totalLitresMissed += litres;
+    lostProfits.add(litres * ctx.profit);
+  }
+
+  /**
+   * countJoin: record that an arriving car did not balk.
+   */
+  public void countJoin() {
+    if (log != null)
+      log.add(WarmupLog.JOIN, ctx.simulationTime, 0, 0);
+    lostProfits.add(0);
   }
 
   /**
@@ -155,6 +335,8 @@ class Statistics {
    * @param litres double
    */
   public void accumSale(double litres) {
+    if (log != null)
+      log.add(WarmupLog.SALE, ctx.simulationTime, litres, 0);
     customersServed += 1;
     totalLitresSold += litres;
   }
@@ -165,7 +347,10 @@ class Statistics {
    * @param interval double
    */
   public void accumServiceTime(double interval) {
+    if (log != null)
+      log.add(WarmupLog.SERVICE, ctx.simulationTime, interval, 0);
     totalServiceTime += interval;
+    serviceTimes.add(interval);
   }
 
   /**
@@ -174,7 +359,261 @@ class Statistics {
    * @param interval double
    */
   public void accumWaitingTime(double interval) {
+    if (log != null)
+      log.add(WarmupLog.WAIT, ctx.simulationTime, interval, 0);
     totalWaitingTime += interval;
+    waitingTimes.add(interval);
+    if (warmup != null)
+      watchWarmup(interval);
+  }
+
+  /**
+   * watchWarmup: feed a waiting time to the warm-up detector, and truncate
+   * the statistics once it finds that the initial transient is over. The
+   * detector gives up halfway through the run, so that enough of the run is
+   * left to measure; the statistics then cover the whole run.
+   *
+   * @param interval double
+   */
+  private void watchWarmup(double interval) {
+    if (ctx.simulationTime > ctx.endingTime / 2) {
+      warmup = null;
+      log = null;
+      return;
+    }
+    if (warmup.add(interval)) {
+      final int dropped = warmup.getTruncation();
+      warmup = null;
+      truncate(dropped);
+    }
+  }
+
+  /**
+   * truncate: rebuild the statistics as if they had been reset when the
+   * first waiting time after the dropped ones was recorded (at time 0 if
+   * none are dropped), by replaying the log from there. The cars at the
+   * pumps at that moment are carried across: their waits and service times
+   * count, as do their sales when they leave, so every customer served has
+   * a wait in the average, and the pumps' scheduled time counts from the
+   * reset on. The cars stay at the station where they are.
+   *
+   * @param dropped int the number of waiting times to drop
+   */
+  private void truncate(int dropped) {
+    final WarmupLog replay = log;
+    log = null;
+    final int from = dropped == 0 ? 0 : replay.indexOfWait(dropped);
+    final double resetTime = from == 0 ? 0.0 : replay.getTime(from);
+
+    // The station as it was then: the queue, the busy pumps, how long the
+    // queue had been empty, and when each car at a pump is due to leave.
+    final int numPumps = ctx.pumpStand.getNumberOfPumps();
+    final double[] due = new double[numPumps];
+    final double[] waits = new double[numPumps];
+    final double[] services = new double[numPumps];
+    int serving = 0;
+    int waiting = 0;
+    int busy = 0;
+    double emptyTime = 0.0;
+    double emptySince = 0.0;
+    for (int i = 0; i < from; i++) {
+      final double time = replay.getTime(i);
+      switch (replay.getKind(i)) {
+      case WarmupLog.CHANGE:
+        if (waiting == 0 && replay.getCount(i) > 0)
+          emptyTime += time - emptySince;
+        else if (waiting > 0 && replay.getCount(i) == 0)
+          emptySince = time;
+        waiting = replay.getCount(i);
+        busy = (int) replay.getValue(i);
+        break;
+      case WarmupLog.WAIT:
+        waits[serving] = replay.getValue(i);
+        break;
+      case WarmupLog.SERVICE:
+        // the departure was scheduled at exactly this sum
+        due[serving] = time + replay.getValue(i);
+        services[serving++] = replay.getValue(i);
+        break;
+      case WarmupLog.SALE:
+        for (int p = 0; p < serving; p++)
+          if (due[p] == time) {
+            serving--;
+            due[p] = due[serving];
+            waits[p] = waits[serving];
+            services[p] = services[serving];
+            break;
+          }
+        break;
+      default:
+        break;
+      }
+    }
+    if (waiting == 0)
+      emptyTime += resetTime - emptySince;
+
+    totalArrivals = 0;
+    customersServed = 0;
+    balkingCustomers = 0;
+    totalLitresSold = 0.0;
+    totalLitresMissed = 0.0;
+    totalWaitingTime = 0.0;
+    totalServiceTime = 0.0;
+    waitingTimes.reset();
+    serviceTimes.reset();
+    lostProfits.reset();
+    queueLength.set(resetTime, waiting);
+    queueLength.reset(resetTime);
+    busyPumps.set(resetTime, busy);
+    busyPumps.reset(resetTime);
+    carsInSystem.set(resetTime, waiting + busy);
+    carsInSystem.reset(resetTime);
+    ctx.carQueue.discountEmptyTime(emptyTime);
+    startTime = resetTime;
+    warmupCustomers = dropped;
+
+    for (int p = 0; p < serving; p++) {
+      totalWaitingTime += waits[p];
+      waitingTimes.add(waits[p]);
+      totalServiceTime += due[p] - resetTime;
+      serviceTimes.add(services[p]);
+    }
+    for (int i = from; i < replay.size(); i++) {
+      switch (replay.getKind(i)) {
+      case WarmupLog.ARRIVAL:
+        countArrival();
+        break;
+      case WarmupLog.BALK:
+        accumBalk(replay.getValue(i));
+        break;
+      case WarmupLog.JOIN:
+        countJoin();
+        break;
+      case WarmupLog.SALE:
+        accumSale(replay.getValue(i));
+        break;
+      case WarmupLog.WAIT:
+        accumWaitingTime(replay.getValue(i));
+        break;
+      case WarmupLog.SERVICE:
+        accumServiceTime(replay.getValue(i));
+        break;
+      default:
+        stationChanged(replay.getTime(i), replay.getCount(i), (int) replay.getValue(i));
+        break;
+      }
+    }
+  }
+
+  /**
+   * writeState: write everything recorded so far to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(totalArrivals);
+    out.writeInt(customersServed);
+    out.writeInt(balkingCustomers);
+    out.writeDouble(totalLitresSold);
+    out.writeDouble(totalLitresMissed);
+    out.writeDouble(totalWaitingTime);
+    out.writeDouble(totalServiceTime);
+    waitingTimes.writeState(out);
+    serviceTimes.writeState(out);
+    lostProfits.writeState(out);
+    queueLength.writeState(out);
+    busyPumps.writeState(out);
+    carsInSystem.writeState(out);
+    out.writeDouble(startTime);
+    out.writeInt(warmupCustomers);
+    out.writeBoolean(warmup != null);
+    if (warmup != null) {
+      warmup.writeState(out);
+      log.writeState(out);
+    }
+  }
+
+  /**
+   * readState: replace everything recorded so far with what writeState()
+   * wrote to in. A warm-up still being watched for is watched for again
+   * only if this run detects warm-ups.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    totalArrivals = in.readInt();
+    customersServed = in.readInt();
+    balkingCustomers = in.readInt();
+    totalLitresSold = in.readDouble();
+    totalLitresMissed = in.readDouble();
+    totalWaitingTime = in.readDouble();
+    totalServiceTime = in.readDouble();
+    waitingTimes.readState(in);
+    serviceTimes.readState(in);
+    lostProfits.readState(in);
+    queueLength.readState(in);
+    busyPumps.readState(in);
+    carsInSystem.readState(in);
+    startTime = in.readDouble();
+    warmupCustomers = in.readInt();
+    warmup = null;
+    log = null;
+    if (in.readBoolean()) {
+      WarmupDetector saved = new WarmupDetector();
+      saved.readState(in);
+      WarmupLog savedLog = new WarmupLog();
+      savedLog.readState(in);
+      if (ctx.detectWarmup) {
+        warmup = saved;
+        log = savedLog;
+      }
+    }
+  }
+
+  /**
+   * getStartTime: return the time from which the statistics are measured:
+   * 0, or the end of the warm-up if one was detected.
+   *
+   * @return double
+   */
+  public double getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * printStop: print why a run under a stopping rule ended, with the
+   * relative precision reached for the average wait and the lost profit.
+   *
+   * @param reason java.lang.String
+   * @param events long the number of events that happened
+   */
+  public void printStop(String reason, long events) {
+    out.println(" Stopped at " + fmtDbl(ctx.simulationTime, 0, 0) + " after " + events + " events: "
+        + reason);
+    out.println(" Relative 95% CI +/-  Wait " + fmtRelative(waitingTimes.batchMeans.getRelativeHalfWidth())
+        + "  Lost profit " + fmtRelative(lostProfits.getRelativeHalfWidth()));
+  }
+
+  /**
+   * fmtRelative: format a relative half-width as a percentage, or "Unknown".
+   *
+   * @return java.lang.String
+   * @param r double
+   */
+  private static String fmtRelative(double r) {
+    return Double.isInfinite(r) || Double.isNaN(r) ? "Unknown" : fmtDbl(100 * r, 0, 2) + "%";
+  }
+
+  /**
+   * printWarmup: print how many customers the warm-up dropped and when it
+   * ended, if it was detected.
+   */
+  public void printWarmup() {
+    if (warmupCustomers >= 0)
+      out.println(" Warm-up of " + warmupCustomers + " customers ended at " + fmtDbl(startTime, 0, 0)
+          + "; statistics exclude it");
+    else
+      out.println(" Warm-up not detected; statistics cover the whole run");
   }
 
   /**
@@ -182,6 +621,8 @@ class Statistics {
    */
 
   public void countArrival() {
+    if (log != null)
+      log.add(WarmupLog.ARRIVAL, ctx.simulationTime, 0, 0);
     totalArrivals += 1;
   }
 
@@ -227,11 +668,11 @@ class Statistics {
    * If it is too long, it is not changed.
    * 
    * @return java.lang.String
-   * @param number int
+   * @param number long
    * @param width  int
    */
 
-  private static String fmtInt(int number, int width) {
+  private static String fmtInt(long number, int width) {
     String result = "" + number;
     for (int i = result.length(); i < width; i++)
       result = " " + result;
@@ -239,42 +680,147 @@ class Statistics {
   }
 
   /**
-   * printHeaders: print column titles for the statistics summaries.
+   * snapshot: report a summary of the statistics so far to every sink.
    */
-  private static void printHeaders() {
-    System.out.println(" Current   Total NoQueue  Car->Car Averaae Number Average  Pump  Total  Lost ");
-    System.out.println(" Time      Cars  Fraction  Time    Litres  Balked  Wait  Usage Profit Profit ");
-    for (int i = 0; i < 79; i++)
-      System.out.print("-");
-    System.out.println("");
+  public void snapshot() {
+    final double elapsed = ctx.simulationTime - startTime;
+    row.time = ctx.simulationTime;
+    row.totalCars = totalArrivals;
+    row.noQueueFraction = ctx.carQueue.getEmptyTime() / elapsed;
+    if (totalArrivals > 0) {
+      row.carToCarTime = elapsed / totalArrivals;
+      row.averageLitres = (totalLitresSold + totalLitresMissed) / totalArrivals;
+    } else {
+      row.carToCarTime = Double.NaN;
+      row.averageLitres = Double.NaN;
+    }
+    row.numberBalked = balkingCustomers;
+    row.averageWait = customersServed > 0 ? totalWaitingTime / customersServed : Double.NaN;
+    row.pumpUsage = busyPumps.getAverage(ctx.simulationTime) / ctx.pumpStand.getNumberOfPumps();
+    row.scheduledPumpUsage = totalServiceTime / (ctx.pumpStand.getNumberOfPumps() * elapsed);
+    row.totalProfit = totalLitresSold * ctx.profit - ctx.pumpCost * ctx.pumpStand.getNumberOfPumps();
+    row.lostProfit = totalLitresMissed * ctx.profit;
+
+    for (ReportSink sink : sinks)
+      sink.write(row);
   }
 
   /**
-   * snapshot: print a summary of the statistics so far.
+   * printDistributions: print the mean, standard deviation, quantiles and
+   * maximum of the waiting and service times, with a batch-means confidence
+   * interval for the mean ("Unknown" until there are enough batches).
    */
-  public void snapshot() {
-    System.out.print(fmtDbl(Sim.simulationTime, 8, 0));
-    System.out.print(fmtInt(totalArrivals, 7));
-    System.out.print(fmtDbl(Sim.carQueue.getEmptyTime() / Sim.simulationTime, 8, 3));
+  public void printDistributions() {
+    out.println("               Mean  Std Dev   Median     95th     99th      Max  95% CI +/-");
+    printDistribution("Wait   ", waitingTimes);
+    printDistribution("Service", serviceTimes);
+  }
 
-    if (totalArrivals > 0) {
-      System.out.print(fmtDbl(Sim.simulationTime / totalArrivals, 9, 3));
-      System.out.print(fmtDbl((totalLitresSold + totalLitresMissed) / totalArrivals, 8, 3));
-    } else
-      System.out.print("Unknown Unknown");
-
-    System.out.print(fmtInt(balkingCustomers, 7));
-    if (customersServed > 0)
-      System.out.print(fmtDbl(totalWaitingTime / customersServed, 9, 3));
-    else
-      System.out.print("Unknown");
+  /**
+   * printDistribution: print one line of printDistributions().
+   *
+   * @param label java.lang.String
+   * @param tally Sim.Tally
+   */
+  private void printDistribution(String label, Tally tally) {
+    out.print(" " + label);
+    if (tally.moments.getCount() < 2) {
+      out.println(" Unknown");
+      return;
+    }
+    out.print(fmtDbl(tally.moments.getMean(), 11, 3));
+    out.print(fmtDbl(tally.moments.getStdDev(), 9, 3));
+    out.print(fmtDbl(tally.histogram.quantile(0.5), 9, 3));
+    out.print(fmtDbl(tally.histogram.quantile(0.95), 9, 3));
+    out.print(fmtDbl(tally.histogram.quantile(0.99), 9, 3));
+    out.print(fmtDbl(tally.moments.getMax(), 9, 3));
+    final double halfWidth = tally.batchMeans.getHalfWidth();
+    out.println(Double.isNaN(halfWidth) ? "     Unknown" : fmtDbl(halfWidth, 12, 3));
+  }
 
-    System.out.print(fmtDbl(totalServiceTime
-        / (Sim.pumpStand.getNumberOfPumps() * Sim.simulationTime), 7, 3));
-    System.out.print(fmtDbl(totalLitresSold * Sim.profit
-        - Sim.pumpCost * Sim.pumpStand.getNumberOfPumps(), 9, 2));
-    System.out.print(fmtDbl(totalLitresMissed * Sim.profit, 7, 2));
-    System.out.println("");
+  /**
+   * stationChanged: record the queue length and the number of busy pumps
+   * as they are now. Called whenever either of them changes; a car that
+   * leaves the queue for the pump its predecessor has just left counts as
+   * one car fewer in the system.
+   */
+  public void stationChanged() {
+    stationChanged(ctx.simulationTime, ctx.carQueue.getQueueSize(), ctx.pumpStand.getNumberBusy());
+  }
+
+  /**
+   * stationChanged: record that at time now waiting cars were queued and
+   * busy pumps were busy.
+   *
+   * @param now     double
+   * @param waiting int
+   * @param busy    int
+   */
+  private void stationChanged(double now, int waiting, int busy) {
+    if (log != null)
+      log.add(WarmupLog.CHANGE, now, busy, waiting);
+    queueLength.set(now, waiting);
+    busyPumps.set(now, busy);
+    carsInSystem.set(now, waiting + busy);
+  }
+
+  /**
+   * printTimeAverages: print the time averages and maxima of the queue
+   * length, the number of busy pumps and the number of cars at the station.
+   */
+  public void printTimeAverages() {
+    out.println(" Time-weighted     Average  Maximum");
+    out.println(" Queue length   " + fmtDbl(queueLength.getAverage(ctx.simulationTime), 11, 3)
+        + fmtInt((int) queueLength.getMax(), 9));
+    out.println(" Busy pumps     " + fmtDbl(busyPumps.getAverage(ctx.simulationTime), 11, 3)
+        + fmtInt((int) busyPumps.getMax(), 9));
+    out.println(" Cars in system " + fmtDbl(carsInSystem.getAverage(ctx.simulationTime), 11, 3)
+        + fmtInt((int) carsInSystem.getMax(), 9));
+  }
+
+  /**
+   * printMetrics: print what the engine metrics have counted: the events
+   * and their rate, the deepest the event list and the car queue have been,
+   * and for each kind of event its count and the mean time of the routines
+   * sampled.
+   *
+   * @param metrics Sim.EngineMetrics
+   */
+  public void printMetrics(EngineMetrics metrics) {
+    out.println(" Engine: " + metrics.getEvents() + " events, " + fmtDbl(metrics.getEventsPerSecond(), 0, 0)
+        + " per second; deepest event list " + metrics.getPeakEventListSize() + ", car queue "
+        + metrics.getPeakQueueLength());
+    out.println(" Event               Count  Mean ns");
+    final String[] kinds = metrics.getEventKinds();
+    final long[] counts = metrics.getEventCounts();
+    final double[] nanos = metrics.getMeanNanos();
+    for (int i = 0; i < kinds.length; i++) {
+      String label = " " + kinds[i];
+      for (int j = label.length(); j < 16; j++)
+        label += " ";
+      out.println(label + fmtInt(counts[i], 9) + (Double.isNaN(nanos[i]) ? "  Unknown" : fmtDbl(nanos[i], 9, 0)));
+    }
+  }
+
+  /**
+   * summarize: return the quantities printed by snapshot(), as of now.
+   *
+   * @return Sim.ReplicationSummary
+   */
+  public ReplicationSummary summarize() {
+    final int numPumps = ctx.pumpStand.getNumberOfPumps();
+    final double elapsed = ctx.simulationTime - startTime;
+    return new ReplicationSummary(ctx.seeds, ctx.simulationTime, totalArrivals, customersServed,
+        balkingCustomers, totalLitresSold, totalLitresMissed,
+        ctx.carQueue.getEmptyTime() / elapsed,
+        customersServed > 0 ? totalWaitingTime / customersServed : Double.NaN,
+        busyPumps.getAverage(ctx.simulationTime) / numPumps, totalServiceTime / (numPumps * elapsed),
+        totalLitresSold * ctx.profit - ctx.pumpCost * numPumps,
+        totalLitresMissed * ctx.profit,
+        waitingTimes.histogram.quantile(0.5), waitingTimes.histogram.quantile(0.95),
+        waitingTimes.histogram.quantile(0.99), waitingTimes.batchMeans.getHalfWidth(),
+        queueLength.getAverage(ctx.simulationTime), (int) queueLength.getMax(),
+        carsInSystem.getAverage(ctx.simulationTime), startTime);
   }
 
 }
@@ -286,6 +832,10 @@ class Car {
 
   private double arrivalTime;
   private double litresNeeded;
+  private double serviceTime; // drawn at arrival, or NaN; see below
+
+  // link used by the car queue, and by the context's pool of spare cars
+  Car next;
 
   /**
    * constructor
@@ -294,9 +844,66 @@ class Car {
    * should be calculated in the constructor
    *
    * The distribution of litres required is uniform between 10 and 60
+   *
+   * Under common random numbers the car also draws its service time now,
+   * whether or not it will be served, so that every car takes one number
+   * from each stream and runs with different numbers of pumps stay in step.
+   * Otherwise the service time is drawn when service starts.
+   *
+   * @param ctx Sim.SimulationContext
+   */
+  public Car(SimulationContext ctx) {
+    reuse(ctx);
+  }
+
+  /**
+   * constructor: build a car with the given attributes, without drawing
+   * anything from the random-number streams.
+   *
+   * @param arrivalTime  double
+   * @param litresNeeded double
+   */
+  Car(double arrivalTime, double litresNeeded) {
+    this(arrivalTime, litresNeeded, Double.NaN);
+  }
+
+  /**
+   * constructor: build a car with the given attributes, including a service
+   * time drawn in advance (NaN if none).
+   *
+   * @param arrivalTime  double
+   * @param litresNeeded double
+   * @param serviceTime  double
+   */
+  Car(double arrivalTime, double litresNeeded, double serviceTime) {
+    this.arrivalTime = arrivalTime;
+    this.litresNeeded = litresNeeded;
+    this.serviceTime = serviceTime;
+  }
+
+  /**
+   * reuse: turn a car that has left the station into a newly-arrived one,
+   * exactly as the constructor would have built it.
+   *
+   * @param ctx Sim.SimulationContext
+   */
+  void reuse(SimulationContext ctx) {
+    arrivalTime = 0;
+    litresNeeded = ctx.litresNeededMin + ctx.litreStream.nextDouble() * ctx.litresNeededRange;
+    serviceTime = ctx.commonRandomNumbers ? Pump.drawServiceTime(ctx, litresNeeded) : Double.NaN;
+  }
+
+  /**
+   * restore: give a car that has left the station the given attributes.
+   *
+   * @param arrivalTime  double
+   * @param litresNeeded double
+   * @param serviceTime  double drawn in advance, or NaN
    */
-  public Car() {
-    litresNeeded = Sim.litresNeededMin + Sim.litreStream.nextDouble() * Sim.litresNeededRange;
+  void restore(double arrivalTime, double litresNeeded, double serviceTime) {
+    this.arrivalTime = arrivalTime;
+    this.litresNeeded = litresNeeded;
+    this.serviceTime = serviceTime;
   }
 
   /**
@@ -317,6 +924,16 @@ class Car {
     return litresNeeded;
   }
 
+  /**
+   * getServiceTime: return the service time drawn when the car arrived, or
+   * NaN if it is to be drawn when service starts.
+   *
+   * @return double
+   */
+  public double getServiceTime() {
+    return serviceTime;
+  }
+
   /**
    * setArrivalTime: set the car's arrival time.
    * 
@@ -329,34 +946,120 @@ class Car {
 
 /**
  * CarQueue: the class representing the lineup of cars at the gas station
+ *
+ * The cars themselves are kept in a CarStore, chosen when the queue is
+ * created; the queue does the bookkeeping that does not depend on how they
+ * are kept.
  */
 
 class CarQueue {
-  // Queueitem: the class for objects stored in the car queue.
-  private class Queueitem {
-    // The car queue is a linked list, so each item contains a data field
-    // and a "next item" field. This is just a simple record structure, so
-    // we'll allow outsiders to access the fields directly instead of using
-    // get and set methods.
-    public Car data;
-    public Queueitem next;
-  }
-
-  private Queueitem firstWaitingCar;
-  private Queueitem lastWaitingCar;
-  private int queueSize;
+  // the names accepted by the constructor
+  public static final String[] KINDS = { "linked", "ring" };
+  public static final String DEFAULT_KIND = "linked";
+
+  private final CarStore[] lanes; // lanes[0] is the queue if it has one lane
+  private final int[] laneSizes;
+  private int queueSize; // in all the lanes
   private double totalEmptyQueueTime;
+  private final SimulationContext ctx;
 
   /**
-   * Constructor.
+   * Constructor: build a queue backed by the default car store.
+   *
+   * @param ctx Sim.SimulationContext
+   */
+  public CarQueue(SimulationContext ctx) {
+    this(ctx, DEFAULT_KIND);
+  }
+
+  /**
+   * Constructor: build a queue of one lane backed by the named car store.
+   *
+   * @param ctx  Sim.SimulationContext
+   * @param kind java.lang.String
+   */
+  public CarQueue(SimulationContext ctx, String kind) {
+    this(ctx, kind, 1);
+  }
+
+  /**
+   * Constructor: build a queue of the given number of lanes, each a
+   * first-in, first-out line of its own, backed by the named car store; one
+   * of "linked" (the cars linked together) or "ring" (the cars' attributes
+   * in primitive ring buffers, with no car objects while they wait). The
+   * queue's size and empty time are those of all the lanes together; which
+   * lane a car joins is up to the Dispatcher.
+   *
+   * @param ctx   Sim.SimulationContext
+   * @param kind  java.lang.String
+   * @param lanes int
    */
-  public CarQueue() {
-    firstWaitingCar = null;
-    lastWaitingCar = null;
+  public CarQueue(SimulationContext ctx, String kind, int lanes) {
+    this.ctx = ctx;
+    if (!"linked".equals(kind) && !"ring".equals(kind))
+      throw new IllegalArgumentException("unknown car queue kind: " + kind);
+    this.lanes = new CarStore[lanes];
+    for (int i = 0; i < lanes; i++)
+      this.lanes[i] = "linked".equals(kind) ? new LinkedCarStore() : new RingBufferCarStore(ctx);
+    laneSizes = new int[lanes];
     queueSize = 0;
     totalEmptyQueueTime = 0;
   }
 
+  /**
+   * discountEmptyTime: take time off the total time the car queue has
+   * been empty, as if it had not been counted.
+   *
+   * @param time double
+   */
+  public void discountEmptyTime(double time) {
+    totalEmptyQueueTime -= time;
+  }
+
+  /**
+   * writeState: write the waiting cars of each lane, first to last, and the
+   * empty-queue time to out, for a checkpoint. The cars are taken from the
+   * store and put back in the same order.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeDouble(totalEmptyQueueTime);
+    out.writeInt(lanes.length);
+    for (int lane = 0; lane < lanes.length; lane++) {
+      out.writeInt(laneSizes[lane]);
+      for (int i = 0; i < laneSizes[lane]; i++) {
+        final Car car = lanes[lane].takeFirst();
+        out.writeDouble(car.getArrivalTime());
+        out.writeDouble(car.getLitresNeeded());
+        out.writeDouble(car.getServiceTime());
+        lanes[lane].insert(car);
+      }
+    }
+  }
+
+  /**
+   * readState: fill the empty queue with the cars that writeState() wrote
+   * to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    totalEmptyQueueTime = in.readDouble();
+    if (in.readInt() != lanes.length)
+      throw new IOException("the checkpoint's car queue has a different number of lanes");
+    queueSize = 0;
+    for (int lane = 0; lane < lanes.length; lane++) {
+      laneSizes[lane] = in.readInt();
+      queueSize += laneSizes[lane];
+      for (int i = 0; i < laneSizes[lane]; i++) {
+        final double arrivalTime = in.readDouble();
+        final double litres = in.readDouble();
+        lanes[lane].insert(ctx.newCar(arrivalTime, litres, in.readDouble()));
+      }
+    }
+  }
+
   /**
    * getEmptyTime: return the total time the car queue has been empty.
    * 
@@ -366,7 +1069,7 @@ class CarQueue {
     if (queueSize > 0)
       return totalEmptyQueueTime;
     else
-      return totalEmptyQueueTime + Sim.simulationTime;
+      return totalEmptyQueueTime + ctx.simulationTime;
   }
 
   /**
@@ -379,27 +1082,55 @@ class CarQueue {
   }
 
   /**
-   * insert: put a newly-arrived car into the car queue.
+   * getLaneSize: return the number of cars in the given lane.
+   *
+   * @return int
+   * @param lane int
+   */
+  public int getLaneSize(int lane) {
+    return laneSizes[lane];
+  }
+
+  /**
+   * firstArrivalTime: return the arrival time of the first car in the
+   * given lane, which must not be empty.
+   *
+   * @return double
+   * @param lane int
+   */
+  public double firstArrivalTime(int lane) {
+    return lanes[lane].firstArrivalTime();
+  }
+
+  /**
+   * insert: put a newly-arrived car into the car queue. The queue may keep
+   * the car's attributes rather than the car itself, so the caller must not
+   * use the car afterwards.
    * 
    * @param newestcar aim.car
    */
 
   public void insert(Car newestCar) {
-    Queueitem item = new Queueitem();
-    item.data = newestCar;
-    item.next = null;
+    insert(newestCar, 0);
+  }
 
-    if (lastWaitingCar == null) {
+  /**
+   * insert: put a newly-arrived car at the back of the given lane, as
+   * insert(Car) does.
+   *
+   * @param newestCar Sim.Car
+   * @param lane      int
+   */
+  public void insert(Car newestCar, int lane) {
+    if (queueSize == 0) {
       // the queue is empty
-      firstWaitingCar = item;
-      totalEmptyQueueTime += Sim.simulationTime;
-    } else {
-      // the queue already had at least one car in it
-      lastWaitingCar.next = item;
+      totalEmptyQueueTime += ctx.simulationTime;
     }
 
-    lastWaitingCar = item;
+    lanes[lane].insert(newestCar);
+    laneSizes[lane]++;
     queueSize += 1;
+    ctx.stats.stationChanged();
   }
 
   /**
@@ -408,21 +1139,30 @@ class CarQueue {
    * @return aim.car
    */
   public Car takeFirstCar() {
-    // precondition: queueSize > O && firstWaitingCar l= null
-    if (queueSize <= 0 || firstWaitingCar == null) {
+    return takeFirstCar(0);
+  }
+
+  /**
+   * takeFirstCar: remove the first car from the given lane and return it.
+   *
+   * @return Sim.Car
+   * @param lane int
+   */
+  public Car takeFirstCar(int lane) {
+    // precondition: getLaneSize(lane) > O
+    if (laneSizes[lane] <= 0) {
       System.out.println(" Errorl car queue unexpectedly empty");
       return null;
     }
 
-    Car carToReturn = firstWaitingCar.data;
+    Car carToReturn = lanes[lane].takeFirst();
+    laneSizes[lane]--;
     queueSize--;
-    firstWaitingCar = firstWaitingCar.next;
+    ctx.stats.stationChanged();
 
-    if (firstWaitingCar == null) {
-      // empty queue; update the end of the queue, and start
-      // counting empty queue time
-      lastWaitingCar = null;
-      totalEmptyQueueTime -= Sim.simulationTime;
+    if (queueSize == 0) {
+      // empty queue; start counting empty queue time
+      totalEmptyQueueTime -= ctx.simulationTime;
     }
     return carToReturn;
   }
@@ -435,6 +1175,71 @@ class CarQueue {
 
 class Pump {
   private Car carinService;
+  private final SimulationContext ctx;
+  private final int id; // the pump's place in the pump stand
+  private final double speed; // how many times as fast as the usual pump
+  private final int fuels; // a bit set for each fuel type it sells
+
+  // A pump serves one car at a time, so it has at most one departure
+  // pending, and the same event object is used for all of them.
+  private final Departure departure;
+
+  /**
+   * Constructor.
+   *
+   * @param ctx Sim.SimulationContext
+   * @param id  int
+   */
+  public Pump(SimulationContext ctx, int id) {
+    this(ctx, id, 1.0, ~0);
+  }
+
+  /**
+   * Constructor: build a pump that serves cars speed times as fast as the
+   * usual one, and sells the fuel types whose bits are set in fuels.
+   *
+   * @param ctx   Sim.SimulationContext
+   * @param id    int
+   * @param speed double
+   * @param fuels int
+   */
+  public Pump(SimulationContext ctx, int id, double speed, int fuels) {
+    this.ctx = ctx;
+    this.id = id;
+    this.speed = speed;
+    this.fuels = fuels;
+    departure = new Departure(0);
+    departure.setPump(this);
+  }
+
+  /**
+   * getId: return the pump's place in the pump stand, from 0.
+   *
+   * @return int
+   */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * getSpeed: return how many times as fast as the usual pump this one
+   * serves cars.
+   *
+   * @return double
+   */
+  public double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * sells: return true if the pump sells the given fuel type.
+   *
+   * @return boolean
+   * @param fuel int
+   */
+  public boolean sells(int fuel) {
+    return (fuels >>> fuel & 1) != 0;
+  }
 
   /**
    * getCarinservice; return the car currently being served by the pump.
@@ -463,9 +1268,38 @@ class Pump {
       return -1.0;
     }
 
-    return Sim.serviceTimeBase
-        + Sim.serviceTimePerLitre * carinService.getLitresNeeded()
-        + Sim.serviceTimeSpread * Sim.serviceStream.nextGaussian();
+    final double drawn = carinService.getServiceTime();
+    if (!Double.isNaN(drawn))
+      return drawn;
+    return drawServiceTime(ctx, carinService.getLitresNeeded());
+  }
+
+  /**
+   * drawServiceTime: draw the time needed to serve a car that needs the
+   * given number of litres: a base time, plus a time per litre, plus a
+   * normally distributed spread.
+   *
+   * @return double
+   * @param ctx    Sim.SimulationContext
+   * @param litres double
+   */
+  static double drawServiceTime(SimulationContext ctx, double litres) {
+    return ctx.serviceTimeBase
+        + ctx.serviceTimePerLitre * litres
+        + ctx.serviceTimeSpread * ctx.serviceStream.nextGaussian();
+  }
+
+  /**
+   * resumeService: put car back at this pump, as of a checkpoint, with its
+   * departure due at departureTime.
+   *
+   * @param car           Sim.Car
+   * @param departureTime double
+   */
+  void resumeService(Car car, double departureTime) {
+    carinService = car;
+    departure.setTime(departureTime);
+    ctx.eventList.insert(departure);
   }
 
   /**
@@ -476,19 +1310,20 @@ class Pump {
    */
 
   public void startService(Car car) {
-    // precondition: Sim.pumpStand.aPumpisAvailable(),
+    // precondition: ctx.pumpStand.aPumpisAvailable(),
     // Match the auto to an available pump.
     carinService = car;
-    final double pumpTime = serviceTime();
+    final double pumpTime = serviceTime() / speed;
 
     // Collect statistics.
-    Sim.stats.accumWaitingTime(Sim.simulationTime - carinService.getArrivalTime());
-    Sim.stats.accumServiceTime(pumpTime);
+    ctx.stats.accumWaitingTime(ctx.simulationTime - carinService.getArrivalTime());
+    ctx.stats.accumServiceTime(pumpTime);
 
     // Schedule departure of car from this pump.
-    Departure dep = new Departure(Sim.simulationTime + pumpTime);
-    dep.setPump(this);
-    Sim.eventList.insert(dep);
+    departure.setTime(ctx.simulationTime + pumpTime);
+    ctx.eventList.insert(departure);
+    if (ctx.trace != null)
+      ctx.trace.record(ctx, TraceRecorder.START_SERVICE, id, carinService.getLitresNeeded());
   }
 
 }
@@ -499,27 +1334,100 @@ class Pump {
 
 class PumpStand {
   private Pump[] pumps; // an array of pumps
+  private Pump[] pumpsById; // the same pumps, in the order of their ids
+  private int[] slots; // where each pump is in pumps, by id
   private int numPumps;
   private int topPump;
+  private SimulationContext ctx;
 
   /**
    * Constructor: build a PumpStand of numPumps pumps, and make all of them
    * available.
    * 
+   * @param ctx      Sim.SimulationContext
    * @param numPumps int
    */
 
-  public PumpStand(int numPumps) {
+  public PumpStand(SimulationContext ctx, int numPumps) {
+    this(ctx, numPumps, null, null);
+  }
+
+  /**
+   * Constructor: build a PumpStand of numPumps pumps that differ, pump p
+   * serving speeds[p % speeds.length] times as fast as the usual one and
+   * selling the fuel types set in fuels[p % fuels.length], and make all of
+   * them available. Either array may be null for pumps that are alike.
+   *
+   * @param ctx      Sim.SimulationContext
+   * @param numPumps int
+   * @param speeds   double[]
+   * @param fuels    int[]
+   */
+  public PumpStand(SimulationContext ctx, int numPumps, double[] speeds, int[] fuels) {
     if (numPumps < 1) {
       System.out.println("Errorl pump stand needs more than 0 pumps ");
       return;
     }
 
+    this.ctx = ctx;
     pumps = new Pump[numPumps];
+    pumpsById = new Pump[numPumps];
+    slots = new int[numPumps];
     this.numPumps = numPumps;
     topPump = numPumps - 1;
+    for (int p = 0; p < numPumps; p++) {
+      final double speed = speeds == null ? 1.0 : speeds[p % speeds.length];
+      final int sold = fuels == null ? ~0 : fuels[p % fuels.length];
+      if (!(speed > 0))
+        throw new IllegalArgumentException("pump speeds must be positive");
+      pumps[p] = pumpsById[p] = new Pump(ctx, p, speed, sold);
+      slots[p] = p;
+    }
+  }
+
+  /**
+   * getPump: return the pump with the given id.
+   *
+   * @return Sim.Pump
+   * @param id int
+   */
+  public Pump getPump(int id) {
+    return pumpsById[id];
+  }
+
+  /**
+   * writeState: write the ids of the available pumps to out, in the order
+   * they will be taken last to first, for a checkpoint. The busy pumps are
+   * saved with their departures.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(topPump + 1);
+    for (int p = 0; p <= topPump; p++)
+      out.writeInt(pumps[p].getId());
+  }
+
+  /**
+   * readState: make available the pumps that writeState() wrote to in,
+   * leaving the others busy.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    final int available = in.readInt();
+    boolean[] free = new boolean[numPumps];
+    for (int p = 0; p < available; p++) {
+      pumps[p] = pumpsById[in.readInt()];
+      free[pumps[p].getId()] = true;
+    }
+    topPump = available - 1;
+    int next = available;
+    for (int id = 0; id < numPumps; id++)
+      if (!free[id])
+        pumps[next++] = pumpsById[id];
     for (int p = 0; p < numPumps; p++)
-      pumps[p] = new Pump();
+      slots[pumps[p].getId()] = p;
   }
 
   /**
@@ -532,6 +1440,16 @@ class PumpStand {
     return topPump >= 0;
   }
 
+  /**
+   * isAvailable: return true if the given pump is free for use.
+   *
+   * @return boolean
+   * @param p Sim.Pump
+   */
+  public boolean isAvailable(Pump p) {
+    return slots[p.getId()] <= topPump;
+  }
+
   /**
    * getNumberOfPumps: return the number of pumps in the pump stand.
    * (This method is needed when statistics are gathered.)
@@ -542,6 +1460,15 @@ class PumpStand {
     return numPumps;
   }
 
+  /**
+   * getNumberBusy: return the number of pumps currently serving a car.
+   *
+   * @return int
+   */
+  public int getNumberBusy() {
+    return numPumps - 1 - topPump;
+  }
+
   /**
    * releasePump: put pump p back in the stock of available pumps.
    * 
@@ -552,7 +1479,15 @@ class PumpStand {
       System.out.println("Error! attempt to release a free pump? ");
       return;
     }
-    pumps[++topPump] = p;
+    // The pump's place may be taken by a busy pump, which moves to where
+    // the pump was.
+    final Pump busy = pumps[++topPump];
+    final int slot = slots[p.getId()];
+    pumps[slot] = busy;
+    slots[busy.getId()] = slot;
+    pumps[topPump] = p;
+    slots[p.getId()] = topPump;
+    ctx.stats.stationChanged();
   }
 
   /**
@@ -566,7 +1501,30 @@ class PumpStand {
       System.out.println("Error no pump available when needed");
       return null;
     }
-    return pumps[topPump--];
+    final Pump p = pumps[topPump--];
+    ctx.stats.stationChanged();
+    return p;
+  }
+
+  /**
+   * takePump: take the given pump, which must be free, from the set of free
+   * pumps. The free pump released last takes its place, so the order in
+   * which takeAvailablePump() hands out the others is unchanged but for it.
+   *
+   * @param p Sim.Pump
+   */
+  public void takePump(Pump p) {
+    final int slot = slots[p.getId()];
+    if (slot > topPump) {
+      System.out.println("Error! pump " + p.getId() + " is not available");
+      return;
+    }
+    final Pump top = pumps[topPump];
+    pumps[slot] = top;
+    slots[top.getId()] = slot;
+    pumps[topPump] = p;
+    slots[p.getId()] = topPump--;
+    ctx.stats.stationChanged();
   }
 
 }
@@ -584,6 +1542,12 @@ class PumpStand {
 abstract class Event {
   private double time; // the time when the event happens
 
+  // Bookkeeping owned by the event list: the insertion sequence number that
+  // breaks ties between events due at the same time (first in, first out),
+  // and a link field used by the event sets that chain events together.
+  long sequence;
+  Event next;
+
   /**
    * constructor.
    * 
@@ -604,8 +1568,10 @@ abstract class Event {
 
   /**
    * makeItHappen: the event routine.
+   *
+   * @param ctx Sim.SimulationContext the run the event belongs to
    */
-  public abstract void makeItHappen();
+  public abstract void makeItHappen(SimulationContext ctx);
 
   /**
    * setTime: set the time of the event.
@@ -622,28 +1588,55 @@ abstract class Event {
 /**
  * EventList: the class for the event list.
  * (There is only one object of this class in the program.)
+ *
+ * The events themselves are kept in an EventSet, a priority queue chosen when
+ * the list is created. The list numbers the events as they are inserted, so
+ * that every event set orders events due at the same time first in, first out.
  */
 
 class EventList {
+  // the names accepted by the constructor, in the order they are documented
+  public static final String[] KINDS = { "list", "heap", "calendar", "ladder" };
+  public static final String DEFAULT_KIND = "heap";
 
-  // Listltem: the class for objects stored in the event list.
-  private class ListItem {
-    // The event list is a linked list, so each item contains a data field
-    // and a 11 next item11 field. This is just a simple record structure, so
-    // we'll allow outsiders to access the fields directly instead of using
-    // get and set methods.
-    public Event data;
-    public ListItem next;
+  private final EventSet events;
+  private long nextSequence;
+
+  /**
+   * Constructor: build an event list backed by the default event set.
+   */
+  public EventList() {
+    this(DEFAULT_KIND);
   }
 
-  ListItem firstEvent;
+  /**
+   * Constructor: build an event list backed by the named event set; one of
+   * "list" (sorted linked list), "heap" (binary heap), "calendar" (calendar
+   * queue) or "ladder" (ladder queue).
+   *
+   * @param kind java.lang.String
+   */
+  public EventList(String kind) {
+    events = newEventSet(kind);
+    nextSequence = 0;
+  }
 
   /**
-   * Constructor
+   * newEventSet: create an empty event set of the named kind.
+   *
+   * @return EventSet
+   * @param kind java.lang.String
    */
-  public EventList() {
-    firstEvent = null; // happens automatically, but done explicitly
-    // here to clarify the " empty list " state.
+  static EventSet newEventSet(String kind) {
+    if ("list".equals(kind))
+      return new LinkedEventSet();
+    if ("heap".equals(kind))
+      return new BinaryHeapEventSet();
+    if ("calendar".equals(kind))
+      return new CalendarQueueEventSet();
+    if ("ladder".equals(kind))
+      return new LadderQueueEventSet();
+    throw new IllegalArgumentException("unknown event list kind: " + kind);
   }
 
   /**
@@ -653,26 +1646,43 @@ class EventList {
    * @param e Sim.Event
    */
   public void insert(Event e) {
-    // Create the item to go on the event list.
-    ListItem item = new ListItem();
-    item.data = e;
-
-    // Find the appropriate place for the item in the event list,
-    // and put it there,
-    final double time = e.getTime();
-    if (firstEvent == null || time < firstEvent.data.getTime()) {
-      item.next = firstEvent;
-      firstEvent = item;
-    } else {
-      ListItem behind = firstEvent;
-      ListItem ahead = firstEvent.next;
-      while (ahead != null && ahead.data.getTime() <= time) {
-        behind = ahead;
-        ahead = ahead.next;
-      }
-      behind.next = item;
-      item.next = ahead;
-    }
+    e.sequence = nextSequence++;
+    events.insert(e);
+  }
+
+  /**
+   * size: return the number of events waiting on the list.
+   *
+   * @return int
+   */
+  public int size() {
+    return events.size();
+  }
+
+  /**
+   * nextEventTime: return the time of the event at the head of the list,
+   * or infinity if the list is empty.
+   *
+   * @return double
+   */
+  public double nextEventTime() {
+    final Event first = events.peek();
+    return first == null ? Double.POSITIVE_INFINITY : first.getTime();
+  }
+
+  /**
+   * toArray: return the waiting events in the order they will happen,
+   * leaving them on the list in that order (though renumbered).
+   *
+   * @return Sim.Event[]
+   */
+  public Event[] toArray() {
+    Event[] waiting = new Event[events.size()];
+    for (int i = 0; i < waiting.length; i++)
+      waiting[i] = events.takeFirst();
+    for (Event e : waiting)
+      insert(e);
+    return waiting;
   }
 
   /**
@@ -682,15 +1692,12 @@ class EventList {
    * @return aim.Event
    */
   public Event takeNextEvent() {
-    // precondition firstEvent != null
-    if (firstEvent == null) {
+    // precondition size() > 0
+    if (events.size() == 0) {
       System.out.println("Error! ran out of events ");
       return null;
     }
-
-    Event eventToReturn = firstEvent.data;
-    firstEvent = firstEvent.next;
-    return eventToReturn;
+    return events.takeFirst();
   }
 
 }
@@ -722,46 +1729,117 @@ class Arrival extends Event {
    * (40 + litres)/(25 * (3 + queueLength))
    * 
    * @return boolean
+   * @param ctx         Sim.SimulationContext
    * @param litres      double
    * @param queueLength int
    */
-  private boolean doesCarBalk(double litres, int queueLength) {
+  private static boolean doesCarBalk(SimulationContext ctx, double litres, int queueLength) {
+    if (ctx.commonRandomNumbers) {
+      // Draw even when the queue is empty, to keep the stream in step.
+      final double u = ctx.balkingStream.nextDouble();
+      return queueLength > 0 && u > (ctx.balkA + litres) / (ctx.balkB * (ctx.balkC + queueLength));
+    }
     return queueLength > 0
-        && (Sim.balkingStream.nextDouble() > (Sim.balkA + litres) / (Sim.balkB * (Sim.balkC + queueLength)));
+        && (ctx.balkingStream.nextDouble() > (ctx.balkA + litres) / (ctx.balkB * (ctx.balkC + queueLength)));
   }
 
   /**
    * interarrivalTime: the time uµtil the next arrival, from an exponential
-   * distribution.
+   * distribution, or from the arrival profile if there is one (infinity if
+   * it has no more arrivals).
    * 
    * @return double
+   * @param ctx Sim.SimulationContext
    */
-  private double interarrivalTime() {
-    return -Sim.meanInterarrivalTime
-        * Math.log(Sim.arrivalStream.nextDouble());
+  private double interarrivalTime(SimulationContext ctx) {
+    if (ctx.arrivalProfile != null)
+      return ctx.arrivalProfile.nextArrival(ctx.simulationTime, ctx.arrivalStream) - ctx.simulationTime;
+    return ctx.meanInterarrivalTime * ctx.arrivalStream.nextExponential();
   }
 
   /**
    * makeitHappen: arrival event routine.
    */
-  public void makeItHappen() {
+  public void makeItHappen(SimulationContext ctx) {
+    if (ctx.arrivalTrace != null) {
+      replay(ctx);
+      return;
+    }
+
     // Create and initialize a new auto record.
-    Car arrivingCar = new Car();
-    Sim.stats.countArrival();
+    admit(ctx, ctx.newCar(), 0, -1);
+
+    // Schedule the next arrival, reusing the current event object.
+    final double delay = interarrivalTime(ctx);
+    if (Double.isInfinite(delay))
+      return;
+    setTime(ctx.simulationTime + delay);
+    ctx.eventList.insert(this);
+  }
+
+  /**
+   * replay: arrival event routine for a run driven by an arrival trace. The
+   * car takes its litres from the trace's current record, and draws its
+   * service time at once under common random numbers, as Car.reuse() does;
+   * the next record, if there is one, says when the next car comes.
+   *
+   * @param ctx Sim.SimulationContext
+   */
+  private void replay(SimulationContext ctx) {
+    final ArrivalTrace trace = ctx.arrivalTrace;
+    final double litres = trace.litres();
+    final double serviceTime = ctx.commonRandomNumbers ? Pump.drawServiceTime(ctx, litres) : Double.NaN;
+    admit(ctx, ctx.newCar(ctx.simulationTime, litres, serviceTime), 0, -1);
+    trace.advance();
+    if (trace.hasRecord()) {
+      setTime(trace.time());
+      ctx.eventList.insert(this);
+    }
+  }
+
+  /**
+   * admit: count a car that has just arrived, and either send it to a pump
+   * or the queue or let it balk. A car that balks is offered to the
+   * context's router, if it has one, before it is recycled.
+   *
+   * @param ctx         Sim.SimulationContext
+   * @param arrivingCar Sim.Car
+   * @param hops        int stations the car has balked at before this one
+   * @param from        int the station it last balked at, or -1
+   */
+  static void admit(SimulationContext ctx, Car arrivingCar, int hops, int from) {
+    ctx.stats.countArrival();
     final double litres = arrivingCar.getLitresNeeded();
-    if (doesCarBalk(litres, Sim.carQueue.getQueueSize()))
-      Sim.stats.accumBalk(litres);
-    else {
-      arrivingCar.setArrivalTime(Sim.simulationTime);
-      if (Sim.pumpStand.aPumpIsAvailable())
-        Sim.pumpStand.takeAvailablePump().startService(arrivingCar);
-      else
-        Sim.carQueue.insert(arrivingCar);
+    if (ctx.trace != null)
+      ctx.trace.record(ctx, TraceRecorder.ARRIVAL, -1, litres);
+    final int fuel = ctx.fuelMix == null ? 0 : drawFuel(ctx);
+    if (doesCarBalk(ctx, litres, ctx.dispatcher.queueSeenBy(fuel))) {
+      ctx.stats.accumBalk(litres);
+      if (ctx.router != null)
+        ctx.router.balked(ctx, arrivingCar, hops, from);
+      ctx.recycleCar(arrivingCar);
+      if (ctx.trace != null)
+        ctx.trace.record(ctx, TraceRecorder.BALK, -1, litres);
+    } else {
+      ctx.stats.countJoin();
+      arrivingCar.setArrivalTime(ctx.simulationTime);
+      ctx.dispatcher.join(arrivingCar, fuel);
     }
+  }
 
-    // Schedule the next arrival, reusing the current event object.
-    setTime(Sim.simulationTime + interarrivalTime());
-    Sim.eventList.insert(this);
+  /**
+   * drawFuel: draw the fuel type an arriving car needs, from the fuel mix.
+   * The draw is from the litre stream, as the fuel is the car's own.
+   *
+   * @return int
+   * @param ctx Sim.SimulationContext
+   */
+  private static int drawFuel(SimulationContext ctx) {
+    final double u = ctx.litreStream.nextDouble();
+    int fuel = 0;
+    while (fuel < ctx.fuelMix.length - 1 && u >= ctx.fuelMix[fuel])
+      fuel++;
+    return fuel;
   }
 }
 
@@ -783,17 +1861,26 @@ class Departure extends Event {
   /**
    * makeitHappen: departure event routine
    */
-  public void makeItHappen() {
+  public void makeItHappen(SimulationContext ctx) {
     // precondition: pump != null && pump.getCarinService 1= null
     // Identify the departing car and collect statistics.
     Car departingCar = pump.getCarinService();
-    Sim.stats.accumSale(departingCar.getLitresNeeded());
+    ctx.stats.accumSale(departingCar.getLitresNeeded());
+    if (ctx.trace != null)
+      ctx.trace.record(ctx, TraceRecorder.DEPARTURE, pump.getId(), departingCar.getLitresNeeded());
+    ctx.recycleCar(departingCar);
 
     // The car vanishes and the pump is free; can we serve another car?
-    if (Sim.carQueue.getQueueSize() > 0)
-      pump.startService(Sim.carQueue.takeFirstCar());
-    else
-      Sim.pumpStand.releasePump(pump);
+    ctx.dispatcher.release(pump);
+  }
+
+  /**
+   * getPump: return the pump this departure is from.
+   *
+   * @return Sim.Pump
+   */
+  public Pump getPump() {
+    return pump;
   }
 
   /**
@@ -822,12 +1909,16 @@ class Report extends Event {
   /**
    * makeitHappen: interim reporting event routine
    */
-  public void makeItHappen() {
-    Sim.stats.snapshot();
+  public void makeItHappen(SimulationContext ctx) {
+    ctx.stats.snapshot();
+    if (ctx.trace != null)
+      ctx.trace.record(ctx, TraceRecorder.REPORT, -1, 0);
 
     // Schedule the next interim report.
-    setTime(Sim.simulationTime + Sim.reportInterval);
-    Sim.eventList.insert(this);
+    setTime(ctx.simulationTime + ctx.reportInterval);
+    ctx.eventList.insert(this);
+
+    ctx.reportMade();
   }
 
 }
@@ -850,7 +1941,17 @@ class EndOfSimulation extends Event {
   /**
    * makeItHappen: end of simulation event routine
    */
-  public void makeItHappen() {
-    Sim.stats.snapshot();
+  public void makeItHappen(SimulationContext ctx) {
+    ctx.stats.snapshot();
+    if (ctx.trace != null)
+      ctx.trace.record(ctx, TraceRecorder.END, -1, 0);
+    if (ctx.reportDistributions)
+      ctx.stats.printDistributions();
+    if (ctx.reportTimeAverages)
+      ctx.stats.printTimeAverages();
+    if (ctx.detectWarmup)
+      ctx.stats.printWarmup();
+    if (ctx.metrics != null)
+      ctx.stats.printMetrics(ctx.metrics);
   }
 }
\ No newline at end of file
@@ -0,0 +1,526 @@
+import java.io.*;
+
+/**
+ * SimulationContext: everything that belongs to one simulation run - the
+ * clock, the model constants, the random-number streams and the major data
+ * structures. Events receive the context when they happen, and the entities
+ * are given it when they are built, so any number of runs can live in the
+ * same program (one per thread) without touching each other.
+ */
+
+class SimulationContext {
+  // "Global" quantities used throughout the simulation
+  public double simulationTime; // What time is it?
+  public final double reportInterval; // How often should we report?
+  public final double endingTime;
+  public final boolean reportDistributions;
+  public final boolean reportTimeAverages;
+  public final boolean detectWarmup;
+  public final boolean commonRandomNumbers;
+
+  // quantities that determine how we model the real world;
+  // see SimulationParameters
+  public final double profit;
+  public final double pumpCost;
+  public final double litresNeededMin;
+  public final double litresNeededRange;
+  public final double serviceTimeBase;
+  public final double serviceTimePerLitre;
+  public final double serviceTimeSpread;
+  public final double balkA;
+  public final double balkB;
+  public final double balkC;
+  public final double meanInterarrivalTime;
+  public final ArrivalProfile arrivalProfile; // or null for a constant rate
+  private final String arrivalTracePath; // or null to draw the arrivals
+  public ArrivalTrace arrivalTrace; // open from start() or readState() to close()
+  public final double[] fuelMix; // cumulative, or null for one fuel type
+
+  // random-number streams used to model the world
+  public final RandomStream arrivalStream; // auto arrival times
+  public final RandomStream litreStream; // number of litres needed
+  public final RandomStream balkingStream; // balking probability
+  public final RandomStream serviceStream; // service times
+  public final SeedSet seeds;
+
+  // major data structures
+  public final EventList eventList;
+  public final CarQueue carQueue;
+  public final PumpStand pumpStand;
+  public final Dispatcher dispatcher;
+  public final Statistics stats;
+  private final StoppingRule stoppingRule; // null to run to endingTime
+
+  // what is told of the happenings of the run, or null; see TraceRecorder
+  public TraceRecorder trace;
+
+  // what counts and times the events of the run, or null; see EngineMetrics
+  public EngineMetrics metrics;
+
+  // where cars that balk may drive on to, or null; see StationNetwork
+  public CarRouter router;
+
+  // checkpoints: where and how often the state is saved; see Checkpoint
+  private final SimulationParameters params;
+  private final String checkpointPath; // null for none
+  private final int checkpointEvery; // reports between checkpoints
+  private int reportsMade;
+
+  // how writeState() tells the kinds of event apart
+  private static final byte ARRIVAL = 1;
+  private static final byte DEPARTURE = 2;
+  private static final byte REPORT = 3;
+
+  // cars that have left the station, kept for reuse; see newCar()
+  private final boolean recycleCars;
+  private Car spareCars;
+
+  /**
+   * Constructor: set up a run at time 0, printing the column headers of its
+   * reports on out.
+   *
+   * @param params Sim.SimulationParameters
+   * @param seeds  Sim.SeedSet
+   * @param out    java.io.PrintStream where reports are printed
+   */
+  public SimulationContext(SimulationParameters params, SeedSet seeds, PrintStream out) {
+    simulationTime = 0;
+    reportInterval = params.reportInterval;
+    endingTime = params.endingTime;
+    reportDistributions = params.reportDistributions;
+    reportTimeAverages = params.reportTimeAverages;
+    detectWarmup = params.detectWarmup;
+    commonRandomNumbers = params.commonRandomNumbers;
+
+    profit = params.profit;
+    pumpCost = params.pumpCost;
+    litresNeededMin = params.litresNeededMin;
+    litresNeededRange = params.litresNeededRange;
+    serviceTimeBase = params.serviceTimeBase;
+    serviceTimePerLitre = params.serviceTimePerLitre;
+    serviceTimeSpread = params.serviceTimeSpread;
+    balkA = params.balkA;
+    balkB = params.balkB;
+    balkC = params.balkC;
+    meanInterarrivalTime = params.meanInterarrivalTime;
+    arrivalProfile = params.arrivalProfile;
+    if (params.arrivalTracePath != null && arrivalProfile != null)
+      throw new IllegalArgumentException("an arrival trace and an arrival profile cannot both be used");
+    arrivalTracePath = params.arrivalTracePath;
+    fuelMix = cumulativeFuelMix(params);
+
+    // Initialize the random-nwnber streams.
+    this.seeds = seeds;
+    arrivalStream = RandomStreams.create(params.rngKind, seeds, seeds.arrival, RandomStreams.ARRIVAL);
+    litreStream = RandomStreams.create(params.rngKind, seeds, seeds.litre, RandomStreams.LITRE);
+    balkingStream = RandomStreams.create(params.rngKind, seeds, seeds.balking, RandomStreams.BALKING);
+    serviceStream = RandomStreams.create(params.rngKind, seeds, seeds.service, RandomStreams.SERVICE);
+
+    // Create and initialize the event list,the car queue, the pump stand,
+    // the dispatcher and the statistics collector.
+    final int fuelTypes = fuelMix == null ? 1 : fuelMix.length;
+    eventList = new EventList(params.eventListKind);
+    carQueue = new CarQueue(this, params.carQueueKind,
+        Dispatcher.lanes(params.dispatchKind, params.numPumps, fuelTypes));
+    pumpStand = new PumpStand(this, params.numPumps, params.pumpSpeeds, params.pumpFuels);
+    for (int f = 0; f < fuelTypes; f++) {
+      int sellers = 0;
+      for (int id = 0; id < params.numPumps; id++)
+        if (pumpStand.getPump(id).sells(f))
+          sellers++;
+      if (sellers == 0)
+        throw new IllegalArgumentException("no pump sells fuel type " + f);
+    }
+    dispatcher = Dispatcher.create(params.dispatchKind, this, fuelTypes);
+    stats = new Statistics(this, out);
+    stoppingRule = StoppingRule.forParameters(params);
+
+    recycleCars = params.recycleCars;
+    spareCars = null;
+
+    this.params = params.copy();
+    checkpointPath = params.checkpointPath;
+    checkpointEvery = Math.max(1, params.checkpointEvery);
+    reportsMade = 0;
+  }
+
+  /**
+   * cumulativeFuelMix: return the running sums of params.fuelMix, scaled to
+   * end at 1, or null if it names at most one fuel type.
+   *
+   * @return double[]
+   * @param params Sim.SimulationParameters
+   */
+  private static double[] cumulativeFuelMix(SimulationParameters params) {
+    if (params.fuelMix == null || params.fuelMix.length <= 1)
+      return null;
+    if (params.fuelMix.length > 32)
+      throw new IllegalArgumentException("at most 32 fuel types");
+    double total = 0;
+    for (double p : params.fuelMix) {
+      if (!(p >= 0))
+        throw new IllegalArgumentException("fuel mix probabilities must not be negative");
+      total += p;
+    }
+    if (!(total > 0))
+      throw new IllegalArgumentException("fuel mix must not be all zero");
+    double[] cumulative = new double[params.fuelMix.length];
+    double sum = 0;
+    for (int f = 0; f < cumulative.length; f++) {
+      sum += params.fuelMix[f];
+      cumulative[f] = sum / total;
+    }
+    return cumulative;
+  }
+
+  /**
+   * getParameters: return the parameters the run was set up with.
+   *
+   * @return Sim.SimulationParameters
+   */
+  public SimulationParameters getParameters() {
+    return params.copy();
+  }
+
+  /**
+   * newCar: return a newly-arrived car, reusing one that has left the
+   * station if there is one. Either way the car draws its litres from
+   * litreStream, so recycling does not change the results.
+   *
+   * @return Sim.Car
+   */
+  public Car newCar() {
+    final Car car = spareCars;
+    if (car == null)
+      return new Car(this);
+    spareCars = car.next;
+    car.next = null;
+    car.reuse(this);
+    return car;
+  }
+
+  /**
+   * newCar: return a car with the given attributes, reusing one that has
+   * left the station if there is one. Nothing is drawn from the streams.
+   *
+   * @return Sim.Car
+   * @param arrivalTime  double
+   * @param litresNeeded double
+   */
+  public Car newCar(double arrivalTime, double litresNeeded) {
+    return newCar(arrivalTime, litresNeeded, Double.NaN);
+  }
+
+  /**
+   * newCar: return a car with the given attributes, including a service
+   * time drawn in advance (NaN if none), reusing one that has left the
+   * station if there is one. Nothing is drawn from the streams.
+   *
+   * @return Sim.Car
+   * @param arrivalTime  double
+   * @param litresNeeded double
+   * @param serviceTime  double
+   */
+  public Car newCar(double arrivalTime, double litresNeeded, double serviceTime) {
+    final Car car = spareCars;
+    if (car == null)
+      return new Car(arrivalTime, litresNeeded, serviceTime);
+    spareCars = car.next;
+    car.next = null;
+    car.restore(arrivalTime, litresNeeded, serviceTime);
+    return car;
+  }
+
+  /**
+   * recycleCar: take back a car that has left the station (served or
+   * balked), so that newCar() can reuse it. Nothing may refer to the car
+   * afterwards.
+   *
+   * @param car Sim.Car
+   */
+  public void recycleCar(Car car) {
+    if (recycleCars) {
+      car.next = spareCars;
+      spareCars = car;
+    }
+  }
+
+  /**
+   * start: schedule the events that begin the run. Call it once, before the
+   * first step().
+   */
+  public void start() {
+    // Schedule the required events:
+    // the end of the simulation;
+    // the first progress report;
+    // the arrival of the first car.
+
+    EndOfSimulation lastEvent = new EndOfSimulation(endingTime);
+    eventList.insert(lastEvent);
+    if (reportInterval <= endingTime) {
+      Report nextReport = new Report(reportInterval);
+      eventList.insert(nextReport);
+    }
+    openArrivalTrace();
+    if (arrivalTrace != null) {
+      // The first car arrives when the trace says.
+      if (arrivalTrace.hasRecord())
+        eventList.insert(new Arrival(arrivalTrace.time()));
+    } else if (arrivalProfile == null) {
+      eventList.insert(new Arrival(0));
+      // (Should the first car really arrive at time 0?)
+    } else {
+      // With an arrival profile, no: the first car is drawn like the others.
+      final double first = arrivalProfile.nextArrival(0, arrivalStream);
+      if (!Double.isInfinite(first))
+        eventList.insert(new Arrival(first));
+    }
+  }
+
+  /**
+   * step: advance the clock to the next event and make it happen; one turn
+   * of the "clock driver" loop. Return false once the simulation has ended.
+   *
+   * @return boolean
+   */
+  public boolean step() {
+    Event currentEvent = eventList.takeNextEvent();
+    simulationTime = currentEvent.getTime();
+    if (metrics == null)
+      currentEvent.makeItHappen(this);
+    else
+      metrics.happen(currentEvent, this);
+    return !(currentEvent instanceof EndOfSimulation);
+  }
+
+  /**
+   * runUntil: make every event due before limit happen, stopping early if
+   * the simulation ends. Return false once it has ended. Stopping rules
+   * and checkpoints are for run() and resume(); they do not apply here.
+   *
+   * @return boolean
+   * @param limit double
+   */
+  public boolean runUntil(double limit) {
+    while (eventList.nextEventTime() < limit)
+      if (!step())
+        return false;
+    return true;
+  }
+
+  /**
+   * run: run the simulation from time 0 to the ending time, printing a
+   * report every reportInterval seconds, and return the statistics
+   * collected. If the parameters set a stopping rule, the run may instead
+   * end sooner, with the final report made as of the current time.
+   *
+   * @return Sim.Statistics
+   */
+  public Statistics run() {
+    start();
+    return resume();
+  }
+
+  /**
+   * resume: carry the run on from where it stands - just started, or
+   * restored from a checkpoint - to its end, as run() does.
+   *
+   * @return Sim.Statistics
+   */
+  public Statistics resume() {
+    try {
+      // The"clock driver"loop
+      if (stoppingRule == null) {
+        while (step())
+          ;
+        return stats;
+      }
+      while (step())
+        if (stoppingRule.shouldStop(stats)) {
+          new EndOfSimulation(simulationTime).makeItHappen(this);
+          break;
+        }
+      stats.printStop(stoppingRule.getReason(), stoppingRule.getEvents());
+      return stats;
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * openArrivalTrace: open the arrival trace, if the run has one, at its
+   * first record. The file is held open from here until close().
+   */
+  private void openArrivalTrace() {
+    if (arrivalTracePath == null || arrivalTrace != null)
+      return;
+    try {
+      arrivalTrace = new ArrivalTrace(arrivalTracePath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * close: release the files the run holds open - its arrival trace, if it
+   * has one. resume() does this when the run ends; a run that is driven in
+   * some other way, by runUntil() or step(), must be closed by its driver.
+   */
+  public void close() {
+    if (arrivalTrace != null)
+      try {
+        arrivalTrace.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+  }
+
+  /**
+   * reportMade: count an interim report, and save a checkpoint if one is
+   * due.
+   */
+  void reportMade() {
+    if (checkpointPath == null || ++reportsMade % checkpointEvery != 0)
+      return;
+    try {
+      Checkpoint.save(this, checkpointPath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * writeState: write the state of the run - the clock, the random-number
+   * streams, the statistics, the cars at the station and the events to
+   * come - to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  void writeState(DataOutput out) throws IOException {
+    out.writeDouble(simulationTime);
+    out.writeInt(reportsMade);
+    for (RandomStream stream : new RandomStream[] { arrivalStream, litreStream, balkingStream, serviceStream }) {
+      // each stream's state is prefixed by its length, so that a forked run
+      // with streams of its own can skip it
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      stream.writeState(new DataOutputStream(bytes));
+      out.writeInt(bytes.size());
+      out.write(bytes.toByteArray());
+    }
+    stats.writeState(out);
+    carQueue.writeState(out);
+    pumpStand.writeState(out);
+    out.writeLong(arrivalTrace == null ? -1 : arrivalTrace.position());
+    // Checkpoints are made by reports, which the stopping rule has yet to
+    // count.
+    out.writeLong(stoppingRule == null ? 0 : stoppingRule.getEvents() + 1);
+
+    // the events to come, in order, except the end of the run, which is
+    // always due at endingTime
+    Event[] events = eventList.toArray();
+    out.writeInt(events.length - 1);
+    for (Event e : events) {
+      if (e instanceof EndOfSimulation)
+        continue;
+      if (e instanceof Arrival)
+        out.writeByte(ARRIVAL);
+      else if (e instanceof Report)
+        out.writeByte(REPORT);
+      else if (e instanceof Departure) {
+        final Pump pump = ((Departure) e).getPump();
+        final Car car = pump.getCarinService();
+        out.writeByte(DEPARTURE);
+        out.writeInt(pump.getId());
+        out.writeDouble(car.getArrivalTime());
+        out.writeDouble(car.getLitresNeeded());
+        out.writeDouble(car.getServiceTime());
+      } else
+        throw new IllegalStateException("cannot save a " + e.getClass().getName());
+      out.writeDouble(e.getTime());
+    }
+  }
+
+  /**
+   * readState: bring this newly-built run to the state that writeState()
+   * wrote to in, with the end of the run at this run's endingTime. If
+   * keepStreams is false the random-number streams stay as this run's seeds
+   * made them, and the run forks from the saved one.
+   *
+   * @param in          java.io.DataInput
+   * @param keepStreams boolean
+   */
+  void readState(DataInput in, boolean keepStreams) throws IOException {
+    simulationTime = in.readDouble();
+    reportsMade = in.readInt();
+    for (RandomStream stream : new RandomStream[] { arrivalStream, litreStream, balkingStream, serviceStream }) {
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      if (keepStreams)
+        stream.readState(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+    stats.readState(in);
+    carQueue.readState(in);
+    pumpStand.readState(in);
+    final long tracePosition = in.readLong();
+    openArrivalTrace();
+    if (arrivalTrace != null && tracePosition >= 0)
+      arrivalTrace.seek(tracePosition);
+    final long events = in.readLong();
+    if (stoppingRule != null)
+      stoppingRule.setEvents(events);
+
+    // The end of the run goes first, as in start(), so that it comes before
+    // any other event due at the same time.
+    eventList.insert(new EndOfSimulation(endingTime));
+    for (int n = in.readInt(); n > 0; n--) {
+      final byte kind = in.readByte();
+      if (kind == ARRIVAL)
+        eventList.insert(new Arrival(in.readDouble()));
+      else if (kind == REPORT)
+        eventList.insert(new Report(in.readDouble()));
+      else if (kind == DEPARTURE) {
+        final Pump pump = pumpStand.getPump(in.readInt());
+        final double arrivalTime = in.readDouble();
+        final double litres = in.readDouble();
+        final Car car = newCar(arrivalTime, litres, in.readDouble());
+        pump.resumeService(car, in.readDouble());
+      } else
+        throw new IOException("unknown event kind " + kind + " in checkpoint");
+    }
+    dispatcher.restored();
+  }
+
+  /**
+   * replicate: run the simulation described by params without printing
+   * anything, and return a summary of the results.
+   *
+   * @return Sim.ReplicationSummary
+   * @param params Sim.SimulationParameters
+   * @param seeds  Sim.SeedSet
+   */
+  public static ReplicationSummary replicate(SimulationParameters params, SeedSet seeds) {
+    return replicate(params, seeds, null);
+  }
+
+  /**
+   * replicate: run the simulation described by params without printing
+   * anything, counting its events in metrics (if not null), and return a
+   * summary of the results.
+   *
+   * @return Sim.ReplicationSummary
+   * @param params  Sim.SimulationParameters
+   * @param seeds   Sim.SeedSet
+   * @param metrics Sim.EngineMetrics
+   */
+  public static ReplicationSummary replicate(SimulationParameters params, SeedSet seeds, EngineMetrics metrics) {
+    SimulationParameters quiet = params.copy();
+    quiet.reportInterval = Double.POSITIVE_INFINITY; // no interim reports
+    PrintStream discard = new PrintStream(new OutputStream() {
+      public void write(int b) {
+      }
+    });
+    SimulationContext ctx = new SimulationContext(quiet, seeds, discard);
+    ctx.metrics = metrics;
+    return ctx.run().summarize();
+  }
+}
@@ -0,0 +1,284 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * SimulationParameters: the quantities that describe a simulation run, apart
+ * from its random-number seeds. The fields start out with the values of the
+ * original program and may be changed freely before a SimulationContext is
+ * built from them; the context copies them, so later changes do not affect
+ * runs already set up.
+ */
+
+class SimulationParameters {
+  // This is just a simple record structure, so the fields are public.
+
+  // how long to run, and how often to report
+  public double endingTime = 200000;
+  public double reportInterval = 20000;
+
+  // the station
+  public int numPumps = 3;
+
+  // economics: profit per litre of gas, and cost to operate one pump for a day
+  public double profit = 0.025;
+  public double pumpCost = 20;
+
+  // demand; minimum and maximum amount of gas needed by a car
+  // See Car constructor.
+  public double litresNeededMin = 10;
+  public double litresNeededRange = 50;
+
+  // service times: constant base time+ time per litre+ random spread
+  // See Pump.serviceTime().
+  public double serviceTimeBase = 150;
+  public double serviceTimePerLitre = 0.5;
+  public double serviceTimeSpread = 30;
+
+  // customer behavior probability of balking depends on three
+  // ad-hoc constants. See Arrival.doesCarBalk().
+  public double balkA = 40;
+  public double balkB = 25;
+  public double balkC = 3;
+
+  // customer arrival rate
+  // See Arrival.interarrivalTime().
+  public double meanInterarrivalTime = 50; // seconds
+
+  // the arrival rate by time of day, used instead of meanInterarrivalTime
+  // if not null; see ArrivalProfile
+  public ArrivalProfile arrivalProfile = null;
+
+  // a file of recorded arrival times and litres to replay instead of
+  // drawing them, or null; see ArrivalTrace
+  public String arrivalTracePath = null;
+
+  // whether the final report shows the distributions of waiting and
+  // service times; see Statistics.printDistributions()
+  public boolean reportDistributions = false;
+
+  // whether the final report shows time averages of the station's state;
+  // see Statistics.printTimeAverages()
+  public boolean reportTimeAverages = false;
+
+  // whether the statistics are reset once the initial transient is over, as
+  // found by WarmupDetector (MSER-5 on the waiting times)
+  public boolean detectWarmup = false;
+
+  // sequential stopping rule: end the run early once the average wait and
+  // the lost profit per car have this relative 95% confidence-interval
+  // half-width (0 for no target), or after so many events or wall-clock
+  // seconds; see StoppingRule
+  public double targetHalfWidth = 0;
+  public long maxEvents = Long.MAX_VALUE;
+  public double maxWallClockSeconds = Double.POSITIVE_INFINITY;
+
+  // common random numbers: every arriving car draws its litres, its
+  // balking decision and its service time at once, so that runs with the
+  // same seeds but different numbers of pumps use each random number for
+  // the same purpose; see Car(SimulationContext)
+  public boolean commonRandomNumbers = false;
+
+  // how the random numbers are generated; see RandomStreams
+  public String rngKind = RandomStreams.DEFAULT_KIND;
+
+  // how the event list is kept; see EventList(String)
+  public String eventListKind = EventList.DEFAULT_KIND;
+
+  // how the car queue is kept; see CarQueue(SimulationContext, String)
+  public String carQueueKind = CarQueue.DEFAULT_KIND;
+
+  // how arriving cars are matched with pumps and lanes; see Dispatcher
+  public String dispatchKind = Dispatcher.DEFAULT_KIND;
+
+  // pumps that differ: pump p serves speeds[p % speeds.length] times as
+  // fast as the service times above, and sells the fuel types whose bits
+  // are set in pumpFuels[p % pumpFuels.length]; null for pumps that are
+  // all alike and sell every fuel
+  public double[] pumpSpeeds = null;
+  public int[] pumpFuels = null;
+
+  // the probability that an arriving car needs each fuel type, or null if
+  // there is only one
+  public double[] fuelMix = null;
+
+  // whether cars that leave are reused for later arrivals, so that a run in
+  // steady state allocates nothing; see SimulationContext.newCar()
+  public boolean recycleCars = true;
+
+  // checkpoints: the whole state of the run is saved in checkpointPath
+  // (null for none) after every checkpointEvery reports; see Checkpoint
+  public String checkpointPath = null;
+  public int checkpointEvery = 1;
+
+  /**
+   * copy: return a new parameter set equal to this one.
+   *
+   * @return Sim.SimulationParameters
+   */
+  public SimulationParameters copy() {
+    SimulationParameters p = new SimulationParameters();
+    p.endingTime = endingTime;
+    p.reportInterval = reportInterval;
+    p.numPumps = numPumps;
+    p.profit = profit;
+    p.pumpCost = pumpCost;
+    p.litresNeededMin = litresNeededMin;
+    p.litresNeededRange = litresNeededRange;
+    p.serviceTimeBase = serviceTimeBase;
+    p.serviceTimePerLitre = serviceTimePerLitre;
+    p.serviceTimeSpread = serviceTimeSpread;
+    p.balkA = balkA;
+    p.balkB = balkB;
+    p.balkC = balkC;
+    p.meanInterarrivalTime = meanInterarrivalTime;
+    p.reportDistributions = reportDistributions;
+    p.reportTimeAverages = reportTimeAverages;
+    p.detectWarmup = detectWarmup;
+    p.commonRandomNumbers = commonRandomNumbers;
+    p.targetHalfWidth = targetHalfWidth;
+    p.maxEvents = maxEvents;
+    p.maxWallClockSeconds = maxWallClockSeconds;
+    p.rngKind = rngKind;
+    p.eventListKind = eventListKind;
+    p.carQueueKind = carQueueKind;
+    p.dispatchKind = dispatchKind;
+    p.arrivalProfile = arrivalProfile; // never changes, so it is shared
+    p.arrivalTracePath = arrivalTracePath;
+    p.pumpSpeeds = pumpSpeeds == null ? null : pumpSpeeds.clone();
+    p.pumpFuels = pumpFuels == null ? null : pumpFuels.clone();
+    p.fuelMix = fuelMix == null ? null : fuelMix.clone();
+    p.recycleCars = recycleCars;
+    p.checkpointPath = checkpointPath;
+    p.checkpointEvery = checkpointEvery;
+    return p;
+  }
+
+  /**
+   * write: write the parameters to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void write(DataOutput out) throws IOException {
+    out.writeDouble(endingTime);
+    out.writeDouble(reportInterval);
+    out.writeInt(numPumps);
+    out.writeDouble(profit);
+    out.writeDouble(pumpCost);
+    out.writeDouble(litresNeededMin);
+    out.writeDouble(litresNeededRange);
+    out.writeDouble(serviceTimeBase);
+    out.writeDouble(serviceTimePerLitre);
+    out.writeDouble(serviceTimeSpread);
+    out.writeDouble(balkA);
+    out.writeDouble(balkB);
+    out.writeDouble(balkC);
+    out.writeDouble(meanInterarrivalTime);
+    out.writeBoolean(reportDistributions);
+    out.writeBoolean(reportTimeAverages);
+    out.writeBoolean(detectWarmup);
+    out.writeBoolean(commonRandomNumbers);
+    out.writeDouble(targetHalfWidth);
+    out.writeLong(maxEvents);
+    out.writeDouble(maxWallClockSeconds);
+    out.writeUTF(rngKind);
+    out.writeUTF(eventListKind);
+    out.writeUTF(carQueueKind);
+    out.writeUTF(dispatchKind);
+    out.writeBoolean(arrivalProfile != null);
+    if (arrivalProfile != null)
+      arrivalProfile.write(out);
+    out.writeUTF(arrivalTracePath == null ? "" : arrivalTracePath);
+    writeArray(out, pumpSpeeds);
+    out.writeInt(pumpFuels == null ? -1 : pumpFuels.length);
+    if (pumpFuels != null)
+      for (int mask : pumpFuels)
+        out.writeInt(mask);
+    writeArray(out, fuelMix);
+    out.writeBoolean(recycleCars);
+    out.writeUTF(checkpointPath == null ? "" : checkpointPath);
+    out.writeInt(checkpointEvery);
+  }
+
+  /**
+   * read: return the parameters that write() wrote to in.
+   *
+   * @return Sim.SimulationParameters
+   * @param in java.io.DataInput
+   */
+  public static SimulationParameters read(DataInput in) throws IOException {
+    SimulationParameters p = new SimulationParameters();
+    p.endingTime = in.readDouble();
+    p.reportInterval = in.readDouble();
+    p.numPumps = in.readInt();
+    p.profit = in.readDouble();
+    p.pumpCost = in.readDouble();
+    p.litresNeededMin = in.readDouble();
+    p.litresNeededRange = in.readDouble();
+    p.serviceTimeBase = in.readDouble();
+    p.serviceTimePerLitre = in.readDouble();
+    p.serviceTimeSpread = in.readDouble();
+    p.balkA = in.readDouble();
+    p.balkB = in.readDouble();
+    p.balkC = in.readDouble();
+    p.meanInterarrivalTime = in.readDouble();
+    p.reportDistributions = in.readBoolean();
+    p.reportTimeAverages = in.readBoolean();
+    p.detectWarmup = in.readBoolean();
+    p.commonRandomNumbers = in.readBoolean();
+    p.targetHalfWidth = in.readDouble();
+    p.maxEvents = in.readLong();
+    p.maxWallClockSeconds = in.readDouble();
+    p.rngKind = in.readUTF();
+    p.eventListKind = in.readUTF();
+    p.carQueueKind = in.readUTF();
+    p.dispatchKind = in.readUTF();
+    if (in.readBoolean())
+      p.arrivalProfile = ArrivalProfile.read(in);
+    final String trace = in.readUTF();
+    p.arrivalTracePath = trace.isEmpty() ? null : trace;
+    p.pumpSpeeds = readArray(in);
+    final int fuels = in.readInt();
+    if (fuels >= 0) {
+      p.pumpFuels = new int[fuels];
+      for (int i = 0; i < fuels; i++)
+        p.pumpFuels[i] = in.readInt();
+    }
+    p.fuelMix = readArray(in);
+    p.recycleCars = in.readBoolean();
+    final String path = in.readUTF();
+    p.checkpointPath = path.isEmpty() ? null : path;
+    p.checkpointEvery = in.readInt();
+    return p;
+  }
+
+  /**
+   * writeArray: write values, or null, to out, its length first (-1 for
+   * null).
+   *
+   * @param out    java.io.DataOutput
+   * @param values double[]
+   */
+  private static void writeArray(DataOutput out, double[] values) throws IOException {
+    out.writeInt(values == null ? -1 : values.length);
+    if (values != null)
+      for (double v : values)
+        out.writeDouble(v);
+  }
+
+  /**
+   * readArray: return the values, or null, that writeArray() wrote to in.
+   *
+   * @return double[]
+   * @param in java.io.DataInput
+   */
+  private static double[] readArray(DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0)
+      return null;
+    double[] values = new double[length];
+    for (int i = 0; i < length; i++)
+      values[i] = in.readDouble();
+    return values;
+  }
+}
@@ -0,0 +1,38 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * SplittableRandomStream: a ziggurat stream on SplitMix64, the generator of
+ * java.util.SplittableRandom, which is fast and unsynchronized. It is
+ * written out here, drawing exactly what new SplittableRandom(seed) would,
+ * because SplittableRandom does not let its state be saved.
+ */
+
+class SplittableRandomStream extends ZigguratRandomStream {
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private long seed;
+
+  /**
+   * Constructor.
+   *
+   * @param seed long
+   */
+  public SplittableRandomStream(long seed) {
+    this.seed = seed;
+  }
+
+  public long nextLong() {
+    seed += GOLDEN_GAMMA;
+    return Xoshiro256PlusPlusStream.splitMix(seed);
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(seed);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    seed = in.readLong();
+  }
+}
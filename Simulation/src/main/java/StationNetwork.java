@@ -0,0 +1,351 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * StationNetwork: many gas stations, linked by roads. A driver who balks at
+ * one station may drive on to the nearest station, arriving there after the
+ * travel time between the two, and balk again; a car gives up after
+ * balking at maxHops + 1 stations, and never goes straight back to the
+ * station it came from.
+ *
+ * Each station is an ordinary SimulationContext of its own, with its own
+ * parameters, seeds and event list. The network runs them in parallel by a
+ * conservative, synchronous algorithm (YAWNS: R. M. Fujimoto, Parallel and
+ * Distributed Simulation Systems, 2000). The stations are divided among
+ * the threads, and time is cut into windows as long as the lookahead, the
+ * shortest travel time between two stations. Within the window [T, T + L)
+ * every station makes its events happen independently, since a car sent on
+ * at or after T arrives at or after T + L; at the end of the window the
+ * threads meet, the cars sent on are delivered, and the next window starts
+ * at the earliest event then waiting. The cars are delivered in the order
+ * of the stations that sent them, so the results do not depend on the
+ * number of threads.
+ */
+
+class StationNetwork {
+  /**
+   * Transfer: the event of a car that balked at another station arriving
+   * here. It carries what the car drew when it first arrived, so nothing is
+   * drawn again but the balking decision.
+   */
+  static final class Transfer extends Event {
+    final int to;
+    final int from;
+    final int hops;
+    final double litres;
+    final double serviceTime;
+
+    Transfer(double time, int to, int from, int hops, double litres, double serviceTime) {
+      super(time);
+      this.to = to;
+      this.from = from;
+      this.hops = hops;
+      this.litres = litres;
+      this.serviceTime = serviceTime;
+    }
+
+    /**
+     * makeItHappen: transfer event routine; the car arrives as any other.
+     */
+    public void makeItHappen(SimulationContext ctx) {
+      Arrival.admit(ctx, ctx.newCar(ctx.simulationTime, litres, serviceTime), hops, from);
+    }
+  }
+
+  /**
+   * Outcome: the results of a network run.
+   */
+  static final class Outcome {
+    public final ReplicationSummary[] stations;
+    public final long[] sentOn; // cars that balked and drove on, per station
+    public final long[] received; // cars that came from other stations
+    public final long[] gaveUp; // cars that balked and went home
+    public final long windows; // synchronization windows run
+    public final double lookahead;
+
+    Outcome(ReplicationSummary[] stations, long[] sentOn, long[] received, long[] gaveUp, long windows,
+        double lookahead) {
+      this.stations = stations;
+      this.sentOn = sentOn;
+      this.received = received;
+      this.gaveUp = gaveUp;
+      this.windows = windows;
+      this.lookahead = lookahead;
+    }
+  }
+
+  private final SimulationParameters[] params;
+  private final double[][] travel; // travel[i][j]: seconds from i to j
+  private final int maxHops;
+  private final int threads;
+  private final double lookahead;
+  private final int[][] nearest; // per station, the two nearest others
+
+  /**
+   * Constructor.
+   *
+   * @param params  Sim.SimulationParameters[] one per station, all with the
+   *                same ending time
+   * @param travel  double[][] travel times in seconds, infinite where there
+   *                is no road
+   * @param maxHops int stations a car may drive on to at most
+   * @param threads int number of threads the stations are divided among
+   */
+  public StationNetwork(SimulationParameters[] params, double[][] travel, int maxHops, int threads) {
+    final int n = params.length;
+    if (n < 2)
+      throw new IllegalArgumentException("a network needs at least two stations");
+    if (threads < 1)
+      throw new IllegalArgumentException("need at least one thread");
+    if (travel.length != n)
+      throw new IllegalArgumentException("need travel times for " + n + " stations");
+    this.params = new SimulationParameters[n];
+    for (int i = 0; i < n; i++) {
+      if (params[i].endingTime != params[0].endingTime)
+        throw new IllegalArgumentException("every station must have the same ending time");
+      // Each station runs quietly to the end; see SimulationContext.runUntil().
+      SimulationParameters p = params[i].copy();
+      p.reportInterval = Double.POSITIVE_INFINITY;
+      p.checkpointPath = null;
+      p.targetHalfWidth = 0;
+      p.maxEvents = Long.MAX_VALUE;
+      p.maxWallClockSeconds = Double.POSITIVE_INFINITY;
+      this.params[i] = p;
+    }
+
+    double shortest = Double.POSITIVE_INFINITY;
+    this.nearest = new int[n][];
+    this.travel = new double[n][];
+    for (int i = 0; i < n; i++) {
+      if (travel[i].length != n)
+        throw new IllegalArgumentException("need travel times for " + n + " stations");
+      this.travel[i] = travel[i].clone();
+      int first = -1;
+      int second = -1;
+      for (int j = 0; j < n; j++) {
+        if (j == i || travel[i][j] == Double.POSITIVE_INFINITY)
+          continue;
+        if (!(travel[i][j] > 0))
+          throw new IllegalArgumentException("travel time from " + i + " to " + j + " must be positive");
+        shortest = Math.min(shortest, travel[i][j]);
+        if (first < 0 || travel[i][j] < travel[i][first]) {
+          second = first;
+          first = j;
+        } else if (second < 0 || travel[i][j] < travel[i][second])
+          second = j;
+      }
+      nearest[i] = new int[] { first, second };
+    }
+    if (shortest == Double.POSITIVE_INFINITY)
+      throw new IllegalArgumentException("no roads between the stations");
+    this.lookahead = shortest;
+    this.maxHops = maxHops;
+    this.threads = threads;
+  }
+
+  public double getLookahead() {
+    return lookahead;
+  }
+
+  /**
+   * nextStation: return the station a car that balked at station i, coming
+   * from station from, drives on to: the nearest one but from, or -1 if
+   * there is none.
+   *
+   * @return int
+   * @param i    int
+   * @param from int
+   */
+  int nextStation(int i, int from) {
+    return nearest[i][0] != from ? nearest[i][0] : nearest[i][1];
+  }
+
+  /**
+   * run: run every station from time 0 to the ending time, station i with
+   * seeds[i], and return the results.
+   *
+   * @return Sim.StationNetwork.Outcome
+   * @param seeds Sim.SeedSet[] one per station
+   */
+  public Outcome run(SeedSet[] seeds) throws InterruptedException {
+    final int n = params.length;
+    final PrintStream discard = new PrintStream(new OutputStream() {
+      public void write(int b) {
+      }
+    });
+    final SimulationContext[] stations = new SimulationContext[n];
+    // the cars each station sends on; written only by the station's thread
+    final List<List<Transfer>> outbox = new ArrayList<List<Transfer>>(n);
+    final long[] sentOn = new long[n];
+    final long[] received = new long[n];
+    final long[] gaveUp = new long[n];
+    for (int i = 0; i < n; i++) {
+      final int station = i;
+      stations[i] = new SimulationContext(params[i], seeds[i], discard);
+      outbox.add(new ArrayList<Transfer>());
+      stations[i].router = new CarRouter() {
+        public void balked(SimulationContext ctx, Car car, int hops, int from) {
+          final int next = hops < maxHops ? nextStation(station, from) : -1;
+          if (next < 0) {
+            gaveUp[station]++;
+            return;
+          }
+          outbox.get(station).add(new Transfer(ctx.simulationTime + travel[station][next], next, station, hops + 1,
+              car.getLitresNeeded(), car.getServiceTime()));
+          sentOn[station]++;
+        }
+      };
+      stations[i].start();
+    }
+
+    // Station i belongs to thread i % threads for the whole run.
+    final boolean[] running = new boolean[n];
+    Arrays.fill(running, true);
+    final int parts = Math.min(threads, n);
+    final double[] limit = new double[1];
+    List<Callable<Void>> windowTasks = new ArrayList<Callable<Void>>();
+    for (int t = 0; t < parts; t++) {
+      final int part = t;
+      windowTasks.add(new Callable<Void>() {
+        public Void call() {
+          for (int i = part; i < n; i += parts)
+            if (running[i])
+              running[i] = stations[i].runUntil(limit[0]);
+          return null;
+        }
+      });
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parts);
+    long windows = 0;
+    try {
+      double now = earliest(stations, running);
+      while (now < Double.POSITIVE_INFINITY) {
+        limit[0] = now + lookahead;
+        for (Future<Void> f : pool.invokeAll(windowTasks))
+          try {
+            f.get();
+          } catch (ExecutionException e) {
+            throw new IllegalStateException("station network window at " + now + " failed", e.getCause());
+          }
+        windows++;
+
+        // Deliver the cars sent on during the window; those due after the
+        // end of the run are still on the road when it ends.
+        for (int i = 0; i < n; i++) {
+          for (Transfer t : outbox.get(i))
+            if (running[t.to] && t.getTime() < params[t.to].endingTime) {
+              stations[t.to].eventList.insert(t);
+              received[t.to]++;
+            }
+          outbox.get(i).clear();
+        }
+        now = earliest(stations, running);
+      }
+    } finally {
+      pool.shutdownNow();
+      for (SimulationContext station : stations)
+        if (station != null)
+          station.close();
+    }
+
+    ReplicationSummary[] summaries = new ReplicationSummary[n];
+    for (int i = 0; i < n; i++)
+      summaries[i] = stations[i].stats.summarize();
+    return new Outcome(summaries, sentOn, received, gaveUp, windows, lookahead);
+  }
+
+  /**
+   * earliest: return the time of the earliest event waiting at a station
+   * still running, or infinity if none is.
+   *
+   * @return double
+   * @param stations Sim.SimulationContext[]
+   * @param running  boolean[]
+   */
+  private static double earliest(SimulationContext[] stations, boolean[] running) {
+    double t = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < stations.length; i++)
+      if (running[i])
+        t = Math.min(t, stations[i].eventList.nextEventTime());
+    return t;
+  }
+
+  /**
+   * main entrypoint: reads the run length, a master seed and the number of
+   * stations n, one per line, then one line per station giving its pumps
+   * and mean interarrival time, then n lines of n travel times in seconds
+   * (- for no road), from standard input, runs the network and prints the
+   * results of each station. Options: -threads n, -hops n (default 2),
+   * -rng kind, -eventlist kind, -crn.
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    SimulationParameters base = new SimulationParameters();
+    int threads = Runtime.getRuntime().availableProcessors();
+    int maxHops = 2;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-threads") && i + 1 < args.length)
+        threads = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-hops") && i + 1 < args.length)
+        maxHops = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-rng") && i + 1 < args.length)
+        base.rngKind = args[++i];
+      else if (args[i].equals("-eventlist") && i + 1 < args.length)
+        base.eventListKind = args[++i];
+      else if (args[i].equals("-crn"))
+        base.commonRandomNumbers = true;
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    base.endingTime = Double.parseDouble(in.readLine());
+    long master = Long.parseLong(in.readLine());
+    final int n = Integer.parseInt(in.readLine().trim());
+    SimulationParameters[] params = new SimulationParameters[n];
+    for (int i = 0; i < n; i++) {
+      String[] fields = in.readLine().trim().split("\\s+");
+      params[i] = base.copy();
+      params[i].numPumps = Integer.parseInt(fields[0]);
+      params[i].meanInterarrivalTime = Double.parseDouble(fields[1]);
+    }
+    double[][] travel = new double[n][n];
+    for (int i = 0; i < n; i++) {
+      String[] fields = in.readLine().trim().split("\\s+");
+      for (int j = 0; j < n; j++)
+        travel[i][j] = fields[j].equals("-") ? Double.POSITIVE_INFINITY : Double.parseDouble(fields[j]);
+    }
+
+    StationNetwork network = new StationNetwork(params, travel, maxHops, threads);
+    long start = System.nanoTime();
+    Outcome o = network.run(SeedSet.fromMaster(master, n));
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    PrintStream out = System.out;
+    out.println(n + " stations for " + base.endingTime + " seconds; lookahead " + o.lookahead + " seconds, "
+        + o.windows + " windows, " + Math.min(threads, n) + " threads, " + String.format("%.2f", seconds)
+        + " seconds");
+    out.printf("%-7s %5s %8s %8s %8s %8s %8s %9s %9s%n", "Station", "Pumps", "Arrivals", "FromNear", "Balked",
+        "DroveOn", "GaveUp", "AvgWait", "Profit");
+    long arrivals = 0, fromNear = 0, balked = 0, droveOn = 0, gaveUp = 0;
+    double profit = 0;
+    for (int i = 0; i < n; i++) {
+      ReplicationSummary r = o.stations[i];
+      out.printf("%-7d %5d %8d %8d %8d %8d %8d %9.3f %9.2f%n", i, params[i].numPumps, r.totalArrivals,
+          o.received[i], r.balkingCustomers, o.sentOn[i], o.gaveUp[i], r.averageWait, r.totalProfit);
+      arrivals += r.totalArrivals;
+      fromNear += o.received[i];
+      balked += r.balkingCustomers;
+      droveOn += o.sentOn[i];
+      gaveUp += o.gaveUp[i];
+      profit += r.totalProfit;
+    }
+    out.printf("%-7s %5s %8d %8d %8d %8d %8d %9s %9.2f%n", "Total", "", arrivals, fromNear, balked, droveOn,
+        gaveUp, "", profit);
+  }
+}
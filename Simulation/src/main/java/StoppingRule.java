@@ -0,0 +1,104 @@
+/**
+ * StoppingRule: a sequential stopping rule that ends a run before its ending
+ * time once the average wait and the lost profit per arriving car are both
+ * known to within a relative 95% confidence-interval half-width, estimated by
+ * batch means. Caps on the number of events and on the wall-clock time end
+ * the run regardless. The precision is tested every CHECK_INTERVAL events,
+ * so the rule adds next to nothing to the cost of an event.
+ */
+
+class StoppingRule {
+  private static final int CHECK_INTERVAL = 1024; // events between tests
+
+  private final double targetHalfWidth; // relative; 0 for no target
+  private final long maxEvents;
+  private final long maxNanos;
+  private final long startNanos;
+  private long events;
+  private String reason; // why the run stopped; null while it goes on
+
+  /**
+   * Constructor: start the wall clock now.
+   *
+   * @param targetHalfWidth     double relative half-width to reach, or 0
+   * @param maxEvents           long
+   * @param maxWallClockSeconds double
+   */
+  public StoppingRule(double targetHalfWidth, long maxEvents, double maxWallClockSeconds) {
+    this.targetHalfWidth = targetHalfWidth;
+    this.maxEvents = maxEvents;
+    this.maxNanos = maxWallClockSeconds >= Long.MAX_VALUE / 1e9 ? Long.MAX_VALUE
+        : (long) (maxWallClockSeconds * 1e9);
+    startNanos = System.nanoTime();
+    events = 0;
+    reason = null;
+  }
+
+  /**
+   * forParameters: return the stopping rule that params ask for, or null if
+   * the run should simply go on to its ending time.
+   *
+   * @return Sim.StoppingRule
+   * @param params Sim.SimulationParameters
+   */
+  public static StoppingRule forParameters(SimulationParameters params) {
+    if (params.targetHalfWidth <= 0 && params.maxEvents == Long.MAX_VALUE
+        && params.maxWallClockSeconds == Double.POSITIVE_INFINITY)
+      return null;
+    return new StoppingRule(params.targetHalfWidth, params.maxEvents, params.maxWallClockSeconds);
+  }
+
+  /**
+   * shouldStop: count an event that has just happened, and return true if
+   * the run should stop now.
+   *
+   * @return boolean
+   * @param stats Sim.Statistics
+   */
+  public boolean shouldStop(Statistics stats) {
+    if (++events >= maxEvents) {
+      reason = "event limit reached";
+      return true;
+    }
+    if (events % CHECK_INTERVAL != 0)
+      return false;
+    if (System.nanoTime() - startNanos >= maxNanos) {
+      reason = "wall-clock limit reached";
+      return true;
+    }
+    if (targetHalfWidth > 0 && stats.waitingTimes.batchMeans.getRelativeHalfWidth() <= targetHalfWidth
+        && stats.lostProfits.getRelativeHalfWidth() <= targetHalfWidth) {
+      reason = "target precision reached";
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * getReason: return why the run stopped.
+   *
+   * @return java.lang.String
+   */
+  public String getReason() {
+    return reason != null ? reason : "ending time reached";
+  }
+
+  /**
+   * getEvents: return the number of events counted so far.
+   *
+   * @return long
+   */
+  public long getEvents() {
+    return events;
+  }
+
+  /**
+   * setEvents: take up the count of events of a run restored from a
+   * checkpoint. The wall clock is not saved; it starts afresh.
+   *
+   * @param events long
+   */
+  public void setEvents(long events) {
+    this.events = events;
+  }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+
+/**
+ * SweepDesign: the points of a parameter sweep. Each factor is one of the
+ * numeric fields of SimulationParameters, named as in that class, and each
+ * point gives every factor a value. A grid takes every combination of the
+ * listed values; a Latin hypercube of n points cuts each factor's range into
+ * n equal strata and samples each stratum once, pairing the strata of the
+ * different factors at random.
+ */
+
+final class SweepDesign {
+  // the parameters that may be swept
+  public static final String[] FACTORS = { "numPumps", "meanInterarrivalTime", "serviceTimeBase",
+      "serviceTimePerLitre", "serviceTimeSpread", "litresNeededMin", "litresNeededRange", "profit", "pumpCost" };
+
+  private final String[] names;
+  private final double[][] points; // points[i][j]: value of factor j at point i
+
+  /**
+   * Constructor.
+   *
+   * @param names  java.lang.String[] the factors
+   * @param points double[][] the value of every factor at every point
+   */
+  public SweepDesign(String[] names, double[][] points) {
+    for (String name : names)
+      if (!Arrays.asList(FACTORS).contains(name))
+        throw new IllegalArgumentException("unknown sweep factor: " + name);
+    this.names = names.clone();
+    this.points = points;
+  }
+
+  /**
+   * grid: return the design made of every combination of the values given
+   * for each factor, the last factor varying fastest.
+   *
+   * @return Sim.SweepDesign
+   * @param names  java.lang.String[]
+   * @param values double[][] the values of each factor
+   */
+  public static SweepDesign grid(String[] names, double[][] values) {
+    int count = 1;
+    for (double[] v : values)
+      count *= v.length;
+    double[][] points = new double[count][names.length];
+    for (int i = 0; i < count; i++) {
+      int rest = i;
+      for (int j = names.length - 1; j >= 0; j--) {
+        points[i][j] = values[j][rest % values[j].length];
+        rest /= values[j].length;
+      }
+    }
+    return new SweepDesign(names, points);
+  }
+
+  /**
+   * latinHypercube: return a Latin hypercube of n points over the ranges
+   * [low, high] of the factors. numPumps is rounded to a whole number.
+   *
+   * @return Sim.SweepDesign
+   * @param names  java.lang.String[]
+   * @param low    double[]
+   * @param high   double[]
+   * @param n      int
+   * @param random java.util.Random
+   */
+  public static SweepDesign latinHypercube(String[] names, double[] low, double[] high, int n, Random random) {
+    double[][] points = new double[n][names.length];
+    int[] strata = new int[n];
+    for (int j = 0; j < names.length; j++) {
+      for (int i = 0; i < n; i++)
+        strata[i] = i;
+      for (int i = n - 1; i > 0; i--) {
+        final int k = random.nextInt(i + 1);
+        final int t = strata[i];
+        strata[i] = strata[k];
+        strata[k] = t;
+      }
+      for (int i = 0; i < n; i++) {
+        double v = low[j] + (high[j] - low[j]) * (strata[i] + random.nextDouble()) / n;
+        if (names[j].equals("numPumps"))
+          v = Math.max(1, Math.round(v));
+        points[i][j] = v;
+      }
+    }
+    return new SweepDesign(names, points);
+  }
+
+  public int size() {
+    return points.length;
+  }
+
+  public String[] getNames() {
+    return names.clone();
+  }
+
+  /**
+   * getValue: return the value of factor j at point i.
+   *
+   * @return double
+   * @param i int
+   * @param j int
+   */
+  public double getValue(int i, int j) {
+    return points[i][j];
+  }
+
+  /**
+   * parameters: return a copy of base with the factors set to their values
+   * at point i.
+   *
+   * @return Sim.SimulationParameters
+   * @param base Sim.SimulationParameters
+   * @param i    int
+   */
+  public SimulationParameters parameters(SimulationParameters base, int i) {
+    SimulationParameters p = base.copy();
+    for (int j = 0; j < names.length; j++)
+      set(p, names[j], points[i][j]);
+    return p;
+  }
+
+  /**
+   * set: set the named parameter of p to value.
+   *
+   * @param p     Sim.SimulationParameters
+   * @param name  java.lang.String one of FACTORS
+   * @param value double
+   */
+  static void set(SimulationParameters p, String name, double value) {
+    if (name.equals("numPumps"))
+      p.numPumps = (int) Math.round(value);
+    else if (name.equals("meanInterarrivalTime"))
+      p.meanInterarrivalTime = value;
+    else if (name.equals("serviceTimeBase"))
+      p.serviceTimeBase = value;
+    else if (name.equals("serviceTimePerLitre"))
+      p.serviceTimePerLitre = value;
+    else if (name.equals("serviceTimeSpread"))
+      p.serviceTimeSpread = value;
+    else if (name.equals("litresNeededMin"))
+      p.litresNeededMin = value;
+    else if (name.equals("litresNeededRange"))
+      p.litresNeededRange = value;
+    else if (name.equals("profit"))
+      p.profit = value;
+    else if (name.equals("pumpCost"))
+      p.pumpCost = value;
+    else
+      throw new IllegalArgumentException("unknown sweep factor: " + name);
+  }
+}
@@ -0,0 +1,143 @@
+import java.io.PrintStream;
+
+/**
+ * TableReportSink: the original fixed-width table of the statistics summary.
+ * Each line is formatted into a reusable byte array with the same rounding
+ * and padding as Statistics.fmtDbl() and fmtInt(), and written to the report
+ * stream in one call, so a report creates no strings.
+ */
+
+class TableReportSink implements ReportSink {
+  private static final byte[] UNKNOWN = "Unknown".getBytes();
+  private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+
+  private final PrintStream out;
+  private byte[] line = new byte[128];
+  private int length;
+  private final byte[] digits = new byte[12]; // an int, with its sign
+
+  /**
+   * Constructor.
+   *
+   * @param out java.io.PrintStream where the table is printed
+   */
+  public TableReportSink(PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * begin: print column titles for the statistics summaries.
+   */
+  public void begin() {
+    out.println(" Current   Total NoQueue  Car->Car Averaae Number Average  Pump  Total  Lost ");
+    out.println(" Time      Cars  Fraction  Time    Litres  Balked  Wait  Usage Profit Profit ");
+    for (int i = 0; i < 79; i++)
+      out.print("-");
+    out.println("");
+  }
+
+  public void write(ReportRow row) {
+    length = 0;
+    appendDouble(row.time, 8, 0);
+    appendInt(row.totalCars, 7);
+    appendDouble(row.noQueueFraction, 8, 3);
+
+    if (row.totalCars > 0) {
+      appendDouble(row.carToCarTime, 9, 3);
+      appendDouble(row.averageLitres, 8, 3);
+    } else {
+      append(UNKNOWN);
+      append((byte) ' ');
+      append(UNKNOWN);
+    }
+
+    appendInt(row.numberBalked, 7);
+    if (!Double.isNaN(row.averageWait))
+      appendDouble(row.averageWait, 9, 3);
+    else
+      append(UNKNOWN);
+
+    appendDouble(row.scheduledPumpUsage, 7, 3);
+    appendDouble(row.totalProfit, 9, 2);
+    appendDouble(row.lostProfit, 7, 2);
+    append(NEWLINE);
+    out.write(line, 0, length);
+  }
+
+  public void close() {
+    out.flush();
+  }
+
+  private void append(byte b) {
+    if (length == line.length)
+      line = java.util.Arrays.copyOf(line, 2 * length);
+    line[length++] = b;
+  }
+
+  private void append(byte[] bytes) {
+    for (byte b : bytes)
+      append(b);
+  }
+
+  /**
+   * toDigits: put the decimal form of n, as Integer.toString() gives it, at
+   * the end of digits, and return the number of characters.
+   *
+   * @return int
+   * @param n int
+   */
+  private int toDigits(int n) {
+    int i = digits.length;
+    long v = Math.abs((long) n);
+    do {
+      digits[--i] = (byte) ('0' + v % 10);
+      v /= 10;
+    } while (v != 0);
+    if (n < 0)
+      digits[--i] = '-';
+    return digits.length - i;
+  }
+
+  /**
+   * appendInt: append an int, padded by blanks on the left to width.
+   *
+   * @param number int
+   * @param width  int
+   */
+  private void appendInt(int number, int width) {
+    final int n = toDigits(number);
+    for (int i = n; i < width; i++)
+      append((byte) ' ');
+    for (int i = digits.length - n; i < digits.length; i++)
+      append(digits[i]);
+  }
+
+  /**
+   * appendDouble: append a double rounded to precision digits and padded to
+   * width exactly as Statistics.fmtDbl() would format it.
+   *
+   * @param number    double
+   * @param width     int
+   * @param precision int
+   */
+  private void appendDouble(double number, int width, int precision) {
+    double scale = 1;
+    for (int i = 0; i < precision; i++)
+      scale *= 10;
+    final int n = toDigits((int) (number * scale + 0.5));
+    final int first = digits.length - n;
+
+    // fmtDbl pads the digits with zeros to precision + 1 characters and
+    // puts the decimal point before the last precision of them.
+    final int zeros = precision > 0 ? Math.max(0, precision + 1 - n) : 0;
+    final int chars = zeros + n + (precision > 0 ? 1 : 0);
+    for (int i = chars; i < width; i++)
+      append((byte) ' ');
+    final int point = precision > 0 ? zeros + n - precision : -1;
+    for (int i = 0; i < zeros + n; i++) {
+      if (i == point)
+        append((byte) '.');
+      append(i < zeros ? (byte) '0' : digits[first + i - zeros]);
+    }
+  }
+}
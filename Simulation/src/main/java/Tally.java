@@ -0,0 +1,58 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Tally: the statistics kept about one stream of observations, such as the
+ * customers' waiting times: its moments, a histogram for its quantiles and
+ * batch means for a confidence interval. Recording an observation takes
+ * constant time and does not allocate.
+ */
+
+class Tally {
+  public final RunningMoments moments = new RunningMoments();
+  public final LogHistogram histogram = new LogHistogram();
+  public final BatchMeans batchMeans = new BatchMeans();
+
+  /**
+   * add: record an observation.
+   *
+   * @param x double
+   */
+  public void add(double x) {
+    moments.add(x);
+    histogram.add(x);
+    batchMeans.add(x);
+  }
+
+  /**
+   * reset: forget every observation.
+   */
+  public void reset() {
+    moments.reset();
+    histogram.reset();
+    batchMeans.reset();
+  }
+
+  /**
+   * writeState: write the tally to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    moments.writeState(out);
+    histogram.writeState(out);
+    batchMeans.writeState(out);
+  }
+
+  /**
+   * readState: replace the tally with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    moments.readState(in);
+    histogram.readState(in);
+    batchMeans.readState(in);
+  }
+}
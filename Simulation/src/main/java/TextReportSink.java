@@ -0,0 +1,66 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * TextReportSink: a sink that writes lines of ASCII text to a channel. A
+ * subclass builds each line in a reusable StringBuilder, which formats
+ * numbers without creating strings, and the line is copied into a byte
+ * buffer that goes to the channel only when it is full.
+ */
+
+abstract class TextReportSink implements ReportSink {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  protected final StringBuilder line = new StringBuilder(256);
+
+  /**
+   * Constructor.
+   *
+   * @param channel java.nio.channels.WritableByteChannel
+   */
+  protected TextReportSink(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * emitLine: end the line being built, queue it for the channel, and start
+   * a new one.
+   */
+  protected void emitLine() {
+    line.append('\n');
+    final int n = line.length();
+    for (int i = 0; i < n; i++) {
+      if (!buffer.hasRemaining())
+        drain();
+      buffer.put((byte) line.charAt(i));
+    }
+    line.setLength(0);
+  }
+
+  /**
+   * drain: write the buffer to the channel.
+   */
+  private void drain() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffer.clear();
+  }
+
+  public void close() {
+    drain();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * TimeWeightedValue: a quantity that changes at discrete moments, such as
+ * the length of the car queue, together with its integral over time, so that
+ * its time average and maximum can be reported. Each change costs O(1).
+ */
+
+class TimeWeightedValue {
+  private double value; // the current value
+  private double lastChange; // when the value last changed
+  private double area; // integral of the value from startTime to lastChange
+  private double startTime; // when the integral was last reset
+  private double max;
+
+  /**
+   * Constructor: a value of zero from time 0.
+   */
+  public TimeWeightedValue() {
+    value = 0;
+    lastChange = 0;
+    area = 0;
+    startTime = 0;
+    max = 0;
+  }
+
+  /**
+   * set: record that the value changed to newValue at time now.
+   *
+   * @param now      double
+   * @param newValue double
+   */
+  public void set(double now, double newValue) {
+    area += value * (now - lastChange);
+    lastChange = now;
+    value = newValue;
+    if (newValue > max)
+      max = newValue;
+  }
+
+  /**
+   * add: record that the value changed by delta at time now.
+   *
+   * @param now   double
+   * @param delta double
+   */
+  public void add(double now, double delta) {
+    set(now, value + delta);
+  }
+
+  public double getValue() {
+    return value;
+  }
+
+  /**
+   * getAverage: return the time average of the value from the last reset
+   * (or time 0) to now, or the current value if no time has passed.
+   *
+   * @return double
+   * @param now double
+   */
+  public double getAverage(double now) {
+    final double elapsed = now - startTime;
+    if (elapsed <= 0)
+      return value;
+    return (area + value * (now - lastChange)) / elapsed;
+  }
+
+  /**
+   * getMax: return the largest value since the last reset (or time 0).
+   *
+   * @return double
+   */
+  public double getMax() {
+    return max;
+  }
+
+  /**
+   * reset: start integrating afresh at time now, keeping the current value.
+   *
+   * @param now double
+   */
+  public void reset(double now) {
+    area = 0;
+    lastChange = now;
+    startTime = now;
+    max = value;
+  }
+
+  /**
+   * writeState: write the value and its integral to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeDouble(value);
+    out.writeDouble(lastChange);
+    out.writeDouble(area);
+    out.writeDouble(startTime);
+    out.writeDouble(max);
+  }
+
+  /**
+   * readState: replace the value and its integral with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    value = in.readDouble();
+    lastChange = in.readDouble();
+    area = in.readDouble();
+    startTime = in.readDouble();
+    max = in.readDouble();
+  }
+}
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * TraceHash: a rolling 64-bit hash of everything a run records (see
+ * TraceRecorder), so that two runs can be shown to have had the same
+ * history, happening for happening, without storing either trace.
+ *
+ * Each record is folded into the hash as four 64-bit words (time, litres,
+ * type and pump, queue and busy pumps), bit for bit. If an interval is
+ * given, the hash is also kept after every interval records, so that when
+ * two runs differ, firstDivergence() narrows down where.
+ */
+
+class TraceHash implements TraceRecorder {
+  private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+  private final long interval; // records between prefixes; 0 for none
+  private long hash;
+  private long records;
+  private long[] prefixes; // prefixes[k]: the hash after (k+1)*interval records
+  private int prefixCount;
+
+  /**
+   * Constructor: keep only the final hash.
+   */
+  public TraceHash() {
+    this(0);
+  }
+
+  /**
+   * Constructor: keep the hash after every interval records too.
+   *
+   * @param interval long
+   */
+  public TraceHash(long interval) {
+    this.interval = interval;
+    hash = 0;
+    records = 0;
+    prefixes = new long[interval > 0 ? 16 : 0];
+    prefixCount = 0;
+  }
+
+  private static long mix(long h, long word) {
+    return (Long.rotateLeft(h, 29) ^ word) * MULTIPLIER;
+  }
+
+  public void record(double time, int type, int pump, int queueLength, int busyPumps, double litres) {
+    long h = hash;
+    h = mix(h, Double.doubleToLongBits(time));
+    h = mix(h, Double.doubleToLongBits(litres));
+    h = mix(h, ((long) type << 32) | (pump & 0xffffffffL));
+    h = mix(h, ((long) queueLength << 32) | (busyPumps & 0xffffffffL));
+    hash = h;
+    if (++records == interval * (prefixCount + 1)) {
+      if (prefixCount == prefixes.length)
+        prefixes = Arrays.copyOf(prefixes, 2 * prefixCount);
+      prefixes[prefixCount++] = getHash();
+    }
+  }
+
+  /**
+   * getHash: return the hash of the records so far, which also depends on
+   * their number.
+   *
+   * @return long
+   */
+  public long getHash() {
+    return Xoshiro256PlusPlusStream.splitMix(hash ^ records);
+  }
+
+  public long getRecordCount() {
+    return records;
+  }
+
+  /**
+   * firstDivergence: return the number of records after which this history
+   * and other's are known to agree, to the nearest interval: every record
+   * if the hashes are equal, otherwise the records before the first prefix
+   * that differs. Both must have the same interval.
+   *
+   * @return long
+   * @param other Sim.TraceHash
+   */
+  public long firstDivergence(TraceHash other) {
+    if (interval != other.interval)
+      throw new IllegalArgumentException("the hashes have different intervals");
+    if (records == other.records && getHash() == other.getHash())
+      return records;
+    final int common = Math.min(prefixCount, other.prefixCount);
+    for (int k = 0; k < common; k++)
+      if (prefixes[k] != other.prefixes[k])
+        return k * interval;
+    return common * interval;
+  }
+
+  public String toString() {
+    return records + " " + String.format("%016x", getHash());
+  }
+}
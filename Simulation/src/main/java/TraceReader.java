@@ -0,0 +1,264 @@
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * TraceReader: reads a trace made by TraceWriter, mapping the file into
+ * memory, and replays its bookkeeping.
+ *
+ * The replay does not rerun the simulation; it counts the recorded
+ * happenings and follows the queue, which is enough to check a run's
+ * statistics against its history or to find when something odd started.
+ */
+
+class TraceReader {
+  // records per mapping: 1 GiB at a time, so traces may outgrow an int
+  private static final int CHUNK_SHIFT = 25;
+  private static final long CHUNK_RECORDS = 1L << CHUNK_SHIFT;
+
+  /**
+   * Replay: totals over the records replayed.
+   */
+  static final class Replay {
+    public long arrivals = 0;
+    public long balks = 0;
+    public long services = 0; // starts of service
+    public long departures = 0;
+    public long reports = 0;
+    public double litresSold = 0.0;
+    public double litresMissed = 0.0;
+    public int maxQueueLength = 0;
+    public double firstTime = Double.NaN;
+    public double lastTime = Double.NaN;
+    public final long[] servicesByPump;
+
+    Replay(int numPumps) {
+      servicesByPump = new long[numPumps];
+    }
+  }
+
+  private final MappedByteBuffer[] chunks;
+  private final long records;
+  private final int numPumps;
+
+  /**
+   * Constructor: map the trace file at path.
+   *
+   * @param path java.lang.String
+   */
+  public TraceReader(String path) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+      FileChannel channel = file.getChannel();
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, TraceWriter.HEADER_SIZE);
+      header.order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt(0) != TraceWriter.MAGIC)
+        throw new IOException(path + " is not a trace");
+      if (header.getInt(4) != TraceWriter.VERSION || header.getInt(8) != TraceWriter.RECORD_SIZE)
+        throw new IOException(path + ": unsupported trace version " + header.getInt(4));
+
+      final long available = (channel.size() - TraceWriter.HEADER_SIZE) / TraceWriter.RECORD_SIZE;
+      chunks = new MappedByteBuffer[(int) ((available + CHUNK_RECORDS - 1) >> CHUNK_SHIFT)];
+      for (int c = 0; c < chunks.length; c++) {
+        final long first = c * CHUNK_RECORDS;
+        final long count = Math.min(CHUNK_RECORDS, available - first);
+        chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+            TraceWriter.HEADER_SIZE + first * TraceWriter.RECORD_SIZE, count * TraceWriter.RECORD_SIZE);
+        chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+      }
+
+      // A writer that was not closed left the count at 0 and the rest of
+      // its last mapping zeroed; the records end at the first type 0.
+      long n = header.getLong(16);
+      if (n == 0)
+        while (n < available && getType(n) != 0)
+          n++;
+      records = Math.min(n, available);
+    }
+
+    int pumps = 0;
+    for (long i = 0; i < records; i++)
+      pumps = Math.max(pumps, Math.max(getPump(i) + 1, getBusyPumps(i)));
+    numPumps = pumps;
+  }
+
+  public long size() {
+    return records;
+  }
+
+  /**
+   * getNumberOfPumps: return the number of pumps the trace shows, which may
+   * be fewer than the station had if some were never used.
+   *
+   * @return int
+   */
+  public int getNumberOfPumps() {
+    return numPumps;
+  }
+
+  private MappedByteBuffer chunk(long i) {
+    return chunks[(int) (i >> CHUNK_SHIFT)];
+  }
+
+  private int offset(long i) {
+    return (int) (i & (CHUNK_RECORDS - 1)) * TraceWriter.RECORD_SIZE;
+  }
+
+  public double getTime(long i) {
+    return chunk(i).getDouble(offset(i));
+  }
+
+  public double getLitres(long i) {
+    return chunk(i).getDouble(offset(i) + 8);
+  }
+
+  public int getType(long i) {
+    return chunk(i).getInt(offset(i) + 16);
+  }
+
+  public int getPump(long i) {
+    return chunk(i).getInt(offset(i) + 20);
+  }
+
+  public int getQueueLength(long i) {
+    return chunk(i).getInt(offset(i) + 24);
+  }
+
+  public int getBusyPumps(long i) {
+    return chunk(i).getInt(offset(i) + 28);
+  }
+
+  /**
+   * matches: return true if record i passes the filters: type 0 and pump -1
+   * match any record, and the time must lie in [from, to].
+   *
+   * @return boolean
+   * @param i    long
+   * @param type int
+   * @param pump int
+   * @param from double
+   * @param to   double
+   */
+  public boolean matches(long i, int type, int pump, double from, double to) {
+    final double t = getTime(i);
+    return (type == 0 || getType(i) == type) && (pump < 0 || getPump(i) == pump) && t >= from && t <= to;
+  }
+
+  /**
+   * replay: return the totals over the records with times in [from, to].
+   *
+   * @return Sim.TraceReader.Replay
+   * @param from double
+   * @param to   double
+   */
+  public Replay replay(double from, double to) {
+    Replay r = new Replay(numPumps);
+    for (long i = 0; i < records; i++) {
+      final double t = getTime(i);
+      if (t < from || t > to)
+        continue;
+      if (Double.isNaN(r.firstTime))
+        r.firstTime = t;
+      r.lastTime = t;
+      r.maxQueueLength = Math.max(r.maxQueueLength, getQueueLength(i));
+      switch (getType(i)) {
+      case TraceRecorder.ARRIVAL:
+        r.arrivals++;
+        break;
+      case TraceRecorder.BALK:
+        r.balks++;
+        r.litresMissed += getLitres(i);
+        break;
+      case TraceRecorder.START_SERVICE:
+        r.services++;
+        r.servicesByPump[getPump(i)]++;
+        break;
+      case TraceRecorder.DEPARTURE:
+        r.departures++;
+        r.litresSold += getLitres(i);
+        break;
+      case TraceRecorder.REPORT:
+        r.reports++;
+        break;
+      default:
+        break;
+      }
+    }
+    return r;
+  }
+
+  /**
+   * typeOf: return the record type with the given name, as in
+   * TraceRecorder.TYPE_NAMES.
+   *
+   * @return int
+   * @param name java.lang.String
+   */
+  static int typeOf(String name) {
+    for (int t = 1; t < TraceRecorder.TYPE_NAMES.length; t++)
+      if (TraceRecorder.TYPE_NAMES[t].equals(name))
+        return t;
+    throw new IllegalArgumentException("unknown trace record type: " + name);
+  }
+
+  /**
+   * main entrypoint: prints the records of the trace file named last on the
+   * command line, one per line, then the totals of a replay. Options: -type
+   * name (arrival, balk, start, departure, report or end), -pump n, -from t
+   * and -to t select the records printed; -summary prints only the totals,
+   * which cover every record between -from and -to.
+   *
+   * @param args java.lang.String[]
+   */
+  public static void main(String[] args) throws IOException {
+    int type = 0;
+    int pump = -1;
+    double from = Double.NEGATIVE_INFINITY;
+    double to = Double.POSITIVE_INFINITY;
+    boolean summaryOnly = false;
+    String path = null;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-type") && i + 1 < args.length)
+        type = typeOf(args[++i]);
+      else if (args[i].equals("-pump") && i + 1 < args.length)
+        pump = Integer.parseInt(args[++i]);
+      else if (args[i].equals("-from") && i + 1 < args.length)
+        from = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-to") && i + 1 < args.length)
+        to = Double.parseDouble(args[++i]);
+      else if (args[i].equals("-summary"))
+        summaryOnly = true;
+      else if (!args[i].startsWith("-") && path == null)
+        path = args[i];
+      else {
+        System.out.println("Error! unknown option " + args[i]);
+        return;
+      }
+    }
+    if (path == null) {
+      System.out.println("Error! no trace file given");
+      return;
+    }
+
+    TraceReader trace = new TraceReader(path);
+    PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false);
+    if (!summaryOnly) {
+      out.printf("%14s %-9s %4s %5s %4s %8s%n", "Time", "Event", "Pump", "Queue", "Busy", "Litres");
+      for (long i = 0; i < trace.size(); i++)
+        if (trace.matches(i, type, pump, from, to))
+          out.printf("%14.3f %-9s %4s %5d %4d %8.3f%n", trace.getTime(i), TraceRecorder.TYPE_NAMES[trace.getType(i)],
+              trace.getPump(i) < 0 ? "-" : "" + trace.getPump(i), trace.getQueueLength(i),
+              trace.getBusyPumps(i), trace.getLitres(i));
+    }
+
+    Replay r = trace.replay(from, to);
+    out.println(trace.size() + " records from " + r.firstTime + " to " + r.lastTime + " seconds");
+    out.println("arrivals " + r.arrivals + ", balked " + r.balks + ", served " + r.services + ", departed "
+        + r.departures + ", reports " + r.reports);
+    out.printf("litres sold %.3f, missed %.3f; longest queue %d%n", r.litresSold, r.litresMissed,
+        r.maxQueueLength);
+    for (int p = 0; p < r.servicesByPump.length; p++)
+      out.println("pump " + p + ": " + r.servicesByPump[p] + " services");
+    out.flush();
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * TraceRecorder: something that is told of every happening of a run - each
+ * arrival, balk, start of service, departure, report and the end - with the
+ * state of the station as it happens. A TraceWriter keeps the records in a
+ * file; a TraceHash boils them down to a fingerprint of the run.
+ *
+ * A run tells nothing unless SimulationContext.trace is set, and then costs
+ * one null test per happening.
+ */
+
+interface TraceRecorder {
+  // record types
+  int ARRIVAL = 1;
+  int BALK = 2;
+  int START_SERVICE = 3;
+  int DEPARTURE = 4;
+  int REPORT = 5;
+  int END = 6;
+  String[] TYPE_NAMES = { "", "arrival", "balk", "start", "departure", "report", "end" };
+
+  /**
+   * record: take note of one happening. The queue length and the number of
+   * busy pumps are as the record is made: an arrival is recorded before the
+   * car joins, a balk after it leaves, a start of service after the car
+   * reaches the pump, and a departure before the pump is freed or takes the
+   * next car.
+   *
+   * @param time        double
+   * @param type        int one of the record types
+   * @param pump        int the pump concerned, or -1
+   * @param queueLength int
+   * @param busyPumps   int
+   * @param litres      double of the car concerned, or 0
+   */
+  void record(double time, int type, int pump, int queueLength, int busyPumps, double litres);
+
+  /**
+   * record: take note of what just happened in ctx.
+   *
+   * @param ctx    Sim.SimulationContext
+   * @param type   int
+   * @param pump   int
+   * @param litres double
+   */
+  default void record(SimulationContext ctx, int type, int pump, double litres) {
+    record(ctx.simulationTime, type, pump, ctx.carQueue.getQueueSize(), ctx.pumpStand.getNumberBusy(), litres);
+  }
+}
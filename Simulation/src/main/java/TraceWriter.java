@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * TraceWriter: records the history of a run, one fixed-size binary record
+ * per happening, in a memory-mapped file.
+ *
+ * The file is a HEADER_SIZE-byte header - the magic number MAGIC, the
+ * format version, RECORD_SIZE and the number of records - followed by the
+ * records, all little-endian. A record holds the time (double), the litres
+ * of the car concerned (double, 0 if none), the type (int, see
+ * TraceRecorder), the pump (int, -1 if none), and the queue length and
+ * number of busy pumps (ints). The file is mapped CHUNK_SIZE bytes at a
+ * time, so recording a happening is a handful of stores into memory; the
+ * operating system writes the pages out.
+ */
+
+class TraceWriter implements TraceRecorder {
+  public static final int MAGIC = 0x53494d54; // "SIMT"
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 32;
+  public static final int RECORD_SIZE = 32;
+  static final long CHUNK_SIZE = 1L << 24; // a multiple of RECORD_SIZE
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private MappedByteBuffer map;
+  private long mapStart; // file offset of the current mapping
+  private long records;
+
+  /**
+   * Constructor: create (or empty) the trace file at path.
+   *
+   * @param path java.lang.String
+   */
+  public TraceWriter(String path) throws IOException {
+    file = new RandomAccessFile(path, "rw");
+    file.setLength(0);
+    channel = file.getChannel();
+    mapStart = 0;
+    map = mapAt(0);
+    map.putInt(MAGIC);
+    map.putInt(VERSION);
+    map.putInt(RECORD_SIZE);
+    map.putInt(0);
+    map.putLong(0); // the record count, filled in by close()
+    map.putLong(0);
+    records = 0;
+  }
+
+  /**
+   * mapAt: map CHUNK_SIZE bytes of the file from offset on.
+   *
+   * @return java.nio.MappedByteBuffer
+   * @param offset long
+   */
+  private MappedByteBuffer mapAt(long offset) throws IOException {
+    MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_WRITE, offset, CHUNK_SIZE);
+    m.order(ByteOrder.LITTLE_ENDIAN);
+    return m;
+  }
+
+  /**
+   * record: append one record.
+   *
+   * @param time        double
+   * @param type        int
+   * @param pump        int
+   * @param queueLength int
+   * @param busyPumps   int
+   * @param litres      double
+   */
+  public void record(double time, int type, int pump, int queueLength, int busyPumps, double litres) {
+    if (!map.hasRemaining()) {
+      try {
+        mapStart += CHUNK_SIZE;
+        map = mapAt(mapStart);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    map.putDouble(time);
+    map.putDouble(litres);
+    map.putInt(type);
+    map.putInt(pump);
+    map.putInt(queueLength);
+    map.putInt(busyPumps);
+    records++;
+  }
+
+  /**
+   * getRecordCount: return the number of records so far.
+   *
+   * @return long
+   */
+  public long getRecordCount() {
+    return records;
+  }
+
+  /**
+   * close: write the record count into the header, flush the mapping and
+   * cut the file to the records written.
+   */
+  public void close() throws IOException {
+    MappedByteBuffer header = mapStart == 0 ? map : mapAt(0);
+    header.putLong(16, records);
+    header.force();
+    map.force();
+    try {
+      channel.truncate(HEADER_SIZE + records * RECORD_SIZE);
+    } catch (IOException e) {
+      // Some systems refuse to truncate a mapped file; the record count
+      // in the header still tells a reader where the records end.
+    }
+    file.close();
+  }
+}
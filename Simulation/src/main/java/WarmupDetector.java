@@ -0,0 +1,146 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * WarmupDetector: finds the end of the initial transient in a stream of
+ * observations with the MSER-5 rule (K. P. White, Simulation 69(6), 1997).
+ *
+ * The observations are averaged in batches of five. For a candidate
+ * truncation point d, MSER is the variance of the batch means left after
+ * dropping the first d, divided by the number left; it is smallest where the
+ * bias of the early batches stops paying for itself. The rule is applied each
+ * time the number of batches doubles, so the work per observation is O(1)
+ * amortized, and a truncation point is accepted only if it lies in the first
+ * half of the batches seen so far.
+ */
+
+class WarmupDetector {
+  private static final int BATCH_SIZE = 5;
+  private static final int MIN_BATCHES = 20; // fewer are not worth testing
+
+  private double[] batchMeans = new double[MIN_BATCHES];
+  private int batches; // complete batches
+  private int nextCheck; // number of batches at the next test
+  private double currentSum;
+  private int currentCount;
+  private int truncation; // batches to drop, once found; -1 before then
+
+  /**
+   * Constructor.
+   */
+  public WarmupDetector() {
+    batches = 0;
+    nextCheck = MIN_BATCHES;
+    currentSum = 0;
+    currentCount = 0;
+    truncation = -1;
+  }
+
+  /**
+   * add: record the next observation, and return true if this completes the
+   * warm-up: a truncation point has just been found.
+   *
+   * @return boolean
+   * @param x double
+   */
+  public boolean add(double x) {
+    if (truncation >= 0)
+      return false;
+    currentSum += x;
+    if (++currentCount < BATCH_SIZE)
+      return false;
+
+    if (batches == batchMeans.length)
+      batchMeans = java.util.Arrays.copyOf(batchMeans, 2 * batches);
+    batchMeans[batches++] = currentSum / BATCH_SIZE;
+    currentSum = 0;
+    currentCount = 0;
+    if (batches < nextCheck)
+      return false;
+    nextCheck *= 2;
+
+    final int d = bestTruncation();
+    if (d >= batches / 2)
+      return false; // the series still drifts
+    truncation = d;
+    return true;
+  }
+
+  /**
+   * bestTruncation: return the d in [0, batches / 2] that minimizes the MSER
+   * statistic, working backwards from the end of the series with running sums.
+   *
+   * @return int
+   */
+  private int bestTruncation() {
+    double sum = 0;
+    double sumSq = 0;
+    int best = batches / 2;
+    double bestMser = Double.POSITIVE_INFINITY;
+    for (int d = batches - 1; d >= 0; d--) {
+      final double y = batchMeans[d];
+      sum += y;
+      sumSq += y * y;
+      if (d > batches / 2)
+        continue;
+      final int n = batches - d;
+      final double mser = (sumSq - sum * sum / n) / ((double) n * n);
+      if (mser <= bestMser) {
+        bestMser = mser;
+        best = d;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * isDone: return true once a truncation point has been found.
+   *
+   * @return boolean
+   */
+  public boolean isDone() {
+    return truncation >= 0;
+  }
+
+  /**
+   * getTruncation: return the number of observations that MSER-5 would drop,
+   * or -1 if no truncation point has been found yet.
+   *
+   * @return int
+   */
+  public int getTruncation() {
+    return truncation < 0 ? -1 : truncation * BATCH_SIZE;
+  }
+
+  /**
+   * writeState: write the batches seen so far to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(batches);
+    for (int b = 0; b < batches; b++)
+      out.writeDouble(batchMeans[b]);
+    out.writeInt(nextCheck);
+    out.writeDouble(currentSum);
+    out.writeInt(currentCount);
+    out.writeInt(truncation);
+  }
+
+  /**
+   * readState: replace the batches seen so far with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    batches = in.readInt();
+    batchMeans = new double[Math.max(MIN_BATCHES, batches)];
+    for (int b = 0; b < batches; b++)
+      batchMeans[b] = in.readDouble();
+    nextCheck = in.readInt();
+    currentSum = in.readDouble();
+    currentCount = in.readInt();
+    truncation = in.readInt();
+  }
+}
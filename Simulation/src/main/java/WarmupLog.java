@@ -0,0 +1,115 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * WarmupLog: what Statistics was told while a warm-up was being watched
+ * for, in order, so that once MSER-5 has picked a truncation point the
+ * statistics can be rebuilt as if they had been reset there. Each entry is
+ * a kind, the time it was recorded, and one value: the litres of a sale or
+ * a balk, a waiting or service time, or the number of busy pumps for a
+ * change of the station, whose queue length goes in count. Each entry costs
+ * O(1) amortized; the log lasts at most half the run.
+ */
+
+class WarmupLog {
+  public static final byte ARRIVAL = 0;
+  public static final byte BALK = 1;
+  public static final byte JOIN = 2;
+  public static final byte SALE = 3;
+  public static final byte WAIT = 4;
+  public static final byte SERVICE = 5;
+  public static final byte CHANGE = 6;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private byte[] kinds = new byte[INITIAL_CAPACITY];
+  private double[] times = new double[INITIAL_CAPACITY];
+  private double[] values = new double[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * add: append an entry.
+   *
+   * @param kind  byte
+   * @param time  double
+   * @param value double
+   * @param count int
+   */
+  public void add(byte kind, double time, double value, int count) {
+    if (size == kinds.length) {
+      kinds = Arrays.copyOf(kinds, 2 * size);
+      times = Arrays.copyOf(times, 2 * size);
+      values = Arrays.copyOf(values, 2 * size);
+      counts = Arrays.copyOf(counts, 2 * size);
+    }
+    kinds[size] = kind;
+    times[size] = time;
+    values[size] = value;
+    counts[size] = count;
+    size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public byte getKind(int i) {
+    return kinds[i];
+  }
+
+  public double getTime(int i) {
+    return times[i];
+  }
+
+  public double getValue(int i) {
+    return values[i];
+  }
+
+  public int getCount(int i) {
+    return counts[i];
+  }
+
+  /**
+   * indexOfWait: return the index of the entry holding waiting time number
+   * n (counting from 0), or size() if fewer have been recorded.
+   *
+   * @return int
+   * @param n int
+   */
+  public int indexOfWait(int n) {
+    for (int i = 0; i < size; i++)
+      if (kinds[i] == WAIT && n-- == 0)
+        return i;
+    return size;
+  }
+
+  /**
+   * writeState: write the entries to out, for a checkpoint.
+   *
+   * @param out java.io.DataOutput
+   */
+  public void writeState(DataOutput out) throws IOException {
+    out.writeInt(size);
+    for (int i = 0; i < size; i++) {
+      out.writeByte(kinds[i]);
+      out.writeDouble(times[i]);
+      out.writeDouble(values[i]);
+      out.writeInt(counts[i]);
+    }
+  }
+
+  /**
+   * readState: replace the entries with what writeState() wrote to in.
+   *
+   * @param in java.io.DataInput
+   */
+  public void readState(DataInput in) throws IOException {
+    size = 0;
+    final int n = in.readInt();
+    for (int i = 0; i < n; i++)
+      add(in.readByte(), in.readDouble(), in.readDouble(), in.readInt());
+  }
+}
@@ -0,0 +1,125 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Xoshiro256PlusPlusStream: a ziggurat stream on xoshiro256++ (D. Blackman
+ * and S. Vigna, ACM TOMS 47(4), 2021), a 256-bit xor/shift/rotate generator
+ * with period 2^256 - 1. The state is filled from the seed by SplitMix64, as
+ * the authors recommend; jump() skips 2^128 numbers, and SeedSet.fromMaster()
+ * uses it to give each replication stretches of one sequence that provably
+ * do not overlap.
+ */
+
+class Xoshiro256PlusPlusStream extends ZigguratRandomStream {
+  private static final long[] JUMP = { 0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL,
+      0x39abdc4529b1661cL };
+
+  private long s0;
+  private long s1;
+  private long s2;
+  private long s3;
+
+  /**
+   * Constructor.
+   *
+   * @param seed long
+   */
+  public Xoshiro256PlusPlusStream(long seed) {
+    long x = seed;
+    x += 0x9e3779b97f4a7c15L;
+    s0 = splitMix(x);
+    x += 0x9e3779b97f4a7c15L;
+    s1 = splitMix(x);
+    x += 0x9e3779b97f4a7c15L;
+    s2 = splitMix(x);
+    x += 0x9e3779b97f4a7c15L;
+    s3 = splitMix(x);
+  }
+
+  /**
+   * Constructor: start from the given state, which must not be all zero.
+   *
+   * @param s0 long
+   * @param s1 long
+   * @param s2 long
+   * @param s3 long
+   */
+  Xoshiro256PlusPlusStream(long s0, long s1, long s2, long s3) {
+    this.s0 = s0;
+    this.s1 = s1;
+    this.s2 = s2;
+    this.s3 = s3;
+  }
+
+  /**
+   * splitMix: the SplitMix64 output function.
+   *
+   * @return long
+   * @param z long
+   */
+  static long splitMix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  public long nextLong() {
+    final long result = Long.rotateLeft(s0 + s3, 23) + s0;
+    final long t = s1 << 17;
+    s2 ^= s0;
+    s3 ^= s1;
+    s1 ^= s2;
+    s0 ^= s3;
+    s2 ^= t;
+    s3 = Long.rotateLeft(s3, 45);
+    return result;
+  }
+
+  /**
+   * getState: return the four words of the generator's state.
+   *
+   * @return long[]
+   */
+  long[] getState() {
+    return new long[] { s0, s1, s2, s3 };
+  }
+
+  /**
+   * jump: advance the stream by 2^128 numbers.
+   */
+  public void jump() {
+    long t0 = 0;
+    long t1 = 0;
+    long t2 = 0;
+    long t3 = 0;
+    for (long word : JUMP)
+      for (int b = 0; b < 64; b++) {
+        if ((word & (1L << b)) != 0) {
+          t0 ^= s0;
+          t1 ^= s1;
+          t2 ^= s2;
+          t3 ^= s3;
+        }
+        nextLong();
+      }
+    s0 = t0;
+    s1 = t1;
+    s2 = t2;
+    s3 = t3;
+  }
+
+  public void writeState(DataOutput out) throws IOException {
+    out.writeLong(s0);
+    out.writeLong(s1);
+    out.writeLong(s2);
+    out.writeLong(s3);
+  }
+
+  public void readState(DataInput in) throws IOException {
+    s0 = in.readLong();
+    s1 = in.readLong();
+    s2 = in.readLong();
+    s3 = in.readLong();
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * ZigguratRandomStream: a RandomStream built on a generator of 64-bit words,
+ * drawing normals by the ziggurat method (G. Marsaglia and W. W. Tsang,
+ * J. Stat. Software 5(8), 2000) with 128 layers.
+ *
+ * Almost every normal takes one word, a table lookup and a multiplication;
+ * no logarithms, square roots or synchronization. Unlike the original code,
+ * which took the layer and the value from the same 32 bits, the layer comes
+ * from the low bits of the word and the value from its high 32 bits.
+ * Exponentials are drawn by inversion, one uniform and one logarithm each,
+ * so that an antithetic twin (see AntitheticRandomStream) can mirror them.
+ */
+
+abstract class ZigguratRandomStream implements RandomStream {
+  private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+  // normal: 128 layers, rightmost layer at NORMAL_R
+  private static final double NORMAL_R = 3.442619855899;
+  private static final double[] KN = new double[128];
+  private static final double[] WN = new double[128];
+  private static final double[] FN = new double[128];
+
+  static {
+    final double m1 = 2147483648.0; // 2^31
+    final double vn = 9.91256303526217e-3;
+    double dn = NORMAL_R;
+    double tn = dn;
+    double q = vn / Math.exp(-0.5 * dn * dn);
+    KN[0] = (dn / q) * m1;
+    KN[1] = 0;
+    WN[0] = q / m1;
+    WN[127] = dn / m1;
+    FN[0] = 1.0;
+    FN[127] = Math.exp(-0.5 * dn * dn);
+    for (int i = 126; i >= 1; i--) {
+      dn = Math.sqrt(-2.0 * Math.log(vn / dn + Math.exp(-0.5 * dn * dn)));
+      KN[i + 1] = (dn / tn) * m1;
+      tn = dn;
+      FN[i] = Math.exp(-0.5 * dn * dn);
+      WN[i] = dn / m1;
+    }
+  }
+
+  /**
+   * nextLong: return the generator's next 64 random bits.
+   *
+   * @return long
+   */
+  public abstract long nextLong();
+
+  /**
+   * nextDouble: return the top 53 bits of the next word as a double in
+   * [0, 1).
+   *
+   * @return double
+   */
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  /**
+   * nextOpenDouble: return a uniform random number in (0, 1], safe to take
+   * the logarithm of.
+   *
+   * @return double
+   */
+  private double nextOpenDouble() {
+    return 1.0 - nextDouble();
+  }
+
+  public double nextGaussian() {
+    while (true) {
+      final long bits = nextLong();
+      final int i = (int) bits & 127;
+      final long hz = (int) (bits >>> 32);
+      final double x = hz * WN[i];
+      if (Math.abs(hz) < KN[i])
+        return x; // inside the layer's rectangle
+      if (i == 0) {
+        // the tail beyond NORMAL_R
+        double t;
+        double y;
+        do {
+          t = -Math.log(nextOpenDouble()) / NORMAL_R;
+          y = -Math.log(nextOpenDouble());
+        } while (y + y < t * t);
+        return hz > 0 ? NORMAL_R + t : -NORMAL_R - t;
+      }
+      // the wedge between the rectangle and the curve
+      if (FN[i] + nextDouble() * (FN[i - 1] - FN[i]) < Math.exp(-0.5 * x * x))
+        return x;
+    }
+  }
+
+  /**
+   * nextExponential: return -log(1 - u) for the next uniform u.
+   *
+   * @return double
+   */
+  public double nextExponential() {
+    return -Math.log(nextOpenDouble());
+  }
+}
@@ -0,0 +1,51 @@
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+public class AllocationTest {
+
+  /**
+   * Measure the bytes allocated by the calling thread per event once the
+   * run has reached steady state.
+   */
+  private static double bytesPerEvent(String eventListKind, String carQueueKind) {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 1e12;
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.eventListKind = eventListKind;
+    params.carQueueKind = carQueueKind;
+    SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+        new PrintStream(new OutputStream() {
+          public void write(int b) {
+          }
+        }));
+    ctx.start();
+    for (int i = 0; i < 200000; i++) // warm up: fill the pools, let the JIT settle
+      ctx.step();
+
+    final long thread = Thread.currentThread().getId();
+    final int events = 1000000;
+    final long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < events; i++)
+      ctx.step();
+    return (threads.getThreadAllocatedBytes(thread) - before) / (double) events;
+  }
+
+  @Test
+  public void testSteadyStateDoesNotAllocate() {
+    for (String kind : EventList.KINDS)
+      assertTrue(kind, bytesPerEvent(kind, CarQueue.DEFAULT_KIND) < 0.5);
+    for (String kind : CarQueue.KINDS)
+      assertTrue(kind, bytesPerEvent(EventList.DEFAULT_KIND, kind) < 0.5);
+  }
+}
@@ -0,0 +1,138 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Random;
+
+public class ArrivalProfileTest {
+
+  private static final double DAY = 86400;
+
+  private static RandomStream stream(int seed) {
+    return RandomStreams.create("splittable", new SeedSet(seed, 2, 3, 4), seed, RandomStreams.ARRIVAL);
+  }
+
+  // arrivals in [from, to) over the given number of days
+  private static int[] countByHour(ArrivalProfile profile, int days, int seed) {
+    RandomStream stream = stream(seed);
+    int[] counts = new int[24];
+    for (double t = profile.nextArrival(0, stream); t < days * DAY; t = profile.nextArrival(t, stream))
+      counts[(int) (t % DAY / 3600)]++;
+    return counts;
+  }
+
+  @Test
+  public void testPiecewiseConstantDay() {
+    // closed until 6, 60 cars an hour until 18, 20 until midnight
+    ArrivalProfile profile = new ArrivalProfile(false, new double[] { 0, 6 * 3600, 18 * 3600 },
+        new double[] { 0, 60, 20 }, DAY);
+    int[] counts = countByHour(profile, 100, 1);
+    for (int h = 0; h < 24; h++) {
+      final double expected = 100 * (h < 6 ? 0 : h < 18 ? 60 : 20);
+      assertEquals("hour " + h, expected, counts[h], 4 * Math.sqrt(expected) + 1e-9);
+    }
+    assertEquals(60.0 / 3600, profile.rateAt(3 * DAY + 12 * 3600), 0);
+    assertEquals(0, profile.rateAt(-DAY + 3600), 0);
+  }
+
+  @Test
+  public void testPiecewiseLinearDay() {
+    // up from 0 at midnight to 120 at noon, and back down by midnight
+    ArrivalProfile profile = new ArrivalProfile(true, new double[] { 0, 12 * 3600 }, new double[] { 0, 120 }, DAY);
+    assertEquals(60.0 / 3600, profile.rateAt(6 * 3600), 1e-12);
+    assertEquals(60.0 / 3600, profile.rateAt(18 * 3600), 1e-12);
+    int[] counts = countByHour(profile, 100, 2);
+    for (int h = 0; h < 24; h++) {
+      final double expected = 100 * 120 * (h < 12 ? h + 0.5 : 23.5 - h) / 12;
+      assertEquals("hour " + h, expected, counts[h], 4 * Math.sqrt(expected));
+    }
+  }
+
+  @Test
+  public void testWithoutPeriodLastRateHolds() {
+    ArrivalProfile profile = new ArrivalProfile(true, new double[] { 0, 3600 }, new double[] { 0, 36 },
+        Double.POSITIVE_INFINITY);
+    assertEquals(0.01, profile.rateAt(1e7), 0);
+    RandomStream stream = stream(3);
+    int n = 0;
+    for (double t = profile.nextArrival(3600, stream); t < 3600 + 1e6; t = profile.nextArrival(t, stream))
+      n++;
+    assertEquals(10000, n, 400);
+
+    ArrivalProfile closed = new ArrivalProfile(false, new double[] { 0, 60 }, new double[] { 30, 0 },
+        Double.POSITIVE_INFINITY);
+    double last = 0;
+    for (double t = closed.nextArrival(0, stream); !Double.isInfinite(t); t = closed.nextArrival(t, stream))
+      last = t;
+    assertTrue(last < 60);
+  }
+
+  @Test
+  public void testIndexedLookupMatchesSearch() {
+    Random random = new Random(7);
+    double[] times = new double[300];
+    double[] rates = new double[times.length];
+    for (int i = 1; i < times.length; i++)
+      times[i] = times[i - 1] + 1 + random.nextInt(i % 7 == 0 ? 5000 : 50);
+    for (int i = 0; i < rates.length; i++)
+      rates[i] = random.nextInt(100);
+    ArrivalProfile profile = new ArrivalProfile(false, times, rates, times[times.length - 1] + 10);
+    for (int k = 0; k < 100000; k++) {
+      final double t = random.nextDouble() * (times[times.length - 1] + 10);
+      int s = times.length - 1;
+      while (times[s] > t)
+        s--;
+      assertEquals(rates[s] / 3600, profile.rateAt(t), 0);
+    }
+  }
+
+  @Test
+  public void testParse() throws IOException {
+    String text = "# a weekday\nlinear\nperiod 86400\n\n0 10   # night\n43200 100\n";
+    ArrivalProfile profile = ArrivalProfile.parse(new BufferedReader(new StringReader(text)), "test");
+    assertEquals(55.0 / 3600, profile.rateAt(21600), 1e-12);
+    try {
+      ArrivalProfile.parse(new BufferedReader(new StringReader("0 10\n5 five\n")), "bad");
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("bad:2:"));
+    }
+    try {
+      ArrivalProfile.parse(new BufferedReader(new StringReader("10 10\n")), "late");
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("late: "));
+    }
+  }
+
+  @Test
+  public void testCheckpointKeepsProfile() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 2 * DAY;
+    params.numPumps = 3;
+    params.arrivalProfile = new ArrivalProfile(true, new double[] { 0, 8 * 3600, 17 * 3600 },
+        new double[] { 5, 150, 60 }, DAY);
+    ReplicationSummary whole = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+
+    File file = File.createTempFile("profile", ".ckpt");
+    file.deleteOnExit();
+    SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+        new PrintStream(new ByteArrayOutputStream()));
+    ctx.start();
+    ctx.runUntil(DAY);
+    Checkpoint.save(ctx, file.getPath());
+    Checkpoint checkpoint = Checkpoint.load(file.getPath());
+    assertNotNull(checkpoint.getParameters().arrivalProfile);
+    SimulationContext resumed = checkpoint.restore(checkpoint.getParameters(), null,
+        new PrintStream(new ByteArrayOutputStream()));
+    ReplicationSummary rest = resumed.resume().summarize();
+    assertEquals(whole.totalArrivals, rest.totalArrivals);
+    assertEquals(whole.averageWait, rest.averageWait, 0);
+  }
+}
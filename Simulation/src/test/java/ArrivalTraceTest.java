@@ -0,0 +1,206 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ArrivalTraceTest {
+
+  private static File write(String text) throws IOException {
+    File file = File.createTempFile("arrivals", ".csv");
+    file.deleteOnExit();
+    try (FileWriter out = new FileWriter(file)) {
+      out.write(text);
+    }
+    return file;
+  }
+
+  // n arrivals about 30 s apart, with the litres as text
+  private static File trace(int n, long seed, String[] litres) throws IOException {
+    Random random = new Random(seed);
+    File file = File.createTempFile("arrivals", ".csv");
+    file.deleteOnExit();
+    try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+      out.println("pump,litres,time");
+      double t = 0;
+      for (int i = 0; i < n; i++) {
+        t += Math.round(random.nextDouble() * 60000) / 1000.0;
+        litres[i] = Double.toString(10 + 50 * random.nextDouble());
+        out.print(i % 3 + ", " + litres[i] + "," + t + (i % 2 == 0 ? "\r\n" : "\n"));
+        if (i % 1000 == 999)
+          out.println();
+      }
+    }
+    return file;
+  }
+
+  @Test
+  public void testReadsEveryRecord() throws IOException {
+    String[] litres = new String[20000];
+    File file = trace(litres.length, 1, litres);
+    long middle = -1;
+    double middleTime = 0;
+    try (ArrivalTrace trace = new ArrivalTrace(file.getPath())) {
+      double last = 0;
+      for (int i = 0; i < litres.length; i++) {
+        assertTrue(trace.hasRecord());
+        assertEquals(Double.parseDouble(litres[i]), trace.litres(), 0);
+        assertTrue(trace.time() >= last);
+        last = trace.time();
+        if (i == 12345) {
+          middle = trace.position();
+          middleTime = trace.time();
+        }
+        trace.advance();
+      }
+      assertFalse(trace.hasRecord());
+      assertEquals(file.length(), trace.position());
+
+      trace.seek(middle);
+      assertEquals(middleTime, trace.time(), 0);
+      assertEquals(Double.parseDouble(litres[12345]), trace.litres(), 0);
+    }
+  }
+
+  @Test
+  public void testNumbersParseAsJavaDoes() throws IOException {
+    Random random = new Random(2);
+    StringBuilder text = new StringBuilder();
+    String[] values = new String[5000];
+    for (int i = 0; i < values.length; i++) {
+      final int kind = i % 4;
+      values[i] = kind == 0 ? Double.toString(random.nextDouble() * 100)
+          : kind == 1 ? String.format("%.3f", random.nextDouble() * 1000)
+          : kind == 2 ? Integer.toString(random.nextInt(100)) : (random.nextInt(900) + 1) + "e-2";
+      text.append(i).append(',').append(values[i]).append('\n');
+    }
+    try (ArrivalTrace trace = new ArrivalTrace(write(text.toString()).getPath())) {
+      for (String v : values) {
+        assertEquals(v, Double.parseDouble(v), trace.litres(), 0);
+        trace.advance();
+      }
+    }
+  }
+
+  @Test
+  public void testTimesOutOfOrderRejected() throws IOException {
+    try (ArrivalTrace trace = new ArrivalTrace(write("time,litres\n5,20\n3,20\n").getPath())) {
+      trace.hasRecord();
+      fail();
+    } catch (UncheckedIOException e) {
+      assertTrue(e.getCause().getMessage().contains("out of order"));
+    }
+  }
+
+  private static SimulationParameters params(String path) {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 200000;
+    params.numPumps = 2;
+    params.arrivalTracePath = path;
+    return params;
+  }
+
+  @Test
+  public void testRunFollowsTrace() throws IOException {
+    String[] litres = new String[10000];
+    File file = trace(litres.length, 3, litres);
+    int due = 0;
+    try (ArrivalTrace trace = new ArrivalTrace(file.getPath())) {
+      for (; trace.hasRecord() && trace.time() < 200000; trace.advance())
+        due++;
+    }
+    ReplicationSummary a = SimulationContext.replicate(params(file.getPath()), new SeedSet(1, 2, 3, 4));
+    ReplicationSummary b = SimulationContext.replicate(params(file.getPath()), new SeedSet(9, 9, 9, 9));
+    assertEquals(due, a.totalArrivals);
+    assertEquals(due, b.totalArrivals);
+
+    File checkpoint = File.createTempFile("arrivals", ".ckpt");
+    checkpoint.deleteOnExit();
+    SimulationContext ctx = new SimulationContext(params(file.getPath()), new SeedSet(1, 2, 3, 4),
+        new PrintStream(new ByteArrayOutputStream()));
+    ctx.start();
+    ctx.runUntil(100000);
+    Checkpoint.save(ctx, checkpoint.getPath());
+    ctx.close();
+    SimulationContext resumed = Checkpoint.load(checkpoint.getPath()).restore(params(file.getPath()), null,
+        new PrintStream(new ByteArrayOutputStream()));
+    ReplicationSummary rest = resumed.resume().summarize();
+    assertEquals(a.totalArrivals, rest.totalArrivals);
+    assertEquals(a.customersServed, rest.customersServed);
+    assertEquals(a.averageWait, rest.averageWait, 0);
+  }
+
+  // the service time of each car served, by its litres, as the run goes
+  private static Map<Double, Double> serviceTimes(String path, int pumps) {
+    final Map<Double, Double> served = new HashMap<Double, Double>();
+    final double[] startOf = new double[pumps];
+    final double[] litresAt = new double[pumps];
+    SimulationParameters params = params(path);
+    params.numPumps = pumps;
+    params.commonRandomNumbers = true;
+    SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+        new PrintStream(new ByteArrayOutputStream()));
+    ctx.trace = (time, type, pump, queueLength, busyPumps, litres) -> {
+      if (type == TraceRecorder.START_SERVICE) {
+        startOf[pump] = time;
+        litresAt[pump] = litres;
+      } else if (type == TraceRecorder.DEPARTURE)
+        served.put(litresAt[pump], time - startOf[pump]);
+    };
+    ctx.run();
+    ctx.close();
+    return served;
+  }
+
+  @Test
+  public void testCommonRandomNumbersWithTrace() throws IOException {
+    String[] litres = new String[10000];
+    File file = trace(litres.length, 5, litres);
+    Map<Double, Double> few = serviceTimes(file.getPath(), 1);
+    Map<Double, Double> many = serviceTimes(file.getPath(), 6);
+    assertTrue(few.size() < many.size()); // one pump turns cars away
+    int common = 0;
+    for (Map.Entry<Double, Double> car : few.entrySet())
+      if (many.containsKey(car.getKey())) {
+        assertEquals(many.get(car.getKey()), car.getValue(), 1e-9);
+        common++;
+      }
+    assertTrue(common > 100);
+  }
+
+  // the files this process has open, where the system says
+  private static int openFiles() {
+    String[] fds = new File("/proc/self/fd").list();
+    return fds == null ? -1 : fds.length;
+  }
+
+  @Test
+  public void testNetworksCloseTheirTraces() throws Exception {
+    assumeTrue(openFiles() >= 0);
+    String[] litres = new String[2000];
+    File file = trace(litres.length, 4, litres);
+    SimulationParameters[] stations = new SimulationParameters[3];
+    for (int i = 0; i < stations.length; i++) {
+      stations[i] = params(file.getPath());
+      stations[i].endingTime = 50000;
+      stations[i].numPumps = 1;
+    }
+    double[][] travel = { { 0, 100, 200 }, { 100, 0, 100 }, { 200, 100, 0 } };
+    StationNetwork network = new StationNetwork(stations, travel, 2, 3);
+    SeedSet[] seeds = SeedSet.fromMaster(7, 3);
+    final int before = openFiles();
+    StationNetwork.Outcome o = network.run(seeds);
+    assertEquals(before, openFiles());
+    assertTrue(o.stations[0].totalArrivals > 0);
+  }
+}
@@ -0,0 +1,64 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+public class CarQueueTest {
+
+  private static SimulationContext newContext(String carQueueKind) {
+    SimulationParameters params = new SimulationParameters();
+    params.carQueueKind = carQueueKind;
+    return new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(new OutputStream() {
+      public void write(int b) {
+      }
+    }));
+  }
+
+  @Test
+  public void testStoresKeepCarsInOrderThroughGrowthAndShrinkage() {
+    for (String kind : CarQueue.KINDS) {
+      SimulationContext ctx = newContext(kind);
+      Random random = new Random(5);
+      int inserted = 0;
+      int taken = 0;
+      for (int round = 0; round < 20; round++) {
+        // alternately grow the queue well past its initial capacity and drain it
+        int n = random.nextInt(round % 2 == 0 ? 1000 : 50);
+        for (int i = 0; i < n; i++) {
+          Car car = ctx.newCar(inserted, inserted + 0.5);
+          inserted++;
+          ctx.carQueue.insert(car);
+        }
+        int m = random.nextInt(ctx.carQueue.getQueueSize() + 1);
+        for (int i = 0; i < m; i++) {
+          Car car = ctx.carQueue.takeFirstCar();
+          assertEquals(kind, taken, car.getArrivalTime(), 0);
+          assertEquals(kind, taken + 0.5, car.getLitresNeeded(), 0);
+          taken++;
+          ctx.recycleCar(car);
+        }
+        assertEquals(kind, inserted - taken, ctx.carQueue.getQueueSize());
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyTimeIsTheSameForEveryStore() {
+    for (String kind : CarQueue.KINDS) {
+      SimulationContext ctx = newContext(kind);
+      ctx.simulationTime = 10;
+      ctx.carQueue.insert(ctx.newCar(10, 20));
+      ctx.simulationTime = 15;
+      ctx.carQueue.insert(ctx.newCar(15, 20));
+      assertEquals(kind, 10, ctx.carQueue.getEmptyTime(), 0);
+      ctx.simulationTime = 30;
+      ctx.carQueue.takeFirstCar();
+      ctx.carQueue.takeFirstCar();
+      ctx.simulationTime = 42;
+      assertEquals(kind, 22, ctx.carQueue.getEmptyTime(), 0);
+      assertEquals(kind, 0, ctx.carQueue.getQueueSize());
+    }
+  }
+}
@@ -0,0 +1,143 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class CheckpointTest {
+
+  private static List<String> lines(ByteArrayOutputStream out) {
+    return Arrays.asList(out.toString().split("\n"));
+  }
+
+  @Test
+  public void testStreamsResumeExactly() throws Exception {
+    for (String kind : RandomStreams.KINDS)
+      for (boolean antithetic : new boolean[] { false, true }) {
+        SeedSet seeds = new SeedSet(5, 6, 7, 8, antithetic);
+        RandomStream a = RandomStreams.create(kind, seeds, seeds.service, RandomStreams.SERVICE);
+        a.nextGaussian(); // leaves a normal in hand in java.util.Random
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        a.writeState(new DataOutputStream(bytes));
+        RandomStream b = RandomStreams.create(kind, new SeedSet(1, 1, 1, 1, antithetic), 1, RandomStreams.SERVICE);
+        b.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (int i = 0; i < 1000; i++) {
+          assertEquals(kind, a.nextGaussian(), b.nextGaussian(), 0);
+          assertEquals(kind, a.nextDouble(), b.nextDouble(), 0);
+          assertEquals(kind, a.nextExponential(), b.nextExponential(), 0);
+        }
+      }
+  }
+
+  @Test
+  public void testSplittableStreamMatchesSplittableRandom() {
+    SplittableRandomStream stream = new SplittableRandomStream(12345);
+    SplittableRandom random = new SplittableRandom(12345);
+    for (int i = 0; i < 1000; i++)
+      assertEquals(random.nextLong(), stream.nextLong());
+  }
+
+  @Test
+  public void testRestoredRunContinuesExactly() throws Exception {
+    File file = File.createTempFile("checkpoint", ".bin");
+    try {
+      for (boolean crn : new boolean[] { false, true }) {
+        SimulationParameters params = new SimulationParameters();
+        params.reportInterval = 5000;
+        params.endingTime = 100000;
+        params.numPumps = 2;
+        params.commonRandomNumbers = crn;
+        params.reportDistributions = true;
+        params.reportTimeAverages = true;
+        params.detectWarmup = true;
+        params.carQueueKind = "ring";
+        params.checkpointPath = file.getPath();
+        params.checkpointEvery = 7; // the last checkpoint is at 70000
+        ByteArrayOutputStream full = new ByteArrayOutputStream();
+        new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(full)).run();
+
+        Checkpoint checkpoint = Checkpoint.load(file.getPath());
+        assertEquals(70000, checkpoint.getTime(), 0);
+        assertEquals(new SeedSet(1, 2, 3, 4), checkpoint.getSeeds());
+        assertFalse(new File(file.getPath() + ".part").exists());
+
+        // The restored run may keep its events and cars differently.
+        for (String eventList : EventList.KINDS) {
+          SimulationParameters p = checkpoint.getParameters();
+          p.eventListKind = eventList;
+          p.carQueueKind = "linked";
+          p.checkpointPath = null;
+          ByteArrayOutputStream rest = new ByteArrayOutputStream();
+          SimulationContext ctx = checkpoint.restore(p, null, new PrintStream(rest));
+          assertEquals(70000, ctx.simulationTime, 0);
+          ctx.resume();
+
+          List<String> expected = lines(full);
+          List<String> actual = lines(rest);
+          assertEquals(expected.subList(0, 3), actual.subList(0, 3)); // headers
+          assertEquals(expected.subList(expected.size() - (actual.size() - 3), expected.size()),
+              actual.subList(3, actual.size()));
+          assertTrue(actual.get(3).startsWith("   75000"));
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testForksShareThePastButNotTheFuture() throws Exception {
+    File file = File.createTempFile("checkpoint", ".bin");
+    try {
+      SimulationParameters params = new SimulationParameters();
+      params.reportInterval = 50000;
+      params.endingTime = 100000;
+      params.checkpointPath = file.getPath();
+      SimulationContext original = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+          new PrintStream(new ByteArrayOutputStream()));
+      original.run();
+
+      Checkpoint checkpoint = Checkpoint.load(file.getPath());
+      SimulationParameters p = checkpoint.getParameters();
+      p.endingTime = 300000;
+      SeedSet[] seeds = SeedSet.fromMaster(9, 2);
+      ReplicationSummary a = checkpoint.replicate(p, seeds[0]);
+      ReplicationSummary b = checkpoint.replicate(p, seeds[1]);
+      ReplicationSummary again = checkpoint.replicate(p, seeds[0]);
+      assertEquals(a.totalProfit, again.totalProfit, 0);
+      assertTrue(a.totalProfit != b.totalProfit);
+      assertEquals(300000, a.simulatedTime, 0);
+
+      // Both forks start from the state the original had at the checkpoint.
+      SimulationContext fork = checkpoint.restore(p, seeds[1], new PrintStream(new ByteArrayOutputStream()));
+      ReplicationSummary atFork = fork.stats.summarize();
+      assertEquals(50000, atFork.simulatedTime, 0);
+      assertTrue(a.totalArrivals > atFork.totalArrivals && b.totalArrivals > atFork.totalArrivals);
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPumpsMustMatch() throws Exception {
+    File file = File.createTempFile("checkpoint", ".bin");
+    try {
+      SimulationParameters params = new SimulationParameters();
+      params.checkpointPath = file.getPath();
+      params.reportInterval = 20000;
+      new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(new ByteArrayOutputStream())).run();
+      SimulationParameters p = Checkpoint.load(file.getPath()).getParameters();
+      p.numPumps++;
+      Checkpoint.load(file.getPath()).restore(p, null, new PrintStream(new ByteArrayOutputStream()));
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Random;
+
+public class DispatchTest {
+
+  private static SimulationParameters params(String kind, int numPumps) {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 50000;
+    params.numPumps = numPumps;
+    params.meanInterarrivalTime = 20;
+    params.dispatchKind = kind;
+    return params;
+  }
+
+  private static SimulationContext context(SimulationParameters params, SeedSet seeds) {
+    return new SimulationContext(params, seeds, new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  // every car that stayed is being served, waiting, or has left
+  private static void assertCarsConserved(SimulationContext ctx) {
+    final Statistics s = ctx.stats;
+    final ReplicationSummary r = s.summarize();
+    assertEquals(r.totalArrivals - r.balkingCustomers,
+        r.customersServed + ctx.carQueue.getQueueSize() + ctx.pumpStand.getNumberBusy());
+  }
+
+  @Test
+  public void testSharedIsTheOriginalStation() {
+    assertEquals("shared", new SimulationParameters().dispatchKind);
+    SimulationParameters params = params("shared", 3);
+    ReplicationSummary a = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+    params.pumpSpeeds = new double[] { 1 };
+    ReplicationSummary b = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+    assertEquals(a.customersServed, b.customersServed);
+    assertEquals(a.totalProfit, b.totalProfit, 0);
+    assertEquals(a.averageWait, b.averageWait, 0);
+  }
+
+  @Test
+  public void testCarsConservedInEveryKind() {
+    for (String kind : Dispatcher.KINDS) {
+      SimulationParameters params = params(kind, 4);
+      params.pumpSpeeds = new double[] { 1, 2, 0.5 };
+      if (!kind.equals("shared")) {
+        params.fuelMix = new double[] { 3, 1 };
+        params.pumpFuels = new int[] { 3, 1, 1 };
+      }
+      SimulationContext ctx = context(params, new SeedSet(5, 6, 7, 8));
+      ctx.start();
+      while (ctx.runUntil(ctx.simulationTime + 997))
+        assertCarsConserved(ctx);
+      assertTrue(ctx.stats.summarize().customersServed > 1000);
+    }
+  }
+
+  @Test
+  public void testLanesJoinTheShortest() {
+    SimulationContext ctx = context(params("lanes", 3), new SeedSet(1, 2, 3, 4));
+    Dispatcher d = ctx.dispatcher;
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, d.queueSeenBy(0));
+      d.join(ctx.newCar(0, 20), 0);
+    }
+    assertEquals(3, ctx.pumpStand.getNumberBusy());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, d.queueSeenBy(0));
+      d.join(ctx.newCar(0, 20), 0);
+    }
+    for (int p = 0; p < 3; p++)
+      assertEquals(1, ctx.carQueue.getLaneSize(p));
+    // pump 1 serves its waiting car, leaving its lane the shortest
+    d.release(ctx.pumpStand.getPump(1));
+    assertEquals(0, ctx.carQueue.getLaneSize(1));
+    assertEquals(0, d.queueSeenBy(0));
+    d.join(ctx.newCar(0, 20), 0);
+    assertEquals(1, ctx.carQueue.getLaneSize(1));
+    assertEquals(1, d.queueSeenBy(0));
+  }
+
+  @Test
+  public void testFuelsMatchPumps() {
+    SimulationParameters params = params("pooled", 3);
+    params.fuelMix = new double[] { 1, 1 };
+    params.pumpFuels = new int[] { 1, 2, 2 }; // pump 0 sells fuel 0 only
+    params.pumpSpeeds = new double[] { 1, 1, 2 };
+    SimulationContext ctx = context(params, new SeedSet(1, 2, 3, 4));
+    Dispatcher d = ctx.dispatcher;
+    d.join(ctx.newCar(0, 20), 1);
+    // the fastest pump that sells fuel 1 is taken first
+    assertFalse(ctx.pumpStand.isAvailable(ctx.pumpStand.getPump(2)));
+    d.join(ctx.newCar(0, 20), 1);
+    d.join(ctx.newCar(0, 20), 1);
+    assertEquals(1, ctx.carQueue.getLaneSize(1));
+    assertEquals(1, d.queueSeenBy(1));
+    assertEquals(0, d.queueSeenBy(0));
+    assertTrue(ctx.pumpStand.isAvailable(ctx.pumpStand.getPump(0)));
+    // pump 0 cannot serve the car waiting for fuel 1
+    d.join(ctx.newCar(0, 20), 0);
+    d.release(ctx.pumpStand.getPump(0));
+    assertEquals(1, ctx.carQueue.getLaneSize(1));
+    assertTrue(ctx.pumpStand.isAvailable(ctx.pumpStand.getPump(0)));
+    d.release(ctx.pumpStand.getPump(1));
+    assertEquals(0, ctx.carQueue.getQueueSize());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsoldFuelRejected() {
+    SimulationParameters params = params("lanes", 2);
+    params.fuelMix = new double[] { 1, 1, 1 };
+    params.pumpFuels = new int[] { 1, 2 };
+    context(params, new SeedSet(1, 2, 3, 4));
+  }
+
+  @Test
+  public void testCheckpointWithLanes() throws Exception {
+    SimulationParameters params = params("lanes", 5);
+    params.meanInterarrivalTime = 8;
+    params.pumpSpeeds = new double[] { 1, 1.5 };
+    params.fuelMix = new double[] { 2, 1 };
+    params.pumpFuels = new int[] { 3, 1 };
+    ReplicationSummary whole = SimulationContext.replicate(params, new SeedSet(9, 8, 7, 6));
+
+    File file = File.createTempFile("dispatch", ".ckpt");
+    file.deleteOnExit();
+    SimulationContext ctx = context(params, new SeedSet(9, 8, 7, 6));
+    ctx.start();
+    ctx.runUntil(20000);
+    assertTrue(ctx.carQueue.getQueueSize() > 0);
+    Checkpoint.save(ctx, file.getPath());
+    SimulationContext resumed = Checkpoint.load(file.getPath()).restore(params, null,
+        new PrintStream(new ByteArrayOutputStream()));
+    ReplicationSummary rest = resumed.resume().summarize();
+    assertEquals(whole.customersServed, rest.customersServed);
+    assertEquals(whole.balkingCustomers, rest.balkingCustomers);
+    assertEquals(whole.averageWait, rest.averageWait, 0);
+  }
+
+  @Test
+  public void testIndexedHeap() {
+    final double[] key = new double[200];
+    IndexedHeap heap = new IndexedHeap(key.length) {
+      protected boolean before(int a, int b) {
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+      }
+    };
+    Random random = new Random(42);
+    for (int step = 0; step < 20000; step++) {
+      final int id = random.nextInt(key.length);
+      final int op = random.nextInt(3);
+      if (op == 0 && !heap.contains(id)) {
+        key[id] = random.nextInt(50);
+        heap.add(id);
+      } else if (op == 1)
+        heap.remove(id);
+      else if (heap.contains(id)) {
+        key[id] = random.nextInt(50);
+        heap.update(id);
+      }
+      int least = -1, size = 0;
+      for (int i = 0; i < key.length; i++)
+        if (heap.contains(i)) {
+          size++;
+          if (least < 0 || key[i] < key[least])
+            least = i;
+        }
+      assertEquals(size, heap.size());
+      assertEquals(least, heap.peek());
+    }
+  }
+}
@@ -0,0 +1,151 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class EventListTest {
+
+  // a do-nothing event; each list gets its own copy, since the list-based
+  // event sets link events through the events themselves
+  private static class Probe extends Event {
+    final int id;
+    boolean pending; // on the lists
+
+    Probe(int id, double time) {
+      super(time);
+      this.id = id;
+    }
+
+    public void makeItHappen(SimulationContext ctx) {
+    }
+  }
+
+  /**
+   * Drive an event list of the given kind and the reference linked list with
+   * the same hold-model workload, and check they hand out the same events.
+   */
+  private void checkAgainstReference(String kind, boolean coarseTimes) {
+    EventList reference = new EventList("list");
+    EventList candidate = new EventList(kind);
+    Random random = new Random(42);
+    List<Probe> probes = new ArrayList<Probe>(); // reference copies
+    List<Probe> twins = new ArrayList<Probe>(); // candidate copies
+    double now;
+
+    for (int i = 0; i < 2000; i++) {
+      double time = coarseTimes ? Math.floor(random.nextDouble() * 10) : random.nextDouble() * 500;
+      Probe p = new Probe(i, time);
+      Probe twin = new Probe(i, time);
+      p.pending = true;
+      probes.add(p);
+      twins.add(twin);
+      reference.insert(p);
+      candidate.insert(twin);
+    }
+    for (int step = 0; step < 20000; step++) {
+      Probe expected = (Probe) reference.takeNextEvent();
+      assertEquals(kind + " at step " + step, expected.id, ((Probe) candidate.takeNextEvent()).id);
+      expected.pending = false;
+      now = expected.getTime();
+      int inserts = random.nextInt(3); // let the set grow and shrink
+      for (int i = 0; i < inserts; i++) {
+        int id = random.nextInt(probes.size());
+        Probe p = probes.get(id);
+        if (p.pending)
+          continue;
+        p.pending = true;
+        p.setTime(now + (coarseTimes ? Math.floor(random.nextDouble() * 10) : -Math.log(random.nextDouble()) * 100));
+        twins.get(id).setTime(p.getTime());
+        reference.insert(p);
+        candidate.insert(twins.get(id));
+      }
+      assertEquals(reference.size(), candidate.size());
+      if (reference.size() == 0)
+        break;
+    }
+    while (reference.size() > 0)
+      assertEquals(kind, ((Probe) reference.takeNextEvent()).id, ((Probe) candidate.takeNextEvent()).id);
+    assertEquals(0, candidate.size());
+  }
+
+  @Test
+  public void testHeapMatchesLinkedList() {
+    checkAgainstReference("heap", false);
+    checkAgainstReference("heap", true);
+  }
+
+  @Test
+  public void testCalendarQueueMatchesLinkedList() {
+    checkAgainstReference("calendar", false);
+    checkAgainstReference("calendar", true);
+  }
+
+  @Test
+  public void testLadderQueueMatchesLinkedList() {
+    checkAgainstReference("ladder", false);
+    checkAgainstReference("ladder", true);
+  }
+
+  @Test
+  public void testFarFutureEvent() {
+    // A run starts with its first arrival and its end alone on the list,
+    // and the list then fills up well short of the end.
+    for (String kind : EventList.KINDS) {
+      EventList reference = new EventList("list");
+      EventList candidate = new EventList(kind);
+      Random random = new Random(7);
+      int id = 0;
+      reference.insert(new Probe(-1, 1e9));
+      candidate.insert(new Probe(-1, 1e9));
+      reference.insert(new Probe(id, 0));
+      candidate.insert(new Probe(id++, 0));
+      for (int step = 0; step < 20000; step++) {
+        Event expected = reference.takeNextEvent();
+        assertEquals(kind + " at step " + step, ((Probe) expected).id, ((Probe) candidate.takeNextEvent()).id);
+        final int inserts = reference.size() < 1000 ? 2 : 1;
+        for (int i = 0; i < inserts; i++) {
+          final double time = expected.getTime() + random.nextDouble() * (i == 0 ? 100 : 0.01);
+          reference.insert(new Probe(id, time));
+          candidate.insert(new Probe(id++, time));
+        }
+      }
+      while (reference.size() > 0)
+        assertEquals(kind, ((Probe) reference.takeNextEvent()).id, ((Probe) candidate.takeNextEvent()).id);
+      assertEquals(0, candidate.size());
+    }
+  }
+
+  @Test
+  public void testTiesAreFirstInFirstOut() {
+    for (String kind : EventList.KINDS) {
+      EventList list = new EventList(kind);
+      Event[] events = new Event[100];
+      for (int i = 0; i < events.length; i++) {
+        events[i] = new Probe(i, 7.0);
+        list.insert(events[i]);
+      }
+      for (int i = 0; i < events.length; i++)
+        assertSame(kind, events[i], list.takeNextEvent());
+    }
+  }
+
+  @Test
+  public void testPeekingKeepsTiesInOrder() {
+    for (String kind : EventList.KINDS) {
+      EventList list = new EventList(kind);
+      Event[] events = new Event[100];
+      for (int i = 0; i < events.length; i++) {
+        events[i] = new Probe(i, i / 10);
+        list.insert(events[i]);
+      }
+      for (int i = 0; i < events.length; i++) {
+        assertEquals(kind, i / 10, list.nextEventTime(), 0);
+        assertEquals(kind, events.length - i, list.size());
+        assertSame(kind, events[i], list.takeNextEvent());
+      }
+      assertEquals(Double.POSITIVE_INFINITY, list.nextEventTime(), 0);
+    }
+  }
+}
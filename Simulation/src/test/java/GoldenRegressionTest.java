@@ -0,0 +1,66 @@
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+
+public class GoldenRegressionTest {
+  private static Map<String, String> outputs;
+  private static Map<String, String> hashes;
+
+  @BeforeClass
+  public static void readGoldenFiles() throws Exception {
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        GoldenRegressionTest.class.getResourceAsStream("/golden/" + GoldenRegression.OUTPUTS)))) {
+      outputs = GoldenRegression.readOutputs(in);
+    }
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+        GoldenRegressionTest.class.getResourceAsStream("/golden/" + GoldenRegression.HASHES)))) {
+      hashes = GoldenRegression.readHashes(in);
+    }
+  }
+
+  @Test
+  public void testGoldenFilesCoverTheMatrix() {
+    assertEquals(GoldenRegression.cases().size(), outputs.size());
+    assertEquals(GoldenRegression.cases().size() + GoldenRegression.longCases().size(), hashes.size());
+  }
+
+  @Test
+  public void testEveryEventListAndCarQueueMatchesGolden() {
+    for (String eventList : EventList.KINDS)
+      for (String carQueue : CarQueue.KINDS) {
+        List<String> failures = GoldenRegression.verify(outputs, hashes, eventList, carQueue, false);
+        assertTrue(eventList + "/" + carQueue + ": " + String.join("\n", failures), failures.isEmpty());
+      }
+  }
+
+  @Test
+  public void testLongRunHashesMatchGolden() {
+    List<String> failures = GoldenRegression.verify(outputs, hashes, EventList.DEFAULT_KIND,
+        CarQueue.DEFAULT_KIND, true);
+    assertTrue(String.join("\n", failures), failures.isEmpty());
+  }
+
+  @Test
+  public void testHashLocatesDivergence() {
+    TraceHash a = new TraceHash(100);
+    TraceHash b = new TraceHash(100);
+    for (int i = 0; i < 1000; i++) {
+      a.record(i, TraceRecorder.ARRIVAL, -1, i % 7, 1, 20);
+      b.record(i, TraceRecorder.ARRIVAL, -1, i == 550 ? 0 : i % 7, 1, 20);
+    }
+    assertNotEquals(a.getHash(), b.getHash());
+    assertEquals(500, a.firstDivergence(b));
+    assertEquals(1000, a.firstDivergence(a));
+
+    // The count of records counts too.
+    TraceHash c = new TraceHash();
+    TraceHash d = new TraceHash();
+    c.record(0, TraceRecorder.END, -1, 0, 0, 0);
+    assertNotEquals(c.getHash(), d.getHash());
+  }
+}
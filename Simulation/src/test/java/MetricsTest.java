@@ -0,0 +1,85 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class MetricsTest {
+
+  private static SimulationParameters params() {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = 10000;
+    params.endingTime = 100000;
+    params.numPumps = 3;
+    return params;
+  }
+
+  private static long count(EngineMetrics metrics, String kind) {
+    int i = Arrays.asList(metrics.getEventKinds()).indexOf(kind);
+    return i < 0 ? 0 : metrics.getEventCounts()[i];
+  }
+
+  @Test
+  public void testCountsMatchTheRun() {
+    EngineMetrics metrics = new EngineMetrics();
+    ReplicationSummary summary = SimulationContext.replicate(params(), new SeedSet(1, 2, 3, 4), metrics);
+    assertEquals(summary.totalArrivals, count(metrics, "Arrival"));
+    assertEquals(summary.customersServed, count(metrics, "Departure"));
+    assertEquals(1, count(metrics, "EndOfSimulation"));
+    assertEquals(count(metrics, "Arrival") + count(metrics, "Departure") + count(metrics, "Report")
+        + 1, metrics.getEvents());
+    assertEquals(summary.maxQueueLength, metrics.getPeakQueueLength());
+    assertTrue(metrics.getPeakEventListSize() >= 2);
+  }
+
+  @Test
+  public void testSharedAcrossReplications() throws Exception {
+    EngineMetrics metrics = new EngineMetrics();
+    ReplicationRunner runner = new ReplicationRunner(params(), 4);
+    runner.setMetrics(metrics);
+    ReplicationSummary[] results = runner.run(SeedSet.fromMaster(7, 8));
+    long arrivals = 0;
+    int maxQueue = 0;
+    for (ReplicationSummary r : results) {
+      arrivals += r.totalArrivals;
+      maxQueue = Math.max(maxQueue, r.maxQueueLength);
+    }
+    assertEquals(arrivals, count(metrics, "Arrival"));
+    assertEquals(8, count(metrics, "EndOfSimulation"));
+    assertEquals(maxQueue, metrics.getPeakQueueLength());
+  }
+
+  @Test
+  public void testReportUnchangedButForMetrics() {
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    new SimulationContext(params(), new SeedSet(1, 2, 3, 4), new PrintStream(plain)).run();
+
+    ByteArrayOutputStream counted = new ByteArrayOutputStream();
+    SimulationContext ctx = new SimulationContext(params(), new SeedSet(1, 2, 3, 4), new PrintStream(counted));
+    ctx.metrics = new EngineMetrics();
+    ctx.run();
+    String text = counted.toString();
+    assertTrue(text.startsWith(plain.toString()));
+    assertTrue(text.substring(plain.size()).startsWith(" Engine: "));
+  }
+
+  @Test
+  public void testVisibleThroughJmx() throws Exception {
+    EngineMetrics metrics = new EngineMetrics();
+    metrics.register();
+    try {
+      SimulationContext.replicate(params(), new SeedSet(1, 2, 3, 4), metrics);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("Sim:type=EngineMetrics");
+      assertEquals(metrics.getEvents(), server.getAttribute(name, "Events"));
+      assertArrayEquals(metrics.getEventKinds(), (String[]) server.getAttribute(name, "EventKinds"));
+    } finally {
+      metrics.unregister();
+    }
+    assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("Sim:type=EngineMetrics")));
+  }
+}
@@ -0,0 +1,75 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class ParameterSweepTest {
+
+  @Test
+  public void testGridTakesEveryCombination() {
+    SweepDesign d = SweepDesign.grid(new String[] { "numPumps", "profit" },
+        new double[][] { { 1, 2, 3 }, { 0.02, 0.03 } });
+    assertEquals(6, d.size());
+    assertEquals(1, d.getValue(0, 0), 0);
+    assertEquals(0.03, d.getValue(1, 1), 0);
+    assertEquals(3, d.getValue(5, 0), 0);
+    SimulationParameters p = d.parameters(new SimulationParameters(), 5);
+    assertEquals(3, p.numPumps);
+    assertEquals(0.03, p.profit, 0);
+  }
+
+  @Test
+  public void testLatinHypercubeCoversEveryStratum() {
+    final int n = 10;
+    SweepDesign d = SweepDesign.latinHypercube(new String[] { "meanInterarrivalTime", "pumpCost" },
+        new double[] { 20, 0 }, new double[] { 70, 100 }, n, new Random(3));
+    for (int j = 0; j < 2; j++) {
+      boolean[] seen = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        double low = j == 0 ? 20 : 0;
+        double high = j == 0 ? 70 : 100;
+        int stratum = (int) ((d.getValue(i, j) - low) / (high - low) * n);
+        assertFalse(seen[stratum]);
+        seen[stratum] = true;
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownFactor() {
+    SweepDesign.grid(new String[] { "colour" }, new double[][] { { 1 } });
+  }
+
+  @Test
+  public void testDominatedPointsStopEarly() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 30000;
+    SweepDesign d = SweepDesign.grid(new String[] { "numPumps" }, new double[][] { { 1, 4 } });
+    ParameterSweep.Result[] r = new ParameterSweep(params, d, 2, true).run(1, 4, 16);
+    assertTrue(r[0].dropped);
+    assertEquals(4, r[0].replications);
+    assertFalse(r[1].dropped);
+    assertEquals(16, r[1].replications);
+
+    ParameterSweep.Result[] all = new ParameterSweep(params, d, 2, false).run(1, 4, 16);
+    assertEquals(16, all[0].replications);
+    // Both sweeps use the same seed sets.
+    assertEquals(r[1].profit.getMean(), all[1].profit.getMean(), 1e-9);
+  }
+
+  @Test
+  public void testDominanceIsPaired() {
+    // The profits vary a lot from seed set to seed set, but one point always
+    // earns 1 more than the other with the same seeds.
+    ParameterSweep.Result better = new ParameterSweep.Result();
+    ParameterSweep.Result worse = new ParameterSweep.Result();
+    for (int r = 0; r < 8; r++) {
+      better.add(100 * r + 1, 30, 0.5);
+      worse.add(100 * r, 30, 0.5);
+    }
+    assertTrue(better.profit.getMean() - better.profit.getHalfWidth()
+        < worse.profit.getMean() + worse.profit.getHalfWidth());
+    assertTrue(better.dominates(worse));
+    assertFalse(worse.dominates(better));
+  }
+}
@@ -0,0 +1,39 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PumpOptimizerTest {
+
+  private static SweepDesign pumps(double... counts) {
+    return SweepDesign.grid(new String[] { "numPumps" }, new double[][] { counts });
+  }
+
+  @Test
+  public void testFindsTheMostProfitablePumpCount() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 50000;
+    params.commonRandomNumbers = true;
+    SweepDesign candidates = pumps(1, 2, 4, 6, 10);
+    PumpOptimizer.Outcome o = new PumpOptimizer(params, candidates, 2, 10, 0.05, 5, 200).run(3);
+
+    assertTrue(o.resolved);
+    assertEquals(6, candidates.parameters(params, o.best).numPumps);
+    for (int i = 0; i < candidates.size(); i++) {
+      assertTrue(o.replications[i] >= 5);
+      if (i != o.best)
+        assertTrue(o.eliminatedAt[i] > 0);
+    }
+    // The clearly worse candidates go after the first stage.
+    assertEquals(5, o.replications[0]);
+  }
+
+  @Test
+  public void testStopsAtTheReplicationCap() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 20000;
+    // Two identical candidates can never be told apart with delta near 0.
+    PumpOptimizer.Outcome o = new PumpOptimizer(params, pumps(3, 3), 1, 1e-9, 0.05, 3, 6).run(1);
+    assertFalse(o.resolved);
+    assertEquals(6, o.replications[0]);
+    assertEquals(6, o.replications[1]);
+  }
+}
@@ -0,0 +1,103 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class RandomStreamTest {
+
+  @Test
+  public void testPcgMatchesReference() {
+    // pcg32_srandom_r(&rng, 42, 54) in the reference pcg32-demo
+    PcgRandomStream pcg = new PcgRandomStream(42, 54);
+    int[] expected = { 0xa15c02b7, 0x7b47f409, 0xba1d3330, 0x83d2f293, 0xbfa4784b, 0xcbed606e };
+    for (int x : expected)
+      assertEquals(x, pcg.nextInt());
+  }
+
+  @Test
+  public void testXoshiroMatchesDefinition() {
+    Xoshiro256PlusPlusStream x = new Xoshiro256PlusPlusStream(1, 2, 3, 4);
+    assertEquals(41943041L, x.nextLong()); // rotl(1 + 4, 23) + 1
+  }
+
+  @Test
+  public void testZigguratMoments() {
+    for (String kind : RandomStreams.KINDS) {
+      RandomStream s = RandomStreams.create(kind, new SeedSet(1, 2, 3, 4), 12345, RandomStreams.SERVICE);
+      RunningMoments normal = new RunningMoments();
+      RunningMoments exponential = new RunningMoments();
+      RunningMoments uniform = new RunningMoments();
+      int beyondTwo = 0;
+      final int n = 400000;
+      for (int i = 0; i < n; i++) {
+        final double z = s.nextGaussian();
+        normal.add(z);
+        if (Math.abs(z) > 2)
+          beyondTwo++;
+        exponential.add(s.nextExponential());
+        uniform.add(s.nextDouble());
+      }
+      assertEquals(kind, 0, normal.getMean(), 0.01);
+      assertEquals(kind, 1, normal.getVariance(), 0.01);
+      assertEquals(kind, 0.0455, beyondTwo / (double) n, 0.002);
+      assertEquals(kind, 1, exponential.getMean(), 0.01);
+      assertEquals(kind, 1, exponential.getVariance(), 0.02);
+      assertTrue(kind, exponential.getMin() >= 0);
+      assertEquals(kind, 0.5, uniform.getMean(), 0.005);
+      assertTrue(kind, uniform.getMin() >= 0 && uniform.getMax() < 1);
+    }
+  }
+
+  @Test
+  public void testStreamsOfARunDiffer() {
+    SeedSet same = new SeedSet(7, 7, 7, 7);
+    RandomStream a = RandomStreams.create("xoshiro", same, 7, RandomStreams.ARRIVAL);
+    RandomStream b = RandomStreams.create("xoshiro", same, 7, RandomStreams.LITRE);
+    assertNotEquals(a.nextDouble(), b.nextDouble(), 0);
+  }
+
+  @Test
+  public void testReplicationsOfAMasterSeedDoNotOverlap() throws IOException {
+    // Replication r's stream k starts 4r + k jumps into the master's sequence.
+    SeedSet[] sets = SeedSet.fromMaster(42, 3);
+    Xoshiro256PlusPlusStream root = new Xoshiro256PlusPlusStream(42);
+    for (SeedSet s : sets)
+      for (int k = 0; k < RandomStreams.STREAMS; k++) {
+        long[] state = root.getState();
+        Xoshiro256PlusPlusStream expected = new Xoshiro256PlusPlusStream(state[0], state[1], state[2], state[3]);
+        RandomStream stream = RandomStreams.create("xoshiro", s, s.arrival, k);
+        for (int i = 0; i < 10; i++)
+          assertEquals(expected.nextDouble(), stream.nextDouble(), 0);
+        root.jump();
+      }
+
+    // The substream, not the int seeds, keys the streams, and a checkpoint
+    // keeps it.
+    SeedSet typed = new SeedSet(sets[2].arrival, sets[2].litre, sets[2].balking, sets[2].service);
+    assertNotEquals(typed, sets[2]);
+    for (String kind : new String[] { "splittable", "pcg" })
+      assertNotEquals(kind, RandomStreams.create(kind, typed, typed.litre, RandomStreams.LITRE).nextDouble(),
+          RandomStreams.create(kind, sets[2], sets[2].litre, RandomStreams.LITRE).nextDouble(), 0);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sets[2].twin().write(new DataOutputStream(bytes));
+    assertEquals(sets[2].twin(), SeedSet.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+  }
+
+  @Test
+  public void testEveryKindRunsTheModel() {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 200000;
+    for (String kind : RandomStreams.KINDS) {
+      params.rngKind = kind;
+      ReplicationSummary r = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+      assertEquals(r, SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4)));
+      // one car every 50 seconds on average, within four standard deviations
+      assertEquals(kind, 4000, r.totalArrivals, 4 * Math.sqrt(4000));
+    }
+  }
+}
@@ -0,0 +1,35 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ReplicationRunnerTest {
+
+  @Test
+  public void testParallelRunsMatchSequentialRuns() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 50000;
+    SeedSet[] seeds = SeedSet.fromMaster(2024, 8);
+    ReplicationSummary[] parallel = new ReplicationRunner(params, 4).run(seeds);
+    assertEquals(seeds.length, parallel.length);
+    for (int i = 0; i < seeds.length; i++) {
+      assertEquals(seeds[i], parallel[i].seeds);
+      assertEquals(SimulationContext.replicate(params, seeds[i]), parallel[i]);
+    }
+  }
+
+  @Test
+  public void testResultsDoNotDependOnThreadCount() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 30000;
+    params.numPumps = 2;
+    SeedSet[] seeds = SeedSet.fromMaster(7, 6);
+    ReplicationSummary[] oneThread = new ReplicationRunner(params, 1).run(seeds);
+    params.eventListKind = "calendar";
+    assertArrayEquals(oneThread, new ReplicationRunner(params, 3).run(seeds));
+  }
+
+  @Test
+  public void testSeedSetsAreReproducible() {
+    assertArrayEquals(SeedSet.fromMaster(99, 5), SeedSet.fromMaster(99, 5));
+    assertFalse(SeedSet.fromMaster(99, 1)[0].equals(SeedSet.fromMaster(100, 1)[0]));
+  }
+}
@@ -0,0 +1,126 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+public class ReportSinkTest {
+
+  // Statistics.fmtDbl as it stood before the table became a sink.
+  private static String fmtDbl(double number, int width, int precision) {
+    double scale = 1;
+    for (int i = 0; i < precision; i++)
+      scale *= 10;
+    String result = "" + (int) (number * scale + 0.5);
+    if (precision > 0) {
+      for (int i = result.length(); i < precision + 1; i++)
+        result = "0" + result;
+      int insertPos = result.length() - precision;
+      result = result.substring(0, insertPos) + "." + result.substring(insertPos);
+    }
+    for (int i = result.length(); i < width; i++)
+      result = " " + result;
+    return result;
+  }
+
+  private static String fmtInt(int number, int width) {
+    String result = "" + number;
+    for (int i = result.length(); i < width; i++)
+      result = " " + result;
+    return result;
+  }
+
+  @Test
+  public void testTableMatchesStringFormatting() {
+    Random random = new Random(11);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+    TableReportSink table = new TableReportSink(out);
+    ReportRow row = new ReportRow();
+    StringBuilder expected = new StringBuilder();
+    for (int k = 0; k < 2000; k++) {
+      double scale = Math.pow(10, random.nextInt(12) - 4);
+      row.time = random.nextDouble() * scale;
+      row.totalCars = k % 50 == 0 ? 0 : random.nextInt(100000);
+      row.noQueueFraction = random.nextDouble();
+      row.carToCarTime = random.nextGaussian() * scale;
+      row.averageLitres = random.nextDouble() * 60;
+      row.numberBalked = random.nextInt(1000) - 10;
+      row.averageWait = k % 7 == 0 ? Double.NaN : random.nextGaussian() * scale;
+      row.pumpUsage = random.nextDouble();
+      row.scheduledPumpUsage = random.nextDouble();
+      row.totalProfit = random.nextGaussian() * scale;
+      row.lostProfit = -random.nextDouble();
+      table.write(row);
+
+      expected.append(fmtDbl(row.time, 8, 0)).append(fmtInt(row.totalCars, 7))
+          .append(fmtDbl(row.noQueueFraction, 8, 3));
+      if (row.totalCars > 0)
+        expected.append(fmtDbl(row.carToCarTime, 9, 3)).append(fmtDbl(row.averageLitres, 8, 3));
+      else
+        expected.append("Unknown Unknown");
+      expected.append(fmtInt(row.numberBalked, 7));
+      expected.append(Double.isNaN(row.averageWait) ? "Unknown" : fmtDbl(row.averageWait, 9, 3));
+      expected.append(fmtDbl(row.scheduledPumpUsage, 7, 3)).append(fmtDbl(row.totalProfit, 9, 2))
+          .append(fmtDbl(row.lostProfit, 7, 2)).append(System.lineSeparator());
+    }
+    out.flush();
+    assertEquals(expected.toString(), bytes.toString());
+  }
+
+  @Test
+  public void testStructuredSinksAgree() throws Exception {
+    File csv = File.createTempFile("report", ".csv");
+    File jsonl = File.createTempFile("report", ".jsonl");
+    File binary = File.createTempFile("report", ".bin");
+    try {
+      SimulationParameters params = new SimulationParameters();
+      params.reportInterval = 1000;
+      params.endingTime = 2000000; // more rows than one binary block
+      SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+          new PrintStream(new ByteArrayOutputStream()));
+      ReportSink[] sinks = { ReportSink.open("csv", csv.getPath()), ReportSink.open("jsonl", jsonl.getPath()),
+          ReportSink.open("binary", binary.getPath()) };
+      for (ReportSink s : sinks)
+        ctx.stats.addSink(s);
+      ReplicationSummary summary = ctx.run().summarize();
+      for (ReportSink s : sinks)
+        s.close();
+
+      List<String> lines = Files.readAllLines(csv.toPath());
+      List<String> objects = Files.readAllLines(jsonl.toPath());
+      double[][] columns;
+      try (FileInputStream in = new FileInputStream(binary)) {
+        columns = BinaryReportSink.read(Channels.newChannel(in));
+      }
+      final int rows = 2000; // 1999 reports, then the end of the run
+      assertEquals(rows + 1, lines.size());
+      assertEquals(String.join(",", ReportRow.COLUMNS), lines.get(0));
+      assertEquals(rows, objects.size());
+      assertEquals(ReportRow.COLUMNS.length, columns.length);
+      assertEquals(rows, columns[0].length);
+
+      for (int r = 0; r < rows; r++) {
+        String[] fields = lines.get(r + 1).split(",", -1);
+        for (int i = 0; i < fields.length; i++) {
+          double v = fields[i].isEmpty() ? Double.NaN : Double.parseDouble(fields[i]);
+          assertEquals(columns[i][r], v, 0);
+        }
+        assertTrue(objects.get(r).startsWith("{\"time\":" + columns[0][r] + ","));
+      }
+      assertEquals(summary.totalProfit, columns[8][rows - 1], 0);
+      assertEquals(summary.pumpUsage, columns[7][rows - 1], 0);
+      assertEquals(summary.totalArrivals, (int) columns[1][rows - 1]);
+    } finally {
+      csv.delete();
+      jsonl.delete();
+      binary.delete();
+    }
+  }
+}
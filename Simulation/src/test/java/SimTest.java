@@ -5,26 +5,20 @@ import org.junit.After;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.util.Random;
 
 public class SimTest {
 
   private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
   private final PrintStream originalOut = System.out;
+  private SimulationContext ctx;
 
   @Before
   public void setUp() {
-    Sim.arrivalStream = new Random(1);
-    Sim.litreStream = new Random(2);
-    Sim.balkingStream = new Random(3);
-    Sim.serviceStream = new Random(4);
-    Sim.eventList = new EventList();
-    Sim.carQueue = new CarQueue();
-    Sim.pumpStand = new PumpStand(3);
-    Sim.stats = new Statistics();
-
     System.setOut(new PrintStream(outContent));
 
+    SimulationParameters params = new SimulationParameters();
+    params.numPumps = 3;
+    ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4), System.out);
   }
 
   @After
@@ -54,38 +48,54 @@ public class SimTest {
 
   @Test
   public void testCarCreation() {
-    Car car = new Car();
-    assertTrue(car.getLitresNeeded() >= Sim.litresNeededMin);
-    assertTrue(car.getLitresNeeded() <= Sim.litresNeededMin + Sim.litresNeededRange);
+    Car car = new Car(ctx);
+    assertTrue(car.getLitresNeeded() >= ctx.litresNeededMin);
+    assertTrue(car.getLitresNeeded() <= ctx.litresNeededMin + ctx.litresNeededRange);
   }
 
   @Test
   public void testEventListInsertion() {
     Event Arr = new Arrival(15);
     Event Dep = new Departure(10);
-    Sim.eventList.insert(Arr);
-    Sim.eventList.insert(Dep);
-    Sim.eventList.takeNextEvent();
-    assertEquals(Arr, Sim.eventList.takeNextEvent());
+    ctx.eventList.insert(Arr);
+    ctx.eventList.insert(Dep);
+    ctx.eventList.takeNextEvent();
+    assertEquals(Arr, ctx.eventList.takeNextEvent());
   }
 
   @Test
   public void testCarQueueInsertion() {
-    Car car1 = new Car();
-    Car car2 = new Car();
-    Sim.carQueue.insert(car1);
-    Sim.carQueue.insert(car2);
-    assertEquals(2, Sim.carQueue.getQueueSize());
+    Car car1 = new Car(ctx);
+    Car car2 = new Car(ctx);
+    ctx.carQueue.insert(car1);
+    ctx.carQueue.insert(car2);
+    assertEquals(2, ctx.carQueue.getQueueSize());
   }
 
   @Test
   public void testCarQueueRemoval() {
-    Car car1 = new Car();
-    Car car2 = new Car();
-    Sim.carQueue.insert(car1);
-    Sim.carQueue.insert(car2);
-    Car removedCar = Sim.carQueue.takeFirstCar();
+    Car car1 = new Car(ctx);
+    Car car2 = new Car(ctx);
+    ctx.carQueue.insert(car1);
+    ctx.carQueue.insert(car2);
+    Car removedCar = ctx.carQueue.takeFirstCar();
     assertEquals(car1, removedCar);
-    assertEquals(1, Sim.carQueue.getQueueSize());
+    assertEquals(1, ctx.carQueue.getQueueSize());
+  }
+
+  @Test
+  public void testContextsDoNotShareState() {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 50000;
+    SimulationContext other = new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(outContent));
+    SimulationContext run = new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(outContent));
+
+    // Disturb one context; the other must behave as if it were alone.
+    other.carQueue.insert(new Car(other));
+    other.simulationTime = 1000;
+    ReplicationSummary summary = run.run().summarize();
+    assertEquals(1, other.carQueue.getQueueSize());
+    assertEquals(SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4)), summary);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StationNetworkTest {
+
+  private static final double X = Double.POSITIVE_INFINITY;
+
+  private static SimulationParameters[] stations(int n) {
+    SimulationParameters[] params = new SimulationParameters[n];
+    for (int i = 0; i < n; i++) {
+      params[i] = new SimulationParameters();
+      params[i].endingTime = 100000;
+      params[i].numPumps = 1 + i % 3;
+      params[i].meanInterarrivalTime = 30 + 5 * i;
+    }
+    return params;
+  }
+
+  // stations on a ring, each 240 s from its neighbours
+  private static double[][] ring(int n) {
+    double[][] travel = new double[n][n];
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++) {
+        final int d = Math.min(Math.abs(i - j), n - Math.abs(i - j));
+        travel[i][j] = i == j ? 0 : d == 1 ? 240 : X;
+      }
+    return travel;
+  }
+
+  private static void assertSameSummary(ReplicationSummary a, ReplicationSummary b) {
+    assertEquals(a.totalArrivals, b.totalArrivals);
+    assertEquals(a.customersServed, b.customersServed);
+    assertEquals(a.balkingCustomers, b.balkingCustomers);
+    assertEquals(a.totalProfit, b.totalProfit, 0);
+    assertEquals(a.averageWait, b.averageWait, 0);
+  }
+
+  @Test
+  public void testResultsDoNotDependOnThreads() throws Exception {
+    SeedSet[] seeds = SeedSet.fromMaster(5, 8);
+    StationNetwork.Outcome one = new StationNetwork(stations(8), ring(8), 2, 1).run(seeds);
+    StationNetwork.Outcome many = new StationNetwork(stations(8), ring(8), 2, 4).run(seeds);
+    assertEquals(one.windows, many.windows);
+    for (int i = 0; i < 8; i++) {
+      assertSameSummary(one.stations[i], many.stations[i]);
+      assertEquals(one.received[i], many.received[i]);
+    }
+  }
+
+  @Test
+  public void testCarsAreConserved() throws Exception {
+    StationNetwork.Outcome o = new StationNetwork(stations(6), ring(6), 3, 3).run(SeedSet.fromMaster(9, 6));
+    assertEquals(240, o.lookahead, 0);
+    long balked = 0, sentOn = 0, received = 0, gaveUp = 0;
+    for (int i = 0; i < 6; i++) {
+      balked += o.stations[i].balkingCustomers;
+      sentOn += o.sentOn[i];
+      received += o.received[i];
+      gaveUp += o.gaveUp[i];
+    }
+    assertTrue(sentOn > 0);
+    assertEquals(balked, sentOn + gaveUp);
+    // only the cars still on the road at the end, sent on in the last
+    // 240 s, are not received
+    assertTrue(received <= sentOn && sentOn - received < sentOn * 240 / 100000 * 3);
+  }
+
+  @Test
+  public void testWithoutDrivingOnStationsRunAlone() throws Exception {
+    SimulationParameters[] params = stations(4);
+    SeedSet[] seeds = SeedSet.fromMaster(3, 4);
+    StationNetwork.Outcome o = new StationNetwork(params, ring(4), 0, 2).run(seeds);
+    for (int i = 0; i < 4; i++) {
+      assertEquals(0, o.received[i]);
+      assertSameSummary(SimulationContext.replicate(params[i], seeds[i]), o.stations[i]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroTravelTimeRejected() {
+    new StationNetwork(stations(2), new double[][] { { 0, 0 }, { 0, 0 } }, 1, 1);
+  }
+}
@@ -0,0 +1,55 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class StoppingRuleTest {
+
+  private SimulationContext newContext(SimulationParameters params, ByteArrayOutputStream out) {
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    return new SimulationContext(params, new SeedSet(1, 2, 3, 4), new PrintStream(out));
+  }
+
+  @Test
+  public void testStopsAtTargetPrecision() {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 1e8;
+    params.targetHalfWidth = 0.05;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SimulationContext ctx = newContext(params, out);
+    Statistics stats = ctx.run();
+
+    assertTrue(ctx.simulationTime < params.endingTime);
+    assertTrue(stats.waitingTimes.batchMeans.getRelativeHalfWidth() <= 0.05);
+    assertTrue(stats.lostProfits.getRelativeHalfWidth() <= 0.05);
+    assertTrue(out.toString().contains("target precision reached"));
+  }
+
+  @Test
+  public void testEventCap() {
+    SimulationParameters params = new SimulationParameters();
+    params.maxEvents = 1000;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SimulationContext ctx = newContext(params, out);
+    ctx.run();
+    assertTrue(out.toString().contains("Stopped at " + (int) (ctx.simulationTime + 0.5) + " after 1000 events"));
+  }
+
+  @Test
+  public void testUnreachedTargetRunsToEndingTime() {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 20000;
+    params.targetHalfWidth = 1e-6;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SimulationContext ctx = newContext(params, out);
+    ctx.run();
+    assertEquals(params.endingTime, ctx.simulationTime, 0);
+    assertTrue(out.toString().contains("ending time reached"));
+  }
+
+  @Test
+  public void testNoRuleByDefault() {
+    assertNull(StoppingRule.forParameters(new SimulationParameters()));
+  }
+}
@@ -0,0 +1,104 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class StreamingStatisticsTest {
+
+  @Test
+  public void testMomentsMatchTwoPassFormulas() {
+    Random random = new Random(3);
+    double[] xs = new double[10000];
+    RunningMoments moments = new RunningMoments();
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = 1e6 + random.nextGaussian(); // a large offset defeats naive sums of squares
+      moments.add(xs[i]);
+    }
+    double mean = 0;
+    for (double x : xs)
+      mean += x / xs.length;
+    double squares = 0;
+    for (double x : xs)
+      squares += (x - mean) * (x - mean);
+    assertEquals(mean, moments.getMean(), 1e-8);
+    assertEquals(squares / (xs.length - 1), moments.getVariance(), 1e-6);
+  }
+
+  @Test
+  public void testMergedMomentsEqualPooledMoments() {
+    Random random = new Random(4);
+    RunningMoments all = new RunningMoments();
+    RunningMoments left = new RunningMoments();
+    RunningMoments right = new RunningMoments();
+    for (int i = 0; i < 5000; i++) {
+      double x = random.nextDouble() * 100;
+      all.add(x);
+      (i % 3 == 0 ? left : right).add(x);
+    }
+    left.merge(right);
+    assertEquals(all.getCount(), left.getCount());
+    assertEquals(all.getMean(), left.getMean(), 1e-9);
+    assertEquals(all.getVariance(), left.getVariance(), 1e-6);
+    assertEquals(all.getMax(), left.getMax(), 0);
+  }
+
+  @Test
+  public void testHalfWidthUsesStudentsT() {
+    // t quantiles with 1, 2 and 4 degrees of freedom, and near the normal's
+    assertEquals(12.7062, RunningMoments.halfWidth95(1, 2) * Math.sqrt(2), 1e-4);
+    assertEquals(4.3027, RunningMoments.halfWidth95(1, 3) * Math.sqrt(3), 1e-4);
+    assertEquals(2.7764, RunningMoments.halfWidth95(1, 5) * Math.sqrt(5), 1e-4);
+    assertEquals(2.0423, RunningMoments.halfWidth95(1, 31) * Math.sqrt(31), 1e-3);
+    assertEquals(2.0395, RunningMoments.halfWidth95(1, 32) * Math.sqrt(32), 1e-3);
+    assertEquals(1.9840, RunningMoments.halfWidth95(1, 101) * Math.sqrt(101), 1e-3);
+  }
+
+  @Test
+  public void testHistogramQuantilesAreWithinOnePercent() {
+    Random random = new Random(5);
+    double[] xs = new double[100000];
+    LogHistogram histogram = new LogHistogram();
+    LogHistogram firstHalf = new LogHistogram();
+    LogHistogram secondHalf = new LogHistogram();
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = -70 * Math.log(random.nextDouble());
+      histogram.add(xs[i]);
+      (i < xs.length / 2 ? firstHalf : secondHalf).add(xs[i]);
+    }
+    firstHalf.merge(secondHalf);
+    Arrays.sort(xs);
+    for (double q : new double[] { 0.5, 0.9, 0.95, 0.99, 0.999 }) {
+      double exact = xs[(int) Math.ceil(q * xs.length) - 1];
+      assertEquals("q=" + q, exact, histogram.quantile(q), exact * 0.01);
+      assertEquals("merged q=" + q, histogram.quantile(q), firstHalf.quantile(q), 0);
+    }
+    assertEquals(xs[xs.length - 1], histogram.quantile(1), 0);
+  }
+
+  @Test
+  public void testHistogramKeepsZerosApart() {
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 0; i < 60; i++)
+      histogram.add(0);
+    for (int i = 0; i < 40; i++)
+      histogram.add(100);
+    assertEquals(0, histogram.quantile(0.5), 0);
+    assertEquals(100, histogram.quantile(0.95), 1);
+  }
+
+  @Test
+  public void testBatchMeansStayBoundedAndCoverTheMean() {
+    Random random = new Random(6);
+    int covered = 0;
+    for (int run = 0; run < 100; run++) {
+      BatchMeans batches = new BatchMeans();
+      for (int i = 0; i < 20000; i++)
+        batches.add(10 + random.nextGaussian());
+      assertTrue(batches.getBatchCount() >= 32 && batches.getBatchCount() < 64);
+      if (Math.abs(batches.getMean() - 10) <= batches.getHalfWidth())
+        covered++;
+    }
+    assertTrue("coverage " + covered, covered >= 88);
+  }
+}
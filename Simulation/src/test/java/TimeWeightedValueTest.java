@@ -0,0 +1,51 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class TimeWeightedValueTest {
+
+  @Test
+  public void testAverageAndMax() {
+    TimeWeightedValue v = new TimeWeightedValue();
+    v.set(10, 2); // 0 for 10 seconds
+    v.add(20, 1); // 2 for 10 seconds
+    v.add(25, -3); // 3 for 5 seconds
+    assertEquals((0 * 10 + 2 * 10 + 3 * 5) / 40.0, v.getAverage(40), 1e-12);
+    assertEquals(3, v.getMax(), 0);
+
+    v.reset(40);
+    assertEquals(0, v.getMax(), 0);
+    v.set(50, 4);
+    assertEquals(0, v.getAverage(50), 0);
+    assertEquals(2, v.getAverage(60), 1e-12);
+  }
+
+  @Test
+  public void testStationAveragesAreConsistent() {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 100000;
+    SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+        new PrintStream(new ByteArrayOutputStream()));
+    Statistics stats = ctx.run();
+    double now = ctx.simulationTime;
+
+    // Every car at the station is either queueing or at a pump.
+    assertEquals(stats.queueLength.getAverage(now) + stats.busyPumps.getAverage(now),
+        stats.carsInSystem.getAverage(now), 1e-9);
+    assertTrue(stats.busyPumps.getMax() <= params.numPumps);
+
+    // The pump usage is the busy-pump average, which differs from the
+    // scheduled usage only by the service still in progress at the end.
+    ReplicationSummary summary = stats.summarize();
+    assertEquals(stats.busyPumps.getAverage(now) / params.numPumps, summary.pumpUsage, 0);
+    assertTrue(summary.pumpUsage <= summary.scheduledPumpUsage);
+    assertEquals(summary.pumpUsage, summary.scheduledPumpUsage, 0.01);
+
+    // The share of time with an empty queue agrees with the queue length.
+    assertTrue(summary.averageQueueLength >= 0);
+    assertTrue(summary.noQueueFraction < 1 || summary.averageQueueLength == 0);
+  }
+}
@@ -0,0 +1,81 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+public class TraceTest {
+
+  @Test
+  public void testRoundTripAcrossMappings() throws Exception {
+    File file = File.createTempFile("trace", ".bin");
+    try {
+      // enough records to need a second mapping
+      final int n = (int) (TraceWriter.CHUNK_SIZE / TraceWriter.RECORD_SIZE) + 1000;
+      TraceWriter writer = new TraceWriter(file.getPath());
+      for (int i = 0; i < n; i++)
+        writer.record(i * 0.5, 1 + i % 6, i % 3 - 1, i % 17, i % 4, i * 0.25);
+      writer.close();
+      assertEquals(TraceWriter.HEADER_SIZE + (long) n * TraceWriter.RECORD_SIZE, file.length());
+
+      TraceReader reader = new TraceReader(file.getPath());
+      assertEquals(n, reader.size());
+      for (int i = 0; i < n; i += 997) {
+        assertEquals(i * 0.5, reader.getTime(i), 0);
+        assertEquals(1 + i % 6, reader.getType(i));
+        assertEquals(i % 3 - 1, reader.getPump(i));
+        assertEquals(i % 17, reader.getQueueLength(i));
+        assertEquals(i % 4, reader.getBusyPumps(i));
+        assertEquals(i * 0.25, reader.getLitres(i), 0);
+      }
+      assertEquals(n - 1, reader.getTime(n - 1) * 2, 0);
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testReplayMatchesStatistics() throws Exception {
+    File file = File.createTempFile("trace", ".bin");
+    try {
+      SimulationParameters params = new SimulationParameters();
+      params.reportInterval = 10000;
+      params.endingTime = 200000;
+      params.numPumps = 3;
+      SimulationContext ctx = new SimulationContext(params, new SeedSet(1, 2, 3, 4),
+          new PrintStream(new ByteArrayOutputStream()));
+      TraceWriter writer = new TraceWriter(file.getPath());
+      ctx.trace = writer;
+      ReplicationSummary summary = ctx.run().summarize();
+      writer.close();
+
+      TraceReader reader = new TraceReader(file.getPath());
+      TraceReader.Replay r = reader.replay(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+      assertEquals(summary.totalArrivals, r.arrivals);
+      assertEquals(summary.balkingCustomers, r.balks);
+      assertEquals(summary.customersServed, r.departures);
+      assertEquals(summary.litresSold, r.litresSold, 1e-6 * summary.litresSold);
+      assertEquals(summary.litresMissed, r.litresMissed, 1e-6 * summary.litresMissed);
+      assertEquals(summary.maxQueueLength, r.maxQueueLength);
+      assertEquals(19, r.reports);
+      assertEquals(3, reader.getNumberOfPumps());
+      long services = 0;
+      for (long s : r.servicesByPump)
+        services += s;
+      assertEquals(r.services, services);
+      assertTrue(r.services >= r.departures && r.services <= r.departures + 3);
+      assertEquals(TraceRecorder.END, reader.getType(reader.size() - 1));
+      assertEquals(params.endingTime, reader.getTime(reader.size() - 1), 0);
+
+      // records come in time order, and departures only from busy pumps
+      for (long i = 1; i < reader.size(); i++) {
+        assertTrue(reader.getTime(i) >= reader.getTime(i - 1));
+        if (reader.getType(i) == TraceRecorder.DEPARTURE)
+          assertTrue(reader.getPump(i) >= 0 && reader.getBusyPumps(i) > 0);
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
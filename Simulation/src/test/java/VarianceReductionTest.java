@@ -0,0 +1,59 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+public class VarianceReductionTest {
+
+  @Test
+  public void testAntitheticStreamMirrorsOrdinaryStream() {
+    Random ordinary = new Random(99);
+    RandomStream anti = RandomStreams.create("legacy", new SeedSet(99, 1, 1, 1, true), 99, RandomStreams.ARRIVAL);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(1.0 - ordinary.nextDouble(), anti.nextDouble(), 0);
+      assertEquals(-ordinary.nextGaussian(), anti.nextGaussian(), 0);
+    }
+    SeedSet s = new SeedSet(1, 2, 3, 4);
+    assertEquals(s, s.twin().twin());
+    assertFalse(s.equals(s.twin()));
+  }
+
+  @Test
+  public void testAntitheticStreamsMirrorExponentials() {
+    for (String kind : new String[] { "splittable", "xoshiro", "pcg" }) {
+      RandomStream ordinary = RandomStreams.create(kind, new SeedSet(5, 6, 7, 8), 5, RandomStreams.ARRIVAL);
+      RandomStream anti = RandomStreams.create(kind, new SeedSet(5, 6, 7, 8, true), 5, RandomStreams.ARRIVAL);
+      RandomStream uniforms = RandomStreams.create(kind, new SeedSet(5, 6, 7, 8, true), 5, RandomStreams.ARRIVAL);
+      for (int i = 0; i < 1000; i++) {
+        // e = -log(1 - u) and its twin -log(u), but for the last bit
+        assertEquals(kind, 1.0, Math.exp(-ordinary.nextExponential()) + Math.exp(-anti.nextExponential()), 1e-15);
+        final double u = uniforms.nextDouble();
+        assertTrue(kind, u >= 0 && u < 1);
+      }
+    }
+  }
+
+  @Test
+  public void testCommonRandomNumbersNarrowTheDifference() throws Exception {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 30000;
+    int[] pumps = { 3, 4 };
+    double[][] crn = new PumpComparison(params, pumps, true, false, 2).run(7, 12);
+    double[][] independent = new PumpComparison(params, pumps, false, false, 2).run(7, 12);
+    double crnSpread = PumpComparison.differences(crn[1], crn[0]).getStdDev();
+    double independentSpread = PumpComparison.differences(independent[1], independent[0]).getStdDev();
+    assertTrue(crnSpread < independentSpread);
+  }
+
+  @Test
+  public void testCommonRandomNumbersAreReproducible() {
+    SimulationParameters params = new SimulationParameters();
+    params.endingTime = 20000;
+    params.commonRandomNumbers = true;
+    params.carQueueKind = "linked";
+    ReplicationSummary linked = SimulationContext.replicate(params, new SeedSet(5, 6, 7, 8));
+    params.carQueueKind = "ring";
+    ReplicationSummary ring = SimulationContext.replicate(params, new SeedSet(5, 6, 7, 8));
+    assertEquals(linked, ring);
+  }
+}
@@ -0,0 +1,70 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+public class WarmupDetectorTest {
+
+  @Test
+  public void testFindsEndOfTransient() {
+    // A series that climbs for 500 observations and then levels off.
+    WarmupDetector d = new WarmupDetector();
+    Random r = new Random(42);
+    int found = -1;
+    for (int i = 0; i < 100000 && found < 0; i++)
+      if (d.add(Math.min(i, 500) / 10.0 + r.nextGaussian()))
+        found = i;
+    assertTrue(d.isDone());
+    assertTrue(found > 500);
+    assertTrue(d.getTruncation() >= 400 && d.getTruncation() <= 700);
+  }
+
+  @Test
+  public void testStationarySeriesNeedsNoTruncation() {
+    WarmupDetector d = new WarmupDetector();
+    Random r = new Random(7);
+    for (int i = 0; i < 10000 && !d.isDone(); i++)
+      d.add(r.nextGaussian());
+    assertTrue(d.isDone());
+    assertTrue(d.getTruncation() < 100);
+  }
+
+  @Test
+  public void testWarmupTruncatesStatistics() {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 100000;
+    params.detectWarmup = true;
+    SimulationContext ctx = new SimulationContext(params, new SeedSet(3, 2, 3, 4),
+        new PrintStream(new ByteArrayOutputStream()));
+    Statistics stats = ctx.run();
+    ReplicationSummary warm = stats.summarize();
+    params.detectWarmup = false;
+    ReplicationSummary cold = SimulationContext.replicate(params, new SeedSet(3, 2, 3, 4));
+
+    assertTrue(warm.warmupTime > 0 && warm.warmupTime < params.endingTime / 2);
+    assertEquals(0, cold.warmupTime, 0);
+    assertTrue(warm.totalArrivals < cold.totalArrivals);
+    assertTrue(warm.noQueueFraction >= 0 && warm.noQueueFraction <= 1);
+    assertEquals(warm.pumpUsage, warm.scheduledPumpUsage, 0.01);
+    // every customer served since the warm-up has a wait in the average,
+    // even those that were at a pump when it ended
+    assertEquals(warm.customersServed + ctx.pumpStand.getNumberBusy(), stats.waitingTimes.moments.getCount());
+  }
+
+  @Test
+  public void testNoTruncationKeepsTheWholeRun() {
+    SimulationParameters params = new SimulationParameters();
+    params.reportInterval = Double.POSITIVE_INFINITY;
+    params.endingTime = 100000;
+    params.detectWarmup = true;
+    ReplicationSummary warm = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+    params.detectWarmup = false;
+    ReplicationSummary cold = SimulationContext.replicate(params, new SeedSet(1, 2, 3, 4));
+
+    // MSER-5 drops nothing here, so nothing is lost by watching for it
+    assertEquals(cold, warm);
+  }
+}